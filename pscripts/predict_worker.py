@@ -0,0 +1,144 @@
+"""
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Emad
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+"""
+"""
+A long-lived worker that runs the prediction scripts in this directory for
+gdelt.predictors.Python_Worker_Pool, so that the interpreter is started, and
+sklearn and pandas imported, once rather than for every prediction.
+
+Each request and each reply is a frame: a 4-byte big-endian length followed
+by that many bytes. A request holds its id (int32), the script's path
+(int32 length, then UTF-8 bytes) and trainX, trainY and testX (each an int32
+count, then that many big-endian float64s). A reply holds the request's id,
+a status byte (0 for success) and then either the predictions (an int32
+count, then float64s) or, on failure, a message (int32 length, then UTF-8).
+
+A script is run as it would be from the command line, with its three
+arguments joined by commas and what it writes to stdout captured; the last
+line written is the predictions. Requests are answered in order.
+"""
+import struct
+import sys
+import traceback
+
+
+class _Capture(object):
+    # Stands in for stdout while a script runs; the scripts close stdout when done
+    def __init__(self):
+        self.parts = []
+
+    def write(self, text):
+        self.parts.append(text)
+        return len(text)
+
+    def flush(self):
+        pass
+
+    def close(self):
+        pass
+
+    def getvalue(self):
+        return "".join(self.parts)
+
+
+def read_exact(stream, n):
+    data = b""
+    while len(data) < n:
+        chunk = stream.read(n - len(data))
+        if not chunk:
+            return None
+        data += chunk
+    return data
+
+
+def read_doubles(payload, at):
+    (count,) = struct.unpack_from(">i", payload, at)
+    at += 4
+    values = struct.unpack_from(">%dd" % count, payload, at)
+    return values, at + 8 * count
+
+
+def as_argument(values):
+    return ",".join(repr(v) for v in values)
+
+
+compiled = {}
+
+
+def run(script, train_x, train_y, test_x):
+    code = compiled.get(script)
+    if code is None:
+        with open(script) as source:
+            code = compile(source.read(), script, "exec")
+        compiled[script] = code
+    capture = _Capture()
+    saved_argv, saved_stdout = sys.argv, sys.stdout
+    sys.argv = [script, as_argument(train_x), as_argument(train_y), as_argument(test_x)]
+    sys.stdout = capture
+    try:
+        exec(code, {"__name__": "__main__", "__file__": script})
+    finally:
+        sys.argv, sys.stdout = saved_argv, saved_stdout
+    lines = capture.getvalue().splitlines()
+    if not lines:
+        raise ValueError("No predictions written by " + script)
+    return [float(v) for v in lines[-1].split(",")]
+
+
+def reply(out, request_id, status, body):
+    payload = struct.pack(">ib", request_id, status) + body
+    out.write(struct.pack(">i", len(payload)) + payload)
+    out.flush()
+
+
+def main():
+    inp = sys.stdin.buffer
+    out = sys.stdout.buffer
+    while True:
+        header = read_exact(inp, 4)
+        if header is None:
+            break
+        (length,) = struct.unpack(">i", header)
+        payload = read_exact(inp, length)
+        if payload is None:
+            break
+        (request_id, script_length) = struct.unpack_from(">ii", payload, 0)
+        at = 8
+        script = payload[at:at + script_length].decode("utf-8")
+        at += script_length
+        train_x, at = read_doubles(payload, at)
+        train_y, at = read_doubles(payload, at)
+        test_x, at = read_doubles(payload, at)
+        try:
+            predictions = run(script, train_x, train_y, test_x)
+            reply(out, request_id, 0, struct.pack(">i%dd" % len(predictions), len(predictions), *predictions))
+        except BaseException:  # Including a script's sys.exit
+            message = traceback.format_exc().encode("utf-8")
+            reply(out, request_id, 1, struct.pack(">i", len(message)) + message)
+
+
+main()
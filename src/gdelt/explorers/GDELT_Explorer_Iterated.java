@@ -31,7 +31,17 @@ import java.io.StringWriter;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import gdelt.predictors.Predictor.PREDICTION_METHOD;
 import gdelt.predictors.Predictor_Factory;
@@ -51,7 +61,30 @@ public class GDELT_Explorer_Iterated extends GDELT_Explorer{
 	public int bailoutValue    = -1;
 	public int bailoutInterval = 1800;
 
+	// The number of threads on which a batch of candidates (e.g. the rest of a
+	// generation) is evaluated and scored; the results are still taken up one
+	// at a time, in the iterator's order, so the search is the same for any number
+	public int evaluationThreads = 1;
+
+	// The number of evaluated queries kept (by signature) in each run, so that a
+	// query that has been evaluated before is not evaluated again; 0 keeps none
+	public int fitnessCacheSize = 10000;
+
 	List<Integer> changes = new ArrayList<Integer>();
+
+	// A task evaluated and scored ahead of its turn, as part of a batch (see prefetch)
+	private static class Evaluated {
+		GDELT_Query_Task task;
+		SmartScore       score;
+
+		Evaluated(GDELT_Query_Task task, SmartScore score){
+			this.task  = task;
+			this.score = score;
+		}
+	}
+
+	private Map<GDELT_Query, Evaluated> prefetched   = new IdentityHashMap<GDELT_Query, Evaluated>();
+	private QueryResultCache<Evaluated> fitnessCache = null;
 	
 	public GDELT_Explorer_Iterated(GDELT_Service serviceToUse) {
 		super(serviceToUse);
@@ -71,6 +104,7 @@ public class GDELT_Explorer_Iterated extends GDELT_Explorer{
 		super.reset(scorerToUse, null);
 		iterator = new MultiIterator(queryIterators);
 		iterator.label = label;
+		prefetched.clear();
 	}
 
 	
@@ -81,6 +115,7 @@ public class GDELT_Explorer_Iterated extends GDELT_Explorer{
 	
 	public String execute(String name) {
 		if(iterator==null) return null; // Need to use 'reset' before executing
+		fitnessCache = new QueryResultCache<Evaluated>(fitnessCacheSize); // Scores are only comparable within a run
 
 	  	GDELT_Query highScoreQuery = startQuery; // Will be null
     	SmartScore highScore = null;
@@ -88,18 +123,19 @@ public class GDELT_Explorer_Iterated extends GDELT_Explorer{
     	GDELT_Query toSend;
 		while(( (bailoutValue == -1) || (iterator.sinceLastNotable() < bailoutValue)) && ((toSend = iterator.next()) != null)) {
 			IO.log(IO.LEVEL.LEVEL_1, iterator.label + " ITERATION " + iterator.currentIteration + " of " + iterator.countOfTotalIterations() + " IterationsSince: " + iterator.sinceLastNotable());
-			GDELT_Query_Task task = 
-	    			GDELT_Query_Task.get(
-	    					service.processQueryTask(new GDELT_Query_Task(toSend, 1, ChronoUnit.DAYS, useDateTimeAdded, scorer.getDates())));	
-		  
-	    	SmartScore score = scorer.score(task);
+			if(!prefetched.containsKey(toSend)) prefetch(toSend);
+			Evaluated evaluated = prefetched.remove(toSend); // The iterator may change this query in place and return it again
+			if(evaluated == null) evaluated = evaluate(Collections.singletonList(toSend), Collections.<GDELT_Query, Evaluated>emptyMap()).get(0); // The batch failed
+			GDELT_Query_Task task = evaluated.task;
+
+	    	SmartScore score = evaluated.score;
 	    	iterator.recordScore(score);
 	    	boolean changed = false;
 	    	COMPARISON comparison = (highScore == null ? COMPARISON.BETTER : score.isBetter(highScore));
 	    	IO.log(IO.LEVEL.LEVEL_3, "COMPARISON RESULT IS: " + comparison);
             if(highScore == null || comparison == COMPARISON.BETTER) {        
             	highScore      = score;
-            	highScoreQuery = task.query;
+            	highScoreQuery = task.query.clone(); // The iterator may go on to modify this query in place
             	changed = true;
             }
             IO.log(IO.LEVEL.LEVEL_3, "SCORE: " + score     + " VALUES: " + (task.query.all ? "(ALL)" : "(SUBSET)")); // + IO.LS + task.query.summaryOfCriteria());
@@ -120,7 +156,7 @@ public class GDELT_Explorer_Iterated extends GDELT_Explorer{
             				   : test.groundTruth.getPredictions();
             		testQuery.tMax = actual.length;
             		GDELT_Query_Task task1 = new GDELT_Query_Task(testQuery, test.groundTruth.getResolution(), test.groundTruth.getChronoUnit(), useDateTimeAdded, test.groundTruth.getTZero());
-            		task1 = GDELT_Query_Task.get(service.processQueryTask(task1));
+            		task1 = service.evaluate(task1);
             		
             		double[] eventCounts = Predictor_Factory.get(task.query.prediction_method).getPredictions(task1.resultsMap.get(test.groundTruth.getTZero()), test.groundTruth);
             		
@@ -172,10 +208,164 @@ public class GDELT_Explorer_Iterated extends GDELT_Explorer{
             }
 		}
     	// Using the best query, retrieve the full sequence of GDELT event counts
+		IO.log(IO.LEVEL.LEVEL_1, "Explorer: " + name + ": Evaluations saved by the cache: " + fitnessCache.getHits() + " of " + (fitnessCache.getHits() + fitnessCache.getMisses()));
 		IO.log(IO.LEVEL.LEVEL_1, "Explorer: " + name + ": Best Score: " + highScore + " Query: " + highScoreQuery.summaryOfCriteria());		
 		IO.log(IO.LEVEL.LEVEL_1, "Explorer: " + name + ": Best Score: " + highScore + " Query: " + highScoreQuery.blankClone().toString().replaceAll("\\{\"order\":", IO.LS + "\\{\"ordr\":").replaceAll("ordr",  "order"));	
 
 		return highScoreQuery.toString();
 	}
+
+	/**
+	 * Scores this query with each of the shifts that mutate can reach from its
+	 * own (see GDELT_Query.allowedShifts), with one evaluation of the query where
+	 * the service allows (see GDELT_Service.evaluateShifts). The query itself is
+	 * not changed; during a run the copies scored are kept in the fitness cache,
+	 * so that they are not evaluated again.
+	 * @param query
+	 * @return the score with each shift, in increasing order of shift
+	 */
+	public Map<Long, SmartScore> scoreShifts(GDELT_Query query) {
+		long[]                 shifts = query.allowedShifts();
+		List<GDELT_Query_Task> tasks  = service.evaluateShifts(new GDELT_Query_Task(query, 1, ChronoUnit.DAYS, useDateTimeAdded, scorer.getDates()), shifts);
+		Map<Long, SmartScore>  ret    = new LinkedHashMap<Long, SmartScore>();
+		for(int i = 0; i < shifts.length; i++) {
+			SmartScore score = scorer.score(tasks.get(i));
+			if(fitnessCache != null) fitnessCache.put(tasks.get(i).query, new Evaluated(tasks.get(i), score));
+			ret.put(shifts[i], score);
+		}
+		return ret;
+	}
+
+	// Evaluates and scores this query together with the queries that the iterator
+	// will return after it (e.g. the rest of a generation), as one batch; the batch
+	// is split between evaluationThreads threads if the service allows it. Queries
+	// with the signature of one evaluated before in this run, or of one earlier in
+	// the batch, take its results rather than being evaluated again
+	private void prefetch(GDELT_Query first) {
+		prefetched.clear();
+		List<GDELT_Query> queries = new ArrayList<GDELT_Query>();
+		Set<GDELT_Query>  seen    = Collections.newSetFromMap(new IdentityHashMap<GDELT_Query, Boolean>());
+		queries.add(first);
+		seen.add(first);
+		for(GDELT_Query query: iterator.upcoming()) if(seen.add(query)) queries.add(query); // Each query once
+		List<GDELT_Query>             distinct = new ArrayList<GDELT_Query>();
+		int[]                         hashes   = new int[queries.size()];
+		Map<GDELT_Query, GDELT_Query> sameAs   = new IdentityHashMap<GDELT_Query, GDELT_Query>();
+		for(GDELT_Query query: queries) {
+			Evaluated cached = fitnessCache.get(query);
+			if(cached != null) {
+				prefetched.put(query, reuse(cached, query));
+				continue;
+			}
+			int hash = query.signatureHash();
+			for(int i = 0; i < distinct.size() && !sameAs.containsKey(query); i++) {
+				if(hashes[i] == hash && distinct.get(i).sameSignature(query)) sameAs.put(query, distinct.get(i));
+			}
+			if(!sameAs.containsKey(query)) {
+				hashes[distinct.size()] = hash;
+				distinct.add(query);
+			}
+		}
+		evaluateByParents(distinct);
+		for(Map.Entry<GDELT_Query, GDELT_Query> entry: sameAs.entrySet()) {
+			Evaluated evaluated = prefetched.get(entry.getValue());
+			if(evaluated != null) prefetched.put(entry.getKey(), reuse(evaluated, entry.getKey()));
+		}
+		for(GDELT_Query query: queries) query.mutatedFrom = null; // Evaluated; a copy made by mutate would otherwise keep all of its ancestors
+	}
+
+	// Evaluates queries made by mutate after the queries they were made from, where
+	// these are in the same batch, so that their results can be had from their
+	// parents' (see GDELT_Query.mutatedFrom)
+	private void evaluateByParents(List<GDELT_Query> queries) {
+		while(queries.size() > 0) {
+			List<GDELT_Query> now   = new ArrayList<GDELT_Query>();
+			List<GDELT_Query> later = new ArrayList<GDELT_Query>();
+			for(GDELT_Query query: queries) (hasParentIn(query, queries) ? later : now).add(query);
+			if(now.isEmpty()) { // Not expected, as a parent is made before its children
+				now   = later;
+				later = new ArrayList<GDELT_Query>();
+			}
+			evaluateDistinct(now);
+			queries = later;
+		}
+	}
+
+	private static boolean hasParentIn(GDELT_Query query, List<GDELT_Query> queries) {
+		if(query.mutatedFrom == null) return false;
+		for(GDELT_Query other: queries) if(other != query && other.sameSignature(query.mutatedFrom)) return true;
+		return false;
+	}
+
+	// Evaluates and scores queries that are not in the cache, adding them to it;
+	// a query whose parent's results are in the cache counts only the change from them
+	private void evaluateDistinct(List<GDELT_Query> queries) {
+		if(queries.isEmpty()) return;
+		final Map<GDELT_Query, Evaluated> parents = new IdentityHashMap<GDELT_Query, Evaluated>(); // Found here, as the cache is not thread safe
+		for(GDELT_Query query: queries) {
+			Evaluated parent = query.mutatedFrom == null ? null : fitnessCache.peek(query.mutatedFrom);
+			if(parent != null) parents.put(query, parent);
+		}
+		int threads = service.allowsConcurrentTasks() ? Math.max(1, Math.min(evaluationThreads, queries.size())) : 1;
+		if(threads == 1) {
+			List<Evaluated> results = evaluate(queries, parents);
+			for(int i = 0; i < queries.size(); i++) keep(queries.get(i), results.get(i));
+			return;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<List<GDELT_Query>>       parts   = new ArrayList<List<GDELT_Query>>();
+		List<Future<List<Evaluated>>> futures = new ArrayList<Future<List<Evaluated>>>();
+		for(int t = 0; t < threads; t++) {
+			final List<GDELT_Query> part = queries.subList(queries.size() * t / threads, queries.size() * (t + 1) / threads);
+			parts.add(part);
+			futures.add(pool.submit(new Callable<List<Evaluated>>() {
+				@Override
+				public List<Evaluated> call() {
+					return evaluate(part, parents);
+				}
+			}));
+		}
+		try {
+			for(int t = 0; t < threads; t++) {
+				List<Evaluated> results = futures.get(t).get();
+				for(int i = 0; i < results.size(); i++) keep(parts.get(t).get(i), results.get(i));
+			}
+		}
+		catch(InterruptedException | ExecutionException e) {
+			IO.log(IO.LEVEL.LEVEL_0, "Failed to evaluate a batch of queries: " + e.getMessage());
+			e.printStackTrace(); // The queries left out are evaluated on their own, when their turn comes
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	private void keep(GDELT_Query query, Evaluated evaluated) {
+		prefetched.put(query, evaluated);
+		fitnessCache.put(query, evaluated);
+	}
+
+	// Results evaluated for a query with the same signature, as a task for this query
+	private Evaluated reuse(Evaluated evaluated, GDELT_Query query) {
+		GDELT_Query_Task task = new GDELT_Query_Task(query, 1, ChronoUnit.DAYS, useDateTimeAdded);
+		task.resultsMap = evaluated.task.resultsMap;
+		return new Evaluated(task, evaluated.score);
+	}
+
+	private List<Evaluated> evaluate(List<GDELT_Query> queries, Map<GDELT_Query, Evaluated> parents) {
+		List<GDELT_Query_Task> tasks = new ArrayList<GDELT_Query_Task>();
+		for(GDELT_Query query: queries) {
+			GDELT_Query_Task task   = new GDELT_Query_Task(query, 1, ChronoUnit.DAYS, useDateTimeAdded, scorer.getDates());
+			Evaluated        parent = parents.get(query);
+			if(parent != null) {
+				task.baseQuery   = query.mutatedFrom;
+				task.baseResults = parent.task.resultsMap;
+			}
+			tasks.add(task);
+		}
+		List<Evaluated> ret = new ArrayList<Evaluated>();
+		for(GDELT_Query_Task task: service.evaluate(tasks)) ret.add(new Evaluated(task, scorer.score(task)));
+		return ret;
+	}
 	
 }
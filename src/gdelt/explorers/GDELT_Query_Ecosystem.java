@@ -139,6 +139,12 @@ public class GDELT_Query_Ecosystem extends QueryIterator{
 		index = 0;
 	}
 	
+	// The rest of the current generation
+	@Override
+	public List<GDELT_Query> upcoming() {
+		return new ArrayList<GDELT_Query>(population.subList(index, population.size()));
+	}
+
 	public GDELT_Query nextQuery() {
 		GDELT_Query ret = null;
 		if(index < population.size()) {
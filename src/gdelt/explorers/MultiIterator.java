@@ -60,6 +60,12 @@ public class MultiIterator extends QueryIterator {
 	public void recordScore(SmartScore score) {
 		current.recordScore(score);
 	}
+
+	// The first iterator is the one that is advanced each time
+	@Override
+	public List<GDELT_Query> upcoming() {
+		return iterators.isEmpty() ? super.upcoming() : iterators.get(0).upcoming();
+	}
 	
 	public int countOfTotalIterations() {
 		int product = 1;
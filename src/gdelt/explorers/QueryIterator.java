@@ -27,6 +27,9 @@
  */
 package gdelt.explorers;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import gdelt.query.GDELT_Query;
 import gdelt.scorers.results.SmartScore;
 
@@ -62,6 +65,13 @@ public abstract class QueryIterator {
 	
 	protected abstract GDELT_Query nextQuery();
 	public void recordScore(SmartScore score) {}
+
+	// The queries that next() will return, as far as they are known in advance
+	// (e.g. the rest of a generation), so that they can be evaluated as a batch;
+	// may be empty, and may run past the limit on iterations
+	public List<GDELT_Query> upcoming() {
+		return new ArrayList<GDELT_Query>();
+	}
 	
 	// One other requirement: must return the total number of iterations
 	public abstract int countOfTotalIterations();
@@ -0,0 +1,122 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.explorers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import gdelt.query.GDELT_Query;
+
+/**
+ * A bounded cache of results by query signature (see GDELT_Query.sameSignature),
+ * so that a query that has already been evaluated- a survivor carried into the
+ * next generation, or a duplicate made by mutate or clone- is not evaluated
+ * again. When the cache is full the least recently used result is dropped.
+ *
+ * @param <V>
+ */
+public class QueryResultCache<V> {
+
+	// A query, looked up by its signature
+	private static final class Key {
+		final GDELT_Query query;
+		final int         hash;
+
+		Key(GDELT_Query query){
+			this.query = query;
+			this.hash  = query.signatureHash();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return (o instanceof Key) && ((Key)o).hash == hash && ((Key)o).query.sameSignature(query);
+		}
+	}
+
+	private final int         capacity;
+	private final Map<Key, V> results;
+	private       int         hits   = 0;
+	private       int         misses = 0;
+
+	public QueryResultCache(final int capacity) {
+		this.capacity = capacity;
+		results = new LinkedHashMap<Key, V>(16, 0.75f, true) { // In order of use
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	// The result for a query with the same signature, or null
+	public V get(GDELT_Query query) {
+		V ret = capacity > 0 ? results.get(new Key(query)) : null;
+		if(ret == null) misses++;
+		else            hits++;
+		return ret;
+	}
+
+	// As get, but not counted as a hit or a miss (e.g. to find a parent's results)
+	public V peek(GDELT_Query query) {
+		return capacity > 0 ? results.get(new Key(query)) : null;
+	}
+
+	// The query is copied, as it may be changed after this (e.g. by an iterator)
+	public void put(GDELT_Query query, V result) {
+		if(capacity <= 0) return;
+		GDELT_Query copy = query.clone();
+		copy.clearResult();
+		results.put(new Key(copy), result);
+	}
+
+	public void clear() {
+		results.clear();
+		hits   = 0;
+		misses = 0;
+	}
+
+	public int size() {
+		return results.size();
+	}
+
+	public int getHits() {
+		return hits;
+	}
+
+	public int getMisses() {
+		return misses;
+	}
+
+}
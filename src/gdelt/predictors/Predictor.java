@@ -27,6 +27,9 @@
  */
 package gdelt.predictors;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
 import gdelt.utils.ZeroIndexedSeries;
 
 /**
@@ -71,4 +74,21 @@ public abstract class Predictor {
 	
 	public abstract double[] getPredictions(ZeroIndexedSeries gdeltData, ZeroIndexedSeries socialMediaEventData);
 	
+	/**
+	 * A prediction as the Python scripts return it, rounded to the six places
+	 * they print it to ("%f"), so that the native predictors give what the
+	 * scripts would
+	 * @param prediction
+	 * @return
+	 */
+	protected static double asPrinted(double prediction) {
+		if(Double.isNaN(prediction) || Double.isInfinite(prediction)) return prediction;
+		// Millionths, if they are too few for the product to be out by as much as
+		// 1/1000, and not within that of halfway: their quotient is then the
+		// closest double to the printed value, as parsing it would give
+		double millionths = prediction * 1e6;
+		if(Math.abs(millionths) < 1e12 && Math.abs(millionths - Math.floor(millionths) - 0.5) > 1e-3) return Math.rint(millionths) / 1e6;
+		return new BigDecimal(prediction).setScale(6, RoundingMode.HALF_EVEN).doubleValue();
+	}
+	
 }
@@ -0,0 +1,92 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.predictors;
+
+import gdelt.utils.IO;
+import gdelt.utils.ZeroIndexedSeries;
+
+/**
+ * A linear fit of the social media counts on the GDELT counts with the
+ * elastic net penalty of sklearn's ElasticNet (and Lasso, with l1Ratio 1):
+ * the fit minimizes the mean squared error over 2 plus
+ * alpha * (l1Ratio * |slope| + (1 - l1Ratio) / 2 * slope^2), with the
+ * intercept unpenalized. PY_LASSO (pscripts/predict_lasso.py) is alpha 0.1
+ * and l1Ratio 1; PY_Elastic_Net (pscripts/predict_elastic_net.py) is sklearn's
+ * defaults, alpha 1 and l1Ratio 0.5.
+ *
+ * sklearn finds the fit by coordinate descent. With one feature the
+ * descent's first step, from a slope of 0, is the minimum: the covariance,
+ * soft-thresholded by the L1 penalty, over the variance plus the L2 penalty.
+ * This closed form is taken here; sklearn's later steps and its sums may
+ * round differently, so the two can differ in the last bits. It has been
+ * checked against a reimplementation of the descent, not against sklearn
+ * itself (see Predictor_Factory.nativePredictors).
+ */
+public class Predictor_Elastic_Net extends Predictor {
+
+	private final double alpha;
+	private final double l1Ratio;
+
+	public Predictor_Elastic_Net(double alpha, double l1Ratio) {
+		this.alpha   = alpha;
+		this.l1Ratio = l1Ratio;
+	}
+
+	@Override
+	public double[] getPredictions(ZeroIndexedSeries testData, ZeroIndexedSeries trainData) {
+		double[] trainX = testData.getBaseValues();
+		double[] trainY = trainData.getBaseValues();
+		double[] testX  = testData.getPredictions();
+		int      n      = trainX.length;
+
+		double xMean = 0, yMean = 0;
+		for(int i = 0; i < n; i++) {
+			xMean += trainX[i];
+			yMean += trainY[i];
+		}
+		xMean /= n;
+		yMean /= n;
+
+		double sumXX = 0, sumXY = 0;
+		for(int i = 0; i < n; i++) {
+			double dx = trainX[i] - xMean;
+			sumXX += dx * dx;
+			sumXY += dx * (trainY[i] - yMean);
+		}
+		double l1    = alpha * l1Ratio * n;       // The penalties, scaled (as sklearn scales them) by the number of samples
+		double l2    = alpha * (1 - l1Ratio) * n;
+		double slope = sumXX == 0 ? 0 : Math.signum(sumXY) * Math.max(Math.abs(sumXY) - l1, 0) / (sumXX + l2);
+		double intercept = yMean - slope * xMean;
+		if(IO.isLogging(IO.LEVEL.LEVEL_4)) IO.log(IO.LEVEL.LEVEL_4, "Predictor_Elastic_Net(" + alpha + ", " + l1Ratio + "): intercept " + intercept + " slope " + slope);
+
+		double[] ret = new double[testX.length];
+		for(int i = 0; i < ret.length; i++) ret[i] = asPrinted(Math.max(intercept + slope * testX[i], 0));
+		return ret;
+	}
+
+}
@@ -27,12 +27,17 @@
  */
 package gdelt.predictors;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Predictor_Factory {
 
-	private static Map<Predictor.PREDICTION_METHOD, Predictor> predictorMap = new HashMap<Predictor.PREDICTION_METHOD, Predictor>();
+	// Shared by the explorer's worker threads (see GDELT_Explorer_Iterated.evaluationThreads)
+	private static ConcurrentHashMap<Predictor.PREDICTION_METHOD, Predictor> predictorMap = new ConcurrentHashMap<Predictor.PREDICTION_METHOD, Predictor>();
+	
+	// True to make the PY_ predictions in Java (see getNative), rather than by
+	// their Python scripts; off until Predictor_Parity has been run against the
+	// scripts with the real sklearn and pandas
+	public static boolean nativePredictors = false;
 	
 	public static Predictor get(Predictor.PREDICTION_METHOD method) {
 		Predictor predictor = predictorMap.get(method);
@@ -55,13 +60,32 @@ public class Predictor_Factory {
 				break;
 			}
 			default:{
-				if(method.getScriptPath() != null) {
+				if(nativePredictors) predictor = getNative(method);
+				if(predictor == null && method.getScriptPath() != null) {
 					predictor = new Predictor_Python(method.getScriptPath());
 				}
 			}
 		}
-		if(predictorMap != null) predictorMap.put(method,  predictor);
-		return predictor;
+		if(predictor == null) return null;
+		Predictor existing = predictorMap.putIfAbsent(method, predictor); // Another thread may have made one first
+		return existing != null ? existing : predictor;
+	}
+	
+	// The Java predictor that makes the predictions a Python script would, if there is one;
+	// it stands in for the script only with nativePredictors (Predictor_Parity checks it)
+	static Predictor getNative(Predictor.PREDICTION_METHOD method) {
+		switch(method) {
+			case PY_LR:                            return new Predictor_Least_Squares(false);
+			case PY_LR_WEIGHT:                     return new Predictor_Least_Squares(true);
+			case PY_LASSO:                         return new Predictor_Elastic_Net(0.1, 1.0);
+			case PY_Elastic_Net:                   return new Predictor_Elastic_Net(1.0, 0.5);
+			case PY_Gradient_Boost:                return new Predictor_Gradient_Boost();
+			case PY_REPLAY_ONEBYONE__UPDATE_GDELT: return new Predictor_Replay_Nearest(Predictor_Replay_Nearest.REPLAY.ONE_BY_ONE, 7, true);
+			case PY_REPLAY_ONEBYONE_7DAYS_NOGDELT: return new Predictor_Replay_Nearest(Predictor_Replay_Nearest.REPLAY.ONE_BY_ONE, 7, false);
+			case PY_REPLAY_WHOLE_28DAYS_NOGDELT:   return new Predictor_Replay_Nearest(Predictor_Replay_Nearest.REPLAY.WHOLE, 28, false);
+			case PY_REPLAY_WHOLE_28DAYS_GDELT:     return new Predictor_Replay_Nearest(Predictor_Replay_Nearest.REPLAY.WHOLE, 28, true);
+			default:                               return null;
+		}
 	}
 	
 }
@@ -0,0 +1,326 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.predictors;
+
+import java.util.Arrays;
+
+import gdelt.utils.IO;
+import gdelt.utils.ZeroIndexedSeries;
+
+/**
+ * Gradient boosted regression trees on the GDELT counts, after
+ * pscripts/predict_gradient_boost.py, which fits them with sklearn's
+ * GradientBoostingRegressor (PY_Gradient_Boost): squared error loss, 500
+ * trees of depth at most 4, nodes of fewer than 5 days not split, and a
+ * learning rate of 0.01.
+ *
+ * The fit starts from the mean count. Each tree is fit to the residuals, and
+ * adds the learning rate times the mean residual of the leaf a day falls in.
+ * A node is split at the midpoint between two adjacent GDELT counts that
+ * best separates the residuals (by the Friedman MSE criterion, the first
+ * best split in order of count), unless its residuals are all the same.
+ * Counts are compared as floats.
+ *
+ * The sums are accumulated in the order that sklearn's source (its tree
+ * builder, splitter and criterion, and numpy's pairwise sum for the mean)
+ * accumulates them, so that the rounding is the same: each node's days are
+ * held in the order its parent left them, and sorted by count (sklearn's
+ * introsort, which need not keep equal counts in order) before it is split.
+ * This has been checked against a transcription of that source, not against
+ * sklearn itself; see Predictor_Factory.nativePredictors.
+ *
+ * With one feature, the days in every node are a run of the days sorted by
+ * GDELT count, as are the days to predict that fall in it; so each tree is
+ * grown and applied over runs, without being kept.
+ */
+public class Predictor_Gradient_Boost extends Predictor {
+
+	private static final double EPSILON           = Math.ulp(1.0); // As sklearn's trees
+	private static final double FEATURE_THRESHOLD = 1e-7;
+	private static final int    PAIRWISE_BLOCK    = 128;           // As numpy's pairwise sum
+
+	private final int    trees;
+	private final int    maxDepth;
+	private final int    minSamplesSplit;
+	private final double learningRate;
+
+	public Predictor_Gradient_Boost() {
+		this(500, 4, 5, 0.01);
+	}
+
+	public Predictor_Gradient_Boost(int trees, int maxDepth, int minSamplesSplit, double learningRate) {
+		this.trees           = trees;
+		this.maxDepth        = maxDepth;
+		this.minSamplesSplit = minSamplesSplit;
+		this.learningRate    = learningRate;
+	}
+
+	// The state of one fit
+	private static class Fit {
+		final float[]  x;         // The training days' counts,
+		final double[] y;         // social media counts,
+		final double[] fit;       // fitted values
+		final double[] residual;  // and residuals
+		final int[]    samples;   // The training days, in the order the current tree holds them
+		final float[]  xf;        // Their counts, while a node's days are sorted
+		final float[]  testX;     // The counts of the days to predict, in order,
+		final double[] predicted; // and their predictions
+		int            test;      // The first day to predict not yet in a leaf of the current tree
+
+		Fit(int n, int tests) {
+			x         = new float[n];
+			y         = new double[n];
+			fit       = new double[n];
+			residual  = new double[n];
+			samples   = new int[n];
+			xf        = new float[n];
+			testX     = new float[tests];
+			predicted = new double[tests];
+		}
+	}
+
+	@Override
+	public double[] getPredictions(ZeroIndexedSeries testData, ZeroIndexedSeries trainData) {
+		double[] trainX = testData.getBaseValues();
+		double[] trainY = trainData.getBaseValues();
+		double[] testX  = testData.getPredictions();
+		int      n      = trainX.length;
+		Fit      fit    = new Fit(n, testX.length);
+
+		int[] testOrder = sortedOrder(testX);
+		for(int i = 0; i < n; i++) {
+			fit.x[i] = (float)trainX[i];
+			fit.y[i] = trainY[i];
+		}
+		double mean = pairwiseSum(fit.y, 0, n) / n;
+		for(int i = 0; i < testX.length; i++) fit.testX[i] = (float)testX[testOrder[i]];
+		Arrays.fill(fit.fit, mean);
+		Arrays.fill(fit.predicted, mean);
+
+		for(int t = 0; t < trees; t++) {
+			for(int i = 0; i < n; i++) {
+				fit.residual[i] = fit.y[i] - fit.fit[i];
+				fit.samples[i]  = i;
+			}
+			fit.test = 0;
+			grow(fit, 0, n, 0, Double.POSITIVE_INFINITY, Double.NaN);
+		}
+		if(IO.isLogging(IO.LEVEL.LEVEL_4)) IO.log(IO.LEVEL.LEVEL_4, "Predictor_Gradient_Boost: " + trees + " trees from a mean of " + mean);
+
+		double[] ret = new double[testX.length];
+		for(int i = 0; i < ret.length; i++) ret[testOrder[i]] = asPrinted(Math.max(fit.predicted[i], 0));
+		return ret;
+	}
+
+	// Grows the node of the training days from to to (exclusive) of samples, at
+	// the given depth and with the given impurity (worked out here for the root,
+	// and by the parent's split otherwise), and adds its leaves' values to the fit
+	// and to the predictions of the days to predict that fall in them: those not
+	// in a leaf to its left, with counts at or below bound (the threshold of the
+	// split it is left of, if any)
+	private void grow(Fit fit, int from, int to, int depth, double bound, double impurity) {
+		int    n     = to - from;
+		double sum   = 0;
+		double sumSq = 0;
+		for(int p = from; p < to; p++) {
+			double r = fit.residual[fit.samples[p]];
+			sum   += r;
+			sumSq += r * r;
+		}
+		if(depth == 0) impurity = sumSq / n - (sum / n) * (sum / n);
+
+		int    split     = to; // The first day right of the best split, if there is one
+		double threshold = 0;
+		if(depth < maxDepth && n >= minSamplesSplit && impurity > EPSILON) {
+			for(int p = from; p < to; p++) fit.xf[p] = fit.x[fit.samples[p]];
+			sort(fit.xf, fit.samples, from, n);
+			double best = Double.NEGATIVE_INFINITY;
+			double left = 0;
+			int    pos  = from;
+			for(int p = from + 1; p < to; p++) {
+				if(fit.xf[p] <= fit.xf[p - 1] + FEATURE_THRESHOLD) continue; // Not between two different counts
+				left = sumLeft(fit, to, pos, p, sum, left);
+				pos  = p;
+				double nLeft       = p - from;
+				double nRight      = to - p;
+				double diff        = nRight * left - nLeft * (sum - left);
+				double improvement = diff * diff / (nLeft * nRight);
+				if(improvement > best) {
+					best      = improvement;
+					split     = p;
+					threshold = fit.xf[p - 1] / 2.0 + fit.xf[p] / 2.0;
+					if(threshold == fit.xf[p] || Double.isInfinite(threshold)) threshold = fit.xf[p - 1];
+				}
+			}
+		}
+
+		if(split == to) { // A leaf
+			double value = learningRate * (sum / n);
+			for(int p = from; p < to; p++) fit.fit[fit.samples[p]] += value;
+			while(fit.test < fit.testX.length && (bound == Double.POSITIVE_INFINITY || fit.testX[fit.test] <= bound)) {
+				fit.predicted[fit.test++] += value;
+			}
+			return;
+		}
+		// sklearn's partition of the days about the threshold leaves the left days
+		// in place, and moves the first of the right days to the end
+		int first = fit.samples[split];
+		System.arraycopy(fit.samples, split + 1, fit.samples, split, to - split - 1);
+		fit.samples[to - 1] = first;
+		// The children's impurities, from the sums either side
+		double left   = sumLeft(fit, to, from, split, sum, 0);
+		double leftSq = 0;
+		for(int p = from; p < split; p++) {
+			double r = fit.residual[fit.samples[p]];
+			leftSq += r * r;
+		}
+		double nLeft  = split - from;
+		double nRight = to - split;
+		grow(fit, from,  split, depth + 1, threshold, leftSq / nLeft - (left / nLeft) * (left / nLeft));
+		grow(fit, split, to,    depth + 1, bound,     (sumSq - leftSq) / nRight - ((sum - left) / nRight) * ((sum - left) / nRight));
+	}
+
+	// The sum of the residuals of a node's days before newPos, given their sum
+	// before pos, as sklearn's criterion updates it: by adding the days between,
+	// or, where fewer days follow newPos, by taking those from the node's sum
+	private static double sumLeft(Fit fit, int to, int pos, int newPos, double sum, double left) {
+		if(newPos - pos <= to - newPos) {
+			for(int p = pos; p < newPos; p++) left += fit.residual[fit.samples[p]];
+			return left;
+		}
+		left = sum;
+		for(int p = to - 1; p >= newPos; p--) left -= fit.residual[fit.samples[p]];
+		return left;
+	}
+
+	// The sum of n values from from, as numpy's pairwise sum (by which the mean is found)
+	private static double pairwiseSum(double[] values, int from, int n) {
+		if(n < 8) {
+			double ret = 0;
+			for(int i = from; i < from + n; i++) ret += values[i];
+			return ret;
+		}
+		if(n <= PAIRWISE_BLOCK) {
+			double[] r = Arrays.copyOfRange(values, from, from + 8);
+			int i = 8;
+			for(; i < n - n % 8; i += 8) {
+				for(int j = 0; j < 8; j++) r[j] += values[from + i + j];
+			}
+			double ret = ((r[0] + r[1]) + (r[2] + r[3])) + ((r[4] + r[5]) + (r[6] + r[7]));
+			for(; i < n; i++) ret += values[from + i];
+			return ret;
+		}
+		int half = n / 2;
+		half -= half % 8;
+		return pairwiseSum(values, from, half) + pairwiseSum(values, from + half, n - half);
+	}
+
+	// Sorts n of the counts from start, with the days they are of, as sklearn's
+	// splitter does: by introsort, with a median of three pivot and a three-way
+	// partition
+	private static void sort(float[] xf, int[] samples, int start, int n) {
+		if(n == 0) return;
+		introsort(xf, samples, start, n, 2 * (int)Math.log(n));
+	}
+
+	private static void introsort(float[] xf, int[] samples, int start, int n, int maxDepth) {
+		while(n > 1) {
+			if(maxDepth <= 0) {
+				heapsort(xf, samples, start, n);
+				return;
+			}
+			maxDepth--;
+			float pivot = median3(xf, start, n);
+			int i = 0, l = 0, r = n;
+			while(i < r) {
+				if(xf[start + i] < pivot)      swap(xf, samples, start + i++, start + l++);
+				else if(xf[start + i] > pivot) swap(xf, samples, start + i,   start + --r);
+				else                           i++;
+			}
+			introsort(xf, samples, start, l, maxDepth);
+			start += r;
+			n     -= r;
+		}
+	}
+
+	private static float median3(float[] xf, int start, int n) {
+		float a = xf[start], b = xf[start + n / 2], c = xf[start + n - 1];
+		if(a < b) {
+			if(b < c)      return b;
+			else if(a < c) return c;
+			else           return a;
+		}
+		else if(b < c) {
+			if(a < c) return a;
+			else      return c;
+		}
+		return b;
+	}
+
+	private static void heapsort(float[] xf, int[] samples, int start, int n) {
+		for(int root = (n - 2) / 2; root >= 0; root--) siftDown(xf, samples, start, root, n);
+		for(int end = n - 1; end > 0; end--) {
+			swap(xf, samples, start, start + end);
+			siftDown(xf, samples, start, 0, end);
+		}
+	}
+
+	private static void siftDown(float[] xf, int[] samples, int start, int root, int end) {
+		while(true) {
+			int child = root * 2 + 1;
+			int max   = root;
+			if(child < end && xf[start + max] < xf[start + child])         max = child;
+			if(child + 1 < end && xf[start + max] < xf[start + child + 1]) max = child + 1;
+			if(max == root) return;
+			swap(xf, samples, start + root, start + max);
+			root = max;
+		}
+	}
+
+	private static void swap(float[] xf, int[] samples, int i, int j) {
+		float x    = xf[i];
+		xf[i]      = xf[j];
+		xf[j]      = x;
+		int s      = samples[i];
+		samples[i] = samples[j];
+		samples[j] = s;
+	}
+
+	// The indices of the values, in order of the values as floats (by insertion;
+	// there are a few dozen)
+	private static int[] sortedOrder(double[] values) {
+		int[] ret = new int[values.length];
+		for(int i = 0; i < ret.length; i++) {
+			int j = i;
+			for(; j > 0 && Float.compare((float)values[ret[j - 1]], (float)values[i]) > 0; j--) ret[j] = ret[j - 1];
+			ret[j] = i;
+		}
+		return ret;
+	}
+
+}
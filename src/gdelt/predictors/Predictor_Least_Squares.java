@@ -0,0 +1,97 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.predictors;
+
+import gdelt.utils.IO;
+import gdelt.utils.ZeroIndexedSeries;
+
+/**
+ * Ordinary least squares of the social media counts on the GDELT counts, the
+ * fit pscripts/predict_lr.py makes with sklearn's LinearRegression (PY_LR),
+ * or, if weighted, the fit pscripts/predict_lr_weighted.py makes
+ * (PY_LR_WEIGHT): each day with WEIGHT_FROM or more counts weighs WEIGHT
+ * times as much as the others.
+ *
+ * The fit is worked out in closed form, where sklearn solves the least
+ * squares problem numerically, so the two can differ in the last bits; the
+ * rounding to six places usually hides this. It has been checked against a
+ * reimplementation of the fit, not against sklearn itself (see
+ * Predictor_Factory.nativePredictors).
+ *
+ * Unlike Predictor_LR (commons-math's SimpleRegression), a fit to GDELT
+ * counts that never change has slope 0, as sklearn's does, rather than NaN.
+ */
+public class Predictor_Least_Squares extends Predictor {
+
+	public static final double WEIGHT_FROM = 10000;
+	public static final double WEIGHT      = 1000;
+
+	private final boolean weighted;
+
+	public Predictor_Least_Squares(boolean weighted) {
+		this.weighted = weighted;
+	}
+
+	@Override
+	public double[] getPredictions(ZeroIndexedSeries testData, ZeroIndexedSeries trainData) {
+		double[] trainX = testData.getBaseValues();
+		double[] trainY = trainData.getBaseValues();
+		double[] testX  = testData.getPredictions();
+
+		// The (weighted) means, which the data are centered on
+		double weights = 0, xMean = 0, yMean = 0;
+		for(int i = 0; i < trainX.length; i++) {
+			double w = weightOf(trainY[i]);
+			weights += w;
+			xMean   += w * trainX[i];
+			yMean   += w * trainY[i];
+		}
+		xMean /= weights;
+		yMean /= weights;
+
+		double sumXX = 0, sumXY = 0;
+		for(int i = 0; i < trainX.length; i++) {
+			double w  = weightOf(trainY[i]);
+			double dx = trainX[i] - xMean;
+			sumXX += w * dx * dx;
+			sumXY += w * dx * (trainY[i] - yMean);
+		}
+		double slope     = sumXX == 0 ? 0 : sumXY / sumXX;
+		double intercept = yMean - slope * xMean;
+		if(IO.isLogging(IO.LEVEL.LEVEL_4)) IO.log(IO.LEVEL.LEVEL_4, "Predictor_Least_Squares: intercept " + intercept + " slope " + slope + (weighted ? " (weighted)" : ""));
+
+		double[] ret = new double[testX.length];
+		for(int i = 0; i < ret.length; i++) ret[i] = asPrinted(Math.max(intercept + slope * testX[i], 0));
+		return ret;
+	}
+
+	private double weightOf(double y) {
+		return weighted && y >= WEIGHT_FROM ? WEIGHT : 1;
+	}
+
+}
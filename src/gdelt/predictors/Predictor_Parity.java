@@ -0,0 +1,229 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.predictors;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import gdelt.utils.ZeroIndexedSeries;
+
+/**
+ * Checks the Java predictors against the Python scripts they stand in for
+ * (see Predictor_Factory.nativePredictors): each prediction method is given
+ * the same inputs both ways, and the predictions must be the same to the last
+ * bit (or both fail).
+ *
+ * Usage: Predictor_Parity inputs [METHOD ...]
+ *
+ * The inputs are either a social media counts file (as
+ * timeSeriesDataLocation, e.g. ./examples/DummySocialMediaCounts.csv), each
+ * of whose series is predicted from each of the others, standing in for GDELT
+ * counts, over windows of TRAIN_DAYS and PREDICT_DAYS a week apart; or
+ * recorded inputs, one prediction to a line, each line ending in the three
+ * comma-separated lists a script is given (as the command lines
+ * Predictor_Python logs at LEVEL_4 with usePool false; in a Runner, set
+ * pythonPool = FALSE and logLevel = 4). With no methods given, every PY_
+ * method with a Java predictor is checked. Run from the directory the
+ * Runner is run from, so that the scripts are in ./pscripts/.
+ */
+public class Predictor_Parity {
+
+	public static final int[] TRAIN_DAYS   = {28, 56};
+	public static final int[] PREDICT_DAYS = {7, 14, 28};
+	public static final int   SHOWN        = 5; // Disagreements shown for each method
+
+	public static void main(String[] args) {
+		if(args.length < 1) {
+			System.out.println("Usage: Predictor_Parity inputs [METHOD ...]");
+			return;
+		}
+		List<Predictor.PREDICTION_METHOD> methods = new ArrayList<Predictor.PREDICTION_METHOD>();
+		for(int i = 1; i < args.length; i++) methods.add(Predictor.PREDICTION_METHOD.valueOf(args[i]));
+		if(methods.isEmpty()) {
+			for(Predictor.PREDICTION_METHOD method: Predictor.PREDICTION_METHOD.values()) {
+				if(method.getScriptPath() != null && Predictor_Factory.getNative(method) != null) methods.add(method);
+			}
+		}
+		try {
+			List<double[][]> inputs = args[0].endsWith(".csv") ? windows(args[0]) : recorded(args[0]);
+			System.out.println(inputs.size() + " inputs from " + args[0]);
+			boolean agreed = true;
+			for(Predictor.PREDICTION_METHOD method: methods) agreed &= check(method, inputs);
+			System.out.println(agreed ? "All agree" : "Some disagree");
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+		}
+		finally {
+			Python_Worker_Pool.shutdown();
+		}
+	}
+
+	// Compares the method's Java and Python predictions for each of the inputs
+	private static boolean check(Predictor.PREDICTION_METHOD method, List<double[][]> inputs) throws Exception {
+		final Predictor javaPredictor   = Predictor_Factory.getNative(method);
+		final Predictor pythonPredictor = new Predictor_Python(method.getScriptPath());
+		if(javaPredictor == null) {
+			System.out.println(method + ": no Java predictor");
+			return false;
+		}
+		// The scripts' predictions are made in parallel, by the worker pool
+		ExecutorService        executor = Executors.newFixedThreadPool(Math.max(1, Python_Worker_Pool.workers));
+		List<Future<double[]>> scripted = new ArrayList<Future<double[]>>();
+		for(final double[][] input: inputs) {
+			scripted.add(executor.submit(new Callable<double[]>() {
+				@Override
+				public double[] call() {
+					return pythonPredictor.getPredictions(gdeltOf(input), socialMediaOf(input));
+				}
+			}));
+		}
+		int  disagree = 0;
+		int  failed   = 0;
+		long nanos    = 0;
+		for(int i = 0; i < inputs.size(); i++) {
+			double[][] input  = inputs.get(i);
+			long       start  = System.nanoTime();
+			double[]   java   = javaPredictor.getPredictions(gdeltOf(input), socialMediaOf(input));
+			nanos += System.nanoTime() - start;
+			double[]   python = scripted.get(i).get();
+			if(python == null) failed++;
+			if(Arrays.equals(java, python)) continue;
+			if(disagree++ < SHOWN) {
+				System.out.println(method + " disagrees on " + join(input[0]) + " " + join(input[1]) + " " + join(input[2]));
+				System.out.println("   Java:   " + (java == null ? "none" : join(java)));
+				System.out.println("   Python: " + (python == null ? "none" : join(python)));
+			}
+		}
+		executor.shutdown();
+		System.out.println(method + ": " + (inputs.size() - disagree) + " of " + inputs.size() + " agree (" + failed + " with no predictions from the script); "
+		                   + (inputs.isEmpty() ? 0 : nanos / inputs.size() / 1000) + " us for each Java prediction");
+		return disagree == 0;
+	}
+
+	private static ZeroIndexedSeries gdeltOf(double[][] input) {
+		return seriesOf(input[0], input[2]);
+	}
+
+	private static ZeroIndexedSeries socialMediaOf(double[][] input) {
+		return seriesOf(input[1], new double[input[2].length]); // The counts to come are not used
+	}
+
+	private static ZeroIndexedSeries seriesOf(double[] train, double[] test) {
+		double[] values = Arrays.copyOf(train, train.length + test.length);
+		System.arraycopy(test, 0, values, train.length, test.length);
+		return new ZeroIndexedSeries(train.length, values);
+	}
+
+	// Windows of each series of a counts file, each with each other series as its GDELT counts
+	private static List<double[][]> windows(String file) throws IOException {
+		Map<String, List<Double>> series = new LinkedHashMap<String, List<Double>>();
+		try(BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] values = line.split(",");
+				if(values.length < 4 || !values[3].trim().matches("-?[0-9.]+")) continue; // e.g. the header
+				String label = values[0] + "_" + values[1];
+				if(!series.containsKey(label)) series.put(label, new ArrayList<Double>());
+				series.get(label).add(Double.parseDouble(values[3].trim()));
+			}
+		}
+		List<double[][]> ret = new ArrayList<double[][]>();
+		for(List<Double> x: series.values()) {
+			for(List<Double> y: series.values()) {
+				if(x == y) continue;
+				int days = Math.min(x.size(), y.size());
+				for(int train: TRAIN_DAYS) {
+					for(int predict: PREDICT_DAYS) {
+						for(int from = 0; from + train + predict <= days; from += 7) {
+							ret.add(new double[][] {
+								toArray(x, from, from + train),
+								toArray(y, from, from + train),
+								toArray(x, from + train, from + train + predict)
+							});
+						}
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	// Inputs recorded one to a line, as the last three words of the line
+	private static List<double[][]> recorded(String file) throws IOException {
+		List<double[][]> ret = new ArrayList<double[][]>();
+		try(BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] words = line.trim().split("\\s+");
+				if(words.length < 3) continue;
+				try {
+					ret.add(new double[][] {
+						parse(words[words.length - 3]),
+						parse(words[words.length - 2]),
+						parse(words[words.length - 1])
+					});
+				}
+				catch(NumberFormatException e) {
+					// Not a recorded input
+				}
+			}
+		}
+		return ret;
+	}
+
+	private static double[] toArray(List<Double> values, int from, int to) {
+		double[] ret = new double[to - from];
+		for(int i = from; i < to; i++) ret[i - from] = values.get(i);
+		return ret;
+	}
+
+	private static double[] parse(String values) {
+		String[] parts = values.split(",");
+		double[] ret   = new double[parts.length];
+		for(int i = 0; i < parts.length; i++) ret[i] = Double.parseDouble(parts[i]);
+		return ret;
+	}
+
+	private static String join(double[] values) {
+		StringBuilder ret = new StringBuilder();
+		for(int i = 0; i < values.length; i++) ret.append(i > 0 ? "," : "").append(values[i]);
+		return ret.toString();
+	}
+
+}
@@ -36,7 +36,10 @@ import gdelt.utils.IO;
 import gdelt.utils.ZeroIndexedSeries;
 
 /**
- * Wrapper class that uses a python script to execute prediction.
+ * Wrapper class that uses a python script to execute prediction. The
+ * scripts are run by a pool of long-lived Python workers (see
+ * Python_Worker_Pool), or, if usePool is false, by a new process for each
+ * prediction.
  */
 public class Predictor_Python extends Predictor{
 	
@@ -64,6 +67,9 @@ public class Predictor_Python extends Predictor{
 	}
 
 	
+	// False to start a Python process for each prediction, as before the worker pool
+	public static boolean usePool = true;
+	
 	String scriptName = null;
 	
 	public Predictor_Python(String script) {
@@ -73,12 +79,29 @@ public class Predictor_Python extends Predictor{
 	
 	@Override
 	public double[] getPredictions(ZeroIndexedSeries testData, ZeroIndexedSeries trainData) {
-	
-		// Need to launch the python script as a separate process here...
+		double[] trainX = testData.getBaseValues();
+		double[] trainY = trainData.getBaseValues();
+		double[] testX  = testData.getPredictions();
+		if(!usePool) return runOnce(trainX, trainY, testX);
 		
-		String trainX = convertArrayToString(testData.getBaseValues());
-		String trainY = convertArrayToString(trainData.getBaseValues());
-		String testX =  convertArrayToString(testData.getPredictions());
+		IO.log(IO.LEVEL.LEVEL_4, "RUNNING: " + scriptName + " in a Python worker");
+		double[] ret = null;
+		try {
+			ret = Python_Worker_Pool.get().predict(scriptName, trainX, trainY, testX);
+		}
+		catch(Python_Worker_Pool.PredictionException E) {
+			IO.log(IO.LEVEL.LEVEL_0, "Python worker failed to run " + scriptName + ": " + E.getMessage());
+		}
+        if(ret == null) IO.log(IO.LEVEL.LEVEL_0, "NULL ARRAY RETURNED");
+        else            IO.log(IO.LEVEL.LEVEL_4, "RETURNED: " + ret.length);
+		return ret;
+	}
+	
+	// Launches the python script as a separate process
+	private double[] runOnce(double[] trainXValues, double[] trainYValues, double[] testXValues) {
+		String trainX = convertArrayToString(trainXValues);
+		String trainY = convertArrayToString(trainYValues);
+		String testX =  convertArrayToString(testXValues);
 		String command = "python3 " + scriptName + " " + trainX + " " + trainY + " " + testX; 
 		IO.log(IO.LEVEL.LEVEL_4, "RUNNING: " + command);
         Runtime run  = Runtime.getRuntime(); 
@@ -0,0 +1,144 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.predictors;
+
+import gdelt.utils.IO;
+import gdelt.utils.ZeroIndexedSeries;
+
+/**
+ * Replays the social media counts that followed the past day most like the
+ * last one, as the pscripts/predict_replay_* scripts do. The past days
+ * looked at are every period-th day back from the last (the same day of the
+ * week, for a period of 7), and the nearest is the one whose count (with
+ * useGdelt, whose GDELT and social media counts, by Euclidean distance) is
+ * closest to the last day's; of days equally close, the latest.
+ *
+ * ONE_BY_ONE predicts a day at a time: each prediction is the count of the
+ * day after the nearest, and is then taken as the day's count (with that
+ * day's GDELT count), so that the next is predicted from it. This is
+ * PY_REPLAY_ONEBYONE__UPDATE_GDELT (predict_replay_update_onebyone_Gdelt.py)
+ * and PY_REPLAY_ONEBYONE_7DAYS_NOGDELT (predict_replay_onebyone_No_Gdelt.py).
+ *
+ * WHOLE replays the counts of the days after the nearest to the last
+ * training day, in order. This is PY_REPLAY_WHOLE_28DAYS_GDELT
+ * (predict_replay_whole_28Days_Gdelt.py) and PY_REPLAY_WHOLE_28DAYS_NOGDELT
+ * (predict_replay_whole_28days_No_Gdelt.py); as the GDELT script does, with
+ * useGdelt the first day replayed is predicted twice, and the rest a day
+ * late.
+ *
+ * Where a script fails (ONE_BY_ONE with no past day to compare, or WHOLE
+ * running past the last training day) there are no predictions (null), as
+ * there are none from the script. Otherwise the predictions are the
+ * scripts', to the six places they print.
+ *
+ * A script given no days to predict gets an empty list of counts, which it
+ * reads as one day with an empty count. As the scripts do, WHOLE and
+ * ONE_BY_ONE without useGdelt then predict that one day, and ONE_BY_ONE with
+ * useGdelt, which needs its count, fails.
+ */
+public class Predictor_Replay_Nearest extends Predictor {
+
+	public static enum REPLAY {
+		ONE_BY_ONE,
+		WHOLE
+	}
+
+	private static final double FARTHEST = 1000000000; // No day this far off or farther is nearest, as in the scripts
+
+	private final REPLAY  replay;
+	private final int     period;
+	private final boolean useGdelt;
+
+	public Predictor_Replay_Nearest(REPLAY replay, int period, boolean useGdelt) {
+		this.replay   = replay;
+		this.period   = period;
+		this.useGdelt = useGdelt;
+	}
+
+	@Override
+	public double[] getPredictions(ZeroIndexedSeries testData, ZeroIndexedSeries trainData) {
+		double[] trainX = testData.getBaseValues();
+		double[] trainY = trainData.getBaseValues();
+		double[] testX  = testData.getPredictions();
+		int      n      = trainY.length;
+		if(n == 0) return noPredictions();
+		if(testX.length == 0) { // One day with no count, as the scripts read it
+			if(replay == REPLAY.ONE_BY_ONE && useGdelt) return noPredictions();
+			testX = new double[1];
+		}
+
+		double[] ret = new double[testX.length];
+		if(replay == REPLAY.WHOLE) {
+			int nearest = Math.max(nearest(trainX, trainY, n, trainX[n - 1], trainY[n - 1]), 0); // The scripts take the first day, if none is near
+			for(int i = 0; i < ret.length; i++) {
+				int day = nearest + 1 + (useGdelt ? Math.max(i - 1, 0) : i);
+				if(day >= n) return noPredictions();
+				ret[i] = asPrinted(trainY[day]);
+			}
+			return ret;
+		}
+
+		// The days so far, with each prediction added as it is made
+		double[] x = new double[n + testX.length];
+		double[] y = new double[n + testX.length];
+		System.arraycopy(trainX, 0, x, 0, Math.min(trainX.length, n));
+		System.arraycopy(trainY, 0, y, 0, n);
+		int nearest = nearest(x, y, n, x[n - 1], y[n - 1]);
+		for(int i = 0; i < ret.length; i++) {
+			if(nearest < 0) return noPredictions();
+			double prediction = y[nearest + 1];
+			ret[i]        = asPrinted(prediction);
+			x[n + i]      = testX[i];
+			y[n + i]      = prediction;
+			nearest       = nearest(x, y, n + i + 1, testX[i], prediction);
+		}
+		if(nearest < 0) return noPredictions(); // The scripts look once more, after the last prediction
+		return ret;
+	}
+
+	// The latest of the nearest days to (lastX, lastY), of every period-th day
+	// back from the last of the first length days; -1 if there is none
+	private int nearest(double[] x, double[] y, int length, double lastX, double lastY) {
+		double min = FARTHEST;
+		int    ret = -1;
+		for(int day = length - 1 - period; day >= 0; day -= period) {
+			double distance = useGdelt ? Math.sqrt(Math.pow(x[day] - lastX, 2) + Math.pow(y[day] - lastY, 2)) : Math.abs(y[day] - lastY);
+			if(min > distance) {
+				min = distance;
+				ret = day;
+			}
+		}
+		return ret;
+	}
+
+	private double[] noPredictions() {
+		IO.log(IO.LEVEL.LEVEL_0, "Predictor_Replay_Nearest(" + replay + ", " + period + (useGdelt ? ", GDELT" : "") + "): no predictions");
+		return null;
+	}
+
+}
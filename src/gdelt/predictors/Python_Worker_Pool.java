@@ -0,0 +1,342 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.predictors;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gdelt.utils.IO;
+
+/**
+ * A pool of long-lived Python processes (pscripts/predict_worker.py) that run
+ * the prediction scripts for Predictor_Python, so that the interpreter is
+ * started and sklearn and pandas are imported once per worker rather than
+ * once per prediction.
+ *
+ * Requests and replies are length-prefixed binary frames over each worker's
+ * stdin and stdout (the layout is described in predict_worker.py), with the
+ * series as raw doubles rather than text on a command line. Any number of
+ * requests may be sent to a worker before its replies come back; each request
+ * goes to the live worker with the fewest outstanding, and its reply is
+ * matched to it by id. A worker that exits, or does not answer a request
+ * within timeoutSeconds of its being sent, is killed; its outstanding
+ * requests are tried again (up to attempts times in all), and it is started
+ * again when next needed.
+ *
+ * The pool is started by the first Python prediction, with one worker per
+ * processor unless workers is set (see the Runner's pythonWorkers and
+ * pythonTimeout properties), and stopped by shutdown() or when the JVM exits.
+ */
+public class Python_Worker_Pool {
+
+	public static int    workers        = Runtime.getRuntime().availableProcessors();
+	public static long   timeoutSeconds = 300;
+	public static int    attempts       = 2;
+	public static String python         = "python3";
+	public static String workerScript   = "predict_worker.py";
+	public static File   directory      = new File("./pscripts/"); // Where the scripts are run, as by Predictor_Python before the pool
+
+	private static volatile Python_Worker_Pool pool   = null;
+	private static          boolean            hooked = false; // True once the pool is stopped on exit
+
+	/**
+	 * The pool, started if it has not been
+	 * @return
+	 */
+	public static synchronized Python_Worker_Pool get() {
+		if(pool == null) {
+			pool = new Python_Worker_Pool(Math.max(1, workers));
+			if(!hooked) {
+				Runtime.getRuntime().addShutdownHook(new Thread() {
+					@Override
+					public void run() {
+						shutdown();
+					}
+				});
+				hooked = true;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Stops every worker; a later prediction starts the pool again
+	 */
+	public static synchronized void shutdown() {
+		if(pool == null) return;
+		for(int i = 0; i < pool.slots.length; i++) {
+			Worker worker = pool.slots[i];
+			if(worker != null) worker.close();
+			pool.slots[i] = null;
+		}
+		pool = null;
+	}
+
+	// A request that failed, for a reason that trying it on another worker may not fix
+	public static class PredictionException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		public PredictionException(String message) {
+			super(message);
+		}
+	}
+
+	// A worker that died or was killed with the request outstanding
+	private static class WorkerFailure extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		WorkerFailure(String message) {
+			super(message);
+		}
+	}
+
+	private final Worker[]      slots;
+	private final AtomicInteger nextId = new AtomicInteger();
+
+	private Python_Worker_Pool(int size) {
+		slots = new Worker[size];
+	}
+
+	/**
+	 * The predictions of the script for testX, from trainX and trainY (as
+	 * "python3 script trainX trainY testX", run in the scripts' directory)
+	 * @param script
+	 * @param trainX
+	 * @param trainY
+	 * @param testX
+	 * @return
+	 * @throws PredictionException if the script fails, or no worker answers in attempts tries
+	 */
+	public double[] predict(String script, double[] trainX, double[] trainY, double[] testX) throws PredictionException {
+		String failure = null;
+		for(int attempt = 0; attempt < Math.max(1, attempts); attempt++) {
+			Worker worker = null;
+			int    id     = nextId.incrementAndGet();
+			try {
+				worker = choose();
+				CompletableFuture<double[]> reply = worker.send(id, script, trainX, trainY, testX);
+				return reply.get(timeoutSeconds, TimeUnit.SECONDS);
+			}
+			catch(TimeoutException e) {
+				failure = "no reply in " + timeoutSeconds + " seconds";
+				worker.fail(failure);
+			}
+			catch(IOException e) {
+				failure = e.getMessage();
+				if(worker != null) worker.fail(failure);
+			}
+			catch(ExecutionException e) {
+				if(e.getCause() instanceof PredictionException) throw (PredictionException)e.getCause();
+				failure = e.getCause().getMessage();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				if(worker != null) worker.forget(id);
+				throw new PredictionException("Interrupted while waiting for " + script);
+			}
+			IO.log(IO.LEVEL.LEVEL_1, "Python worker failed (" + failure + "); attempt " + (attempt + 1) + " of " + attempts + " for " + script);
+		}
+		throw new PredictionException("No Python worker could run " + script + ": " + failure);
+	}
+
+	// The live worker with the fewest requests outstanding; a slot whose worker has
+	// died is given a new one
+	private synchronized Worker choose() throws IOException {
+		if(pool != this) throw new IOException("The Python worker pool has been shut down");
+		Worker best = null;
+		for(int i = 0; i < slots.length; i++) {
+			if(slots[i] == null || !slots[i].isAlive()) {
+				if(slots[i] != null) IO.log(IO.LEVEL.LEVEL_1, "Restarting Python worker " + i);
+				slots[i] = new Worker(i);
+			}
+			if(best == null || slots[i].outstanding() < best.outstanding()) best = slots[i];
+		}
+		return best;
+	}
+
+	// One Python process, with a thread that reads its replies and one that drains its stderr
+	private static class Worker {
+		private final int              slot;
+		private final Process          process;
+		private final DataOutputStream out;
+		private final Map<Integer, CompletableFuture<double[]>> pending = new ConcurrentHashMap<Integer, CompletableFuture<double[]>>();
+		private volatile boolean       alive = true;
+
+		Worker(int slot) throws IOException {
+			this.slot = slot;
+			ProcessBuilder builder = new ProcessBuilder(python, "-u", workerScript);
+			builder.directory(directory);
+			process = builder.start();
+			out     = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+			Thread replies = new Thread("Python worker " + slot) {
+				@Override
+				public void run() {
+					readReplies();
+				}
+			};
+			Thread errors = new Thread("Python worker " + slot + " stderr") {
+				@Override
+				public void run() {
+					drainErrors();
+				}
+			};
+			replies.setDaemon(true);
+			errors.setDaemon(true);
+			replies.start();
+			errors.start();
+			IO.log(IO.LEVEL.LEVEL_1, "Started Python worker " + slot);
+		}
+
+		boolean isAlive() {
+			return alive && process.isAlive();
+		}
+
+		int outstanding() {
+			return pending.size();
+		}
+
+		CompletableFuture<double[]> send(int id, String script, double[] trainX, double[] trainY, double[] testX) throws IOException {
+			CompletableFuture<double[]> ret = new CompletableFuture<double[]>();
+			pending.put(id, ret);
+			byte[] name = script.getBytes(StandardCharsets.UTF_8);
+			int    size = 4 + 4 + name.length + 3 * 4 + 8 * (trainX.length + trainY.length + testX.length);
+			try {
+				synchronized(out) {
+					if(!alive) throw new IOException("Python worker " + slot + " has stopped");
+					out.writeInt(size);
+					out.writeInt(id);
+					out.writeInt(name.length);
+					out.write(name);
+					writeDoubles(trainX);
+					writeDoubles(trainY);
+					writeDoubles(testX);
+					out.flush();
+				}
+			}
+			catch(IOException e) {
+				pending.remove(id);
+				throw e;
+			}
+			return ret;
+		}
+
+		private void writeDoubles(double[] values) throws IOException {
+			out.writeInt(values.length);
+			for(double value: values) out.writeDouble(value);
+		}
+
+		void forget(int id) {
+			pending.remove(id);
+		}
+
+		private void readReplies() {
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+				while(true) {
+					in.readInt(); // The frame's length; the reply is read by its fields
+					int  id     = in.readInt();
+					byte status = in.readByte();
+					int  count  = in.readInt();
+					CompletableFuture<double[]> reply = pending.remove(id);
+					if(status == 0) {
+						double[] predictions = new double[count];
+						for(int i = 0; i < count; i++) predictions[i] = in.readDouble();
+						if(reply != null) reply.complete(predictions);
+					}
+					else {
+						byte[] message = new byte[count];
+						in.readFully(message);
+						if(reply != null) reply.completeExceptionally(new PredictionException(new String(message, StandardCharsets.UTF_8)));
+					}
+				}
+			}
+			catch(IOException e) {
+				fail(alive ? "Python worker " + slot + " exited (" + e + ")" : "Python worker " + slot + " was stopped");
+			}
+		}
+
+		private void drainErrors() {
+			try {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8));
+				String line;
+				while((line = reader.readLine()) != null) IO.log(IO.LEVEL.LEVEL_4, "Python worker " + slot + ": " + line);
+			}
+			catch(IOException e) {
+				// The worker has gone; readReplies reports it
+			}
+		}
+
+		// Kills the process, and fails every request still outstanding, so that it is tried again
+		void fail(String reason) {
+			synchronized(out) {
+				alive = false;
+			}
+			process.destroyForcibly();
+			for(Integer id: pending.keySet()) {
+				CompletableFuture<double[]> reply = pending.remove(id);
+				if(reply != null) reply.completeExceptionally(new WorkerFailure(reason));
+			}
+		}
+
+		// Asks the process to finish, by closing its input, and kills it if it does not
+		void close() {
+			synchronized(out) {
+				alive = false;
+				try {
+					out.close();
+				}
+				catch(IOException e) {
+					// Already gone
+				}
+			}
+			try {
+				if(!process.waitFor(5, TimeUnit.SECONDS)) process.destroyForcibly();
+			}
+			catch(InterruptedException e) {
+				process.destroyForcibly();
+				Thread.currentThread().interrupt();
+			}
+			fail("Python worker " + slot + " was stopped");
+		}
+	}
+
+}
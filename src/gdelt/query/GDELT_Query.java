@@ -32,9 +32,15 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -52,8 +58,11 @@ import gdelt.query.domains.components.DoubleQueryDomain;
 import gdelt.query.domains.components.OrderedSetQueryDomain;
 import gdelt.query.domains.components.UnorderedSetQueryDomain;
 import gdelt.server.elements.GDELT_Corpus;
+import gdelt.server.elements.GDELT_Event_Index;
+import gdelt.server.elements.GDELT_Event_Store;
 import gdelt.server.elements.GDELT_Global_Event;
 import gdelt.utils.IO;
+import gdelt.utils.RowBitmap;
 import gdelt.utils.TimeSeries;
 
 public class GDELT_Query implements Comparable<GDELT_Query>{
@@ -64,6 +73,25 @@ public class GDELT_Query implements Comparable<GDELT_Query>{
 	public static int MAX_VIZ_OFFSET = Integer.MIN_VALUE; // These are absurd values; they MUST be explicitly set to run the sim
 	public static int MIN_VIZ_OFFSET = Integer.MIN_VALUE;
 
+	public static final long SHIFT_STEP = 24; // The change that mutate makes to the shift, in hours
+
+	// How the rows that a query matches are found: by testing each row that
+	// the scan covers; by combining the store's bitmap indexes (see
+	// GDELT_Event_Index) and visiting only the rows in the result; or by
+	// testing blocks of rows a field at a time (see GDELT_Query_Kernel, which
+	// uses the Vector API where it is available) and visiting the rows that pass
+	public static enum EVALUATION_ENGINE {
+		SCAN,
+		BITMAP,
+		VECTOR
+	}
+
+	public static EVALUATION_ENGINE evaluationEngine = EVALUATION_ENGINE.SCAN;
+
+	// The most rows, as a part of the rows in the windows, for which the change
+	// from a base query's results is counted rather than the results themselves
+	private static final double MAX_CHANGED_FRACTION = 0.25;
+
 	
     private static GsonBuilder gsonBuilder = new GsonBuilder();
     private static Gson gsonInstance = new Gson(); 
@@ -74,7 +102,7 @@ public class GDELT_Query implements Comparable<GDELT_Query>{
 		gson = gsonBuilder.create();
     }
     
-	private static int createdNum = 0;
+	private static AtomicInteger createdNum = new AtomicInteger(); // Queries may be made on several threads
 	private        int order;
 	
 	@SerializedName("returnedValuesOnLastProcess")
@@ -87,6 +115,14 @@ public class GDELT_Query implements Comparable<GDELT_Query>{
 	
 	private TimeSeries result;
 
+	// The windows opened by openWindows, until they are closed by closeWindows
+	private transient StoreScan windowScan;
+
+	// The query that this one was made from by mutate, as it was then (the query
+	// itself, when mutate made a copy, or else a copy of it); its results, if
+	// known, need only be corrected for the change (see openWindows)
+	public transient GDELT_Query mutatedFrom;
+
 	@SerializedName("prediction_method")
 	public Predictor.PREDICTION_METHOD prediction_method = Predictor.PREDICTION_METHOD.RAW;
 	
@@ -161,17 +197,17 @@ public class GDELT_Query implements Comparable<GDELT_Query>{
 		return gsonInstance.fromJson(construct, GDELT_Query.class);		
 	}
 	
-	public GDELT_Query(){ 
-		order = createdNum++;
+	public GDELT_Query(){
+		order = createdNum.getAndIncrement();
 	}
 	
 	public GDELT_Query(int tMinimum, int tMaximum, Predictor.PREDICTION_METHOD predMethod) {
 		this(tMinimum, tMaximum, predMethod, INIT_METHOD.RANDOM);
-		order = createdNum++;
+		order = createdNum.getAndIncrement();
 	}
 	
 	public GDELT_Query(int tMinimum, int tMaximum, Predictor.PREDICTION_METHOD predMethod, INIT_METHOD init_method) {
-		order             = createdNum++;
+		order             = createdNum.getAndIncrement();
 		tMin              = tMinimum;
 		tMax              = tMaximum;
 		prediction_method = predMethod;
@@ -233,7 +269,6 @@ public class GDELT_Query implements Comparable<GDELT_Query>{
 				         actionLon.matches(article.ActionGeo_Long))));
 	}
 	
-	
 	public TimeSeries getResult(LocalDateTime zeroTime, int res, ChronoUnit resUnit, GDELT_Corpus corpus) {
 		return getResult(zeroTime, res, resUnit, corpus, false);
 	}
@@ -243,7 +278,7 @@ public class GDELT_Query implements Comparable<GDELT_Query>{
 		process(corpus, useDateAdded);
 		return getResult();
 	}
-	
+
 	protected void init(LocalDateTime zeroTime, int res, ChronoUnit resUnit) {
 		for(GDELT_Query query: childQueries) query.init(zeroTime, res, resUnit);
 		result = new TimeSeries(zeroTime, res, resUnit);
@@ -257,15 +292,777 @@ public class GDELT_Query implements Comparable<GDELT_Query>{
 		return process(corpus, null, useDateAdded);
 	}
 	
+	// Recording event weights needs the corpus's event objects: it must have
+	// been loaded with GDELT_Corpus.retainEventObjects set
 	public boolean process(GDELT_Corpus corpus, Map<LocalDateTime, Map<GDELT_Global_Event, Double>> eventWeights) {
 		return process(corpus, eventWeights, false);
 	}
 	
+	// Counts the matches of this query and its children into their results (as
+	// set up by init). Children neither count by date added nor record event
+	// weights, whatever is asked of their parent. Without event weights, the
+	// whole tree is counted in one pass over the store (see processTree). With
+	// them, the event objects are scanned, so the corpus must have been loaded
+	// with GDELT_Corpus.retainEventObjects set; an IllegalStateException is
+	// thrown otherwise
 	public boolean process(GDELT_Corpus corpus, Map<LocalDateTime, Map<GDELT_Global_Event, Double>> eventWeights, boolean useDateAdded) {
+		if(eventWeights != null && corpus.allEvents == null) {
+			throw new IllegalStateException("Event weights need the corpus's event objects; load it with GDELT_Corpus.retainEventObjects set");
+		}
+		if(eventWeights == null && !isOpen()) {
+			processTree(corpus, useDateAdded);
+			if(IO.log(IO.LEVEL.LEVEL_4, "Giving query result report")) {
+				result.report(IO.LEVEL.LEVEL_4);
+				IO.log(IO.LEVEL.LEVEL_4, "DONE WITH REPORT");
+			}
+			return returnedValuesOnLastProcess;
+		}
 		//IO.log(IO.LEVEL.LEVEL_3," ---------------      COUNT OF CHILD QUERIES          " + childQueries.size());
 		if(all) IO.log(IO.LEVEL.LEVEL_0, "PROCESSING QUERY WITH ALL VALUE: " + all);
 		if(multiplier > 1)IO.log(IO.LEVEL.LEVEL_4, "PROCESSING QUERY WITH MULTIPLIER VALUE: " + multiplier);
 		for(GDELT_Query query: childQueries) returnedValuesOnLastProcess = (query.process(corpus) | returnedValuesOnLastProcess); // Note: do not short circuit! 
+		if(eventWeights != null) processEvents(corpus, eventWeights, useDateAdded);
+		else                     processStore(storeToScan(corpus, useDateAdded), useDateAdded);
+		if(IO.log(IO.LEVEL.LEVEL_4, "Giving query result report")) {
+			result.report(IO.LEVEL.LEVEL_4);
+			IO.log(IO.LEVEL.LEVEL_4, "DONE WITH REPORT");
+		}
+		return returnedValuesOnLastProcess;
+	}
+
+	// As process, for the whole tree at once: each row of the store is read once
+	// and tested against every query in the tree that covers it. On a grid of
+	// whole hours or days this is the scan of getResults for one time zero, left
+	// untrimmed (when counting by date added or when the dates of the events are
+	// not all on the hour, only on a grid that places times by their hour; see
+	// TimeSeries.placesByHour); otherwise every query counts every row
+	private void processTree(GDELT_Corpus corpus, boolean useDateAdded) {
+		TimeSeries grid = new TimeSeries(result.getTZero(), result.getResolution(), result.getChronoUnit());
+		if(grid.hasEpochGrid() && ((!useDateAdded && corpus.store.eventsOnTheHour()) || grid.placesByHour())) {
+			List<TimeSeries> grids = new ArrayList<TimeSeries>();
+			grids.add(grid);
+			openWindows(corpus, grids, useDateAdded);
+			List<GDELT_Query> queries = new ArrayList<GDELT_Query>();
+			queries.add(this);
+			scanWindows(corpus, queries);
+			settleWindows();
+			fillFromWindows();
+			clearWindows();
+			return;
+		}
+		List<StoreScan> byEventHour = new ArrayList<StoreScan>();
+		List<StoreScan> byAddedHour = new ArrayList<StoreScan>();
+		collectScans(corpus, useDateAdded, byEventHour, byAddedHour);
+		scanTogether(byEventHour);
+		scanTogether(byAddedHour);
+		collectReturns();
+	}
+
+	private void collectScans(GDELT_Corpus corpus, boolean useDateAdded, List<StoreScan> byEventHour, List<StoreScan> byAddedHour) {
+		if(all) IO.log(IO.LEVEL.LEVEL_0, "PROCESSING QUERY WITH ALL VALUE: " + all);
+		if(multiplier > 1)IO.log(IO.LEVEL.LEVEL_4, "PROCESSING QUERY WITH MULTIPLIER VALUE: " + multiplier);
+		for(GDELT_Query query: childQueries) query.collectScans(corpus, false, byEventHour, byAddedHour); // As process, children do not count by date added
+		(useDateAdded ? byAddedHour : byEventHour).add(new StoreScan(storeToScan(corpus, useDateAdded), useDateAdded));
+	}
+
+	// A query has returned values if it or any of its children has
+	private boolean collectReturns() {
+		for(GDELT_Query query: childQueries) returnedValuesOnLastProcess = (query.collectReturns() | returnedValuesOnLastProcess); // Note: do not short circuit!
+		return returnedValuesOnLastProcess;
+	}
+
+	/**
+	 * As getResult, for each of several times zero. The corpus is scanned once
+	 * (for the whole tree of queries) over the union of the windows of all the times
+	 * zero, counting matches by hour, and the result for each time zero is then
+	 * built from those hourly counts. The results are the same as those of calling
+	 * getResult for each time zero in turn, and this query's result is left as
+	 * that for the last of them.
+	 * @param zeroTimes
+	 * @param res
+	 * @param resUnit
+	 * @param corpus
+	 * @param useDateAdded
+	 * @return the results, in the order of zeroTimes
+	 */
+	public Map<LocalDateTime, TimeSeries> getResults(Collection<LocalDateTime> zeroTimes, int res, ChronoUnit resUnit, GDELT_Corpus corpus, boolean useDateAdded) {
+		if(!openWindows(corpus, zeroTimes, res, resUnit, useDateAdded)) { // Fall back to one scan per time zero
+			Map<LocalDateTime, TimeSeries> ret = new LinkedHashMap<LocalDateTime, TimeSeries>();
+			for(LocalDateTime zeroTime: zeroTimes) ret.put(zeroTime, getResult(zeroTime, res, resUnit, corpus, useDateAdded));
+			return ret;
+		}
+		List<GDELT_Query> queries = new ArrayList<GDELT_Query>();
+		queries.add(this);
+		scanWindows(corpus, queries);
+		return closeWindows();
+	}
+
+	/**
+	 * The first of the three steps of getResults, which are separate so that the
+	 * queries of many tasks can share one scan: open the windows of each query
+	 * (openWindows), scan the corpus once for all of them (scanWindows), then
+	 * build each query's results (closeWindows).
+	 *
+	 * Returns false, opening nothing, if the times zero are not on a grid of
+	 * whole hours or days (or, when counting by date added or when the dates of
+	 * the events are not all on the hour, if the grid does not place times by
+	 * their hour; see TimeSeries.placesByHour), or if this
+	 * query (or one of its children) is already open; getResults falls back to
+	 * getResult for these.
+	 * @param corpus
+	 * @param zeroTimes
+	 * @param res
+	 * @param resUnit
+	 * @param useDateAdded
+	 * @return
+	 */
+	public boolean openWindows(GDELT_Corpus corpus, Collection<LocalDateTime> zeroTimes, int res, ChronoUnit resUnit, boolean useDateAdded) {
+		List<TimeSeries> grids = new ArrayList<TimeSeries>();
+		for(LocalDateTime zeroTime: zeroTimes) {
+			TimeSeries grid = new TimeSeries(zeroTime, res, resUnit);
+			if(!grid.hasEpochGrid() || ((useDateAdded || !corpus.store.eventsOnTheHour()) && !grid.placesByHour())) return false;
+			grids.add(grid);
+		}
+		if(isOpen()) return false;
+		openWindows(corpus, grids, useDateAdded);
+		return true;
+	}
+
+	/**
+	 * As openWindows, but to count only the change from the results of another
+	 * query, the base (e.g. the query this one was mutated from; see mutate),
+	 * that differs from this one only in its domains. Only the rows that the two
+	 * tell apart are visited- those with a value, in a field whose domains differ,
+	 * that one matches and the other does not (see GDELT_Event_Index)- and
+	 * closeWindows then returns, for each time zero, this query's result less
+	 * the base's. Nothing is settled outside the windows, so this query's
+	 * returnedValuesOnLastProcess is not set.
+	 *
+	 * Returns false, opening nothing, if either query has children or matches
+	 * all events, if they differ in more than their domains, if counting by date
+	 * added, if the grid does not place times by their hour when the dates of
+	 * the events are not all on the hour, or if the rows to visit are more
+	 * than a small part of the windows' (when counting the change would save
+	 * little); the query is then to be evaluated in full.
+	 * @param base
+	 * @param corpus
+	 * @param zeroTimes
+	 * @param res
+	 * @param resUnit
+	 * @param useDateAdded
+	 * @return
+	 */
+	public boolean openWindows(GDELT_Query base, GDELT_Corpus corpus, Collection<LocalDateTime> zeroTimes, int res, ChronoUnit resUnit, boolean useDateAdded) {
+		if(base == null || useDateAdded || all || base.all || !childQueries.isEmpty() || !base.childQueries.isEmpty() ||
+		   shift != base.shift || vizOffset != base.vizOffset || horizon != base.horizon || multiplier != base.multiplier ||
+		   tMin != base.tMin || tMax != base.tMax || isOpen()) return false;
+		List<TimeSeries> grids = new ArrayList<TimeSeries>();
+		for(LocalDateTime zeroTime: zeroTimes) {
+			TimeSeries grid = new TimeSeries(zeroTime, res, resUnit);
+			if(!grid.hasEpochGrid() || (!corpus.store.eventsOnTheHour() && !grid.placesByHour())) return false;
+			grids.add(grid);
+		}
+		StoreScan scan = new StoreScan(storeToScan(corpus, false), false, grids, base);
+		if(!scan.fewCandidates((long)(MAX_CHANGED_FRACTION * (scan.toRow - scan.fromRow)))) return false;
+		windowScan = scan;
+		return true;
+	}
+
+	/**
+	 * Scans the corpus once for the open windows of all of these queries (see
+	 * openWindows): each row is read once and tested against every query whose
+	 * windows hold it.
+	 * @param corpus
+	 * @param queries
+	 */
+	public static void scanWindows(GDELT_Corpus corpus, List<GDELT_Query> queries) {
+		List<StoreScan> byEventHour = new ArrayList<StoreScan>();
+		List<StoreScan> byAddedHour = new ArrayList<StoreScan>();
+		for(GDELT_Query query: queries) query.collectWindows(byEventHour, byAddedHour);
+		scanTogether(byEventHour);
+		scanTogether(byAddedHour);
+	}
+
+	/**
+	 * The last step of getResults (see openWindows): settles the matches outside
+	 * the windows, then builds the result for each time zero and closes the windows
+	 * @return the results, in the order of the times zero
+	 */
+	public Map<LocalDateTime, TimeSeries> closeWindows() {
+		settleWindows();
+		Map<LocalDateTime, TimeSeries> ret = new LinkedHashMap<LocalDateTime, TimeSeries>();
+		for(TimeSeries grid: windowScan.grids) {
+			init(grid.getTZero(), grid.getResolution(), grid.getChronoUnit());
+			fillFromWindows();
+			ret.put(grid.getTZero(), getResult());
+		}
+		clearWindows();
+		return ret;
+	}
+
+	private boolean isOpen() {
+		for(GDELT_Query query: childQueries) if(query.isOpen()) return true;
+		return windowScan != null;
+	}
+
+	private void openWindows(GDELT_Corpus corpus, List<TimeSeries> grids, boolean useDateAdded) {
+		if(all) IO.log(IO.LEVEL.LEVEL_0, "PROCESSING QUERY WITH ALL VALUE: " + all);
+		if(multiplier > 1)IO.log(IO.LEVEL.LEVEL_4, "PROCESSING QUERY WITH MULTIPLIER VALUE: " + multiplier);
+		for(GDELT_Query query: childQueries) query.openWindows(corpus, grids, false); // As process, children do not count by date added
+		windowScan = new StoreScan(storeToScan(corpus, useDateAdded), useDateAdded, grids);
+	}
+
+	private void collectWindows(List<StoreScan> byEventHour, List<StoreScan> byAddedHour) {
+		for(GDELT_Query query: childQueries) query.collectWindows(byEventHour, byAddedHour);
+		(windowScan.useDateAdded ? byAddedHour : byEventHour).add(windowScan);
+	}
+
+	// The scans (all in the same order) of each store, together; the scans are
+	// normally all over the same store (see storeToScan)
+	private static void scanTogether(List<StoreScan> scans) {
+		Map<GDELT_Event_Store, List<StoreScan>> byStore = new IdentityHashMap<GDELT_Event_Store, List<StoreScan>>();
+		for(StoreScan scan: scans) {
+			List<StoreScan> same = byStore.get(scan.store);
+			if(same == null) byStore.put(scan.store, same = new ArrayList<StoreScan>());
+			same.add(scan);
+		}
+		for(Map.Entry<GDELT_Event_Store, List<StoreScan>> entry: byStore.entrySet()) scanTogether(entry.getKey(), entry.getValue());
+	}
+
+	// Passes once over the rows that any of the scans (all in the same order) cover
+	private static void scanTogether(GDELT_Event_Store store, List<StoreScan> scans) {
+		if(scans.isEmpty()) return;
+		Collections.sort(scans, new Comparator<StoreScan>() {
+			@Override
+			public int compare(StoreScan a, StoreScan b) {
+				return Integer.compare(a.fromRow, b.fromRow);
+			}
+		});
+		// Scans that evaluate by bitmaps or by blocks visit only their own rows
+		for(int j = scans.size() - 1; j >= 0; j--) {
+			StoreScan scan = scans.get(j);
+			if(!scan.runsAlone()) continue;
+			scan.count(scan.fromRow, scan.toRow);
+			scans.remove(j);
+		}
+		if(scans.isEmpty()) return;
+		int[]    order  = scans.get(0).order;
+		int      end    = 0;
+		for(StoreScan scan: scans) end = Math.max(end, scan.toRow);
+		StoreRow row    = new StoreRow(store);
+		List<StoreScan> active = new ArrayList<StoreScan>();
+		int      next   = 0;
+		for(int k = scans.get(0).fromRow; k < end; k++) {
+			while(next < scans.size() && scans.get(next).fromRow <= k) active.add(scans.get(next++));
+			for(int j = active.size() - 1; j >= 0; j--) if(active.get(j).toRow <= k) active.remove(j);
+			if(active.isEmpty()) {
+				if(next < scans.size()) k = scans.get(next).fromRow - 1; // Skip to the next scan
+				continue;
+			}
+			row.load(order == null ? k : order[k]);
+			for(int j = 0; j < active.size(); j++) active.get(j).count(row);
+		}
+	}
+
+	// As processStore, for the matches outside the windows; the span of the matches must settle every window
+	private boolean settleWindows() {
+		for(GDELT_Query query: childQueries) returnedValuesOnLastProcess = (query.settleWindows() | returnedValuesOnLastProcess); // Note: do not short circuit!
+		StoreScan scan     = windowScan;
+		if(scan.base != null) return returnedValuesOnLastProcess; // Only the change within the windows is counted
+		boolean   children = childQueries.size() > 0;
+		boolean   above    = !returnedValuesOnLastProcess;
+		for(int i = 0; i < scan.grids.size() && children; i++) above |= scan.lastInterval(scan.grids.get(i)) < scan.hi[i] - 1;
+		if(above) scan.countFirst(scan.toRow, scan.store.size(), 1);
+		boolean   below    = !returnedValuesOnLastProcess;
+		for(int i = 0; i < scan.grids.size() && children; i++) below |= scan.firstInterval(scan.grids.get(i)) > scan.lo[i];
+		if(below) scan.countFirst(scan.fromRow - 1, -1, -1);
+		return returnedValuesOnLastProcess;
+	}
+
+	private void fillFromWindows() {
+		for(GDELT_Query query: childQueries) query.fillFromWindows();
+		windowScan.addTo(result);
+	}
+
+	private void clearWindows() {
+		for(GDELT_Query query: childQueries) query.clearWindows();
+		windowScan = null;
+	}
+
+	/**
+	 * The shifts that mutate can reach from this query's shift: those a whole
+	 * number of steps (SHIFT_STEP) from it, between minShift and maxShift
+	 * @return the shifts, in increasing order
+	 */
+	public long[] allowedShifts() {
+		long first = shift - Math.floorDiv(shift - minShift, SHIFT_STEP) * SHIFT_STEP;
+		if(first > maxShift) return new long[] {shift};
+		long[] ret = new long[(int)((maxShift - first) / SHIFT_STEP) + 1];
+		for(int i = 0; i < ret.length; i++) ret[i] = first + i * SHIFT_STEP;
+		return ret;
+	}
+
+	/**
+	 * The results of getResults for each of these shifts in place of this
+	 * query's own (which is not changed). Shifting a query only moves its
+	 * matches and changes which are visible soon enough, so for a query
+	 * without children these all come from one pass over the store, which
+	 * counts the matches by (event) hour and by how long after that hour they
+	 * became visible; the count at each position for a shift is then a sum
+	 * over the lags that the shift and the visibility offset allow. Other
+	 * queries are evaluated once for each shift. returnedValuesOnLastProcess
+	 * is not changed.
+	 * @param shifts
+	 * @param zeroTimes
+	 * @param res
+	 * @param resUnit
+	 * @param corpus
+	 * @param useDateAdded
+	 * @return for each shift, the results in the order of zeroTimes
+	 */
+	public Map<Long, Map<LocalDateTime, TimeSeries>> getResultsForShifts(long[] shifts, Collection<LocalDateTime> zeroTimes, int res, ChronoUnit resUnit, GDELT_Corpus corpus, boolean useDateAdded) {
+		Map<Long, Map<LocalDateTime, TimeSeries>> ret = new LinkedHashMap<Long, Map<LocalDateTime, TimeSeries>>();
+		List<TimeSeries> grids = new ArrayList<TimeSeries>();
+		for(LocalDateTime zeroTime: zeroTimes) grids.add(new TimeSeries(zeroTime, res, resUnit));
+		if(shifts.length > 1 && childQueries.isEmpty() && sweepShifts(shifts, grids, storeToScan(corpus, useDateAdded), useDateAdded, ret)) return ret;
+		for(long s: shifts) {
+			GDELT_Query shifted = clone();
+			shifted.shift = s;
+			ret.put(s, shifted.getResults(zeroTimes, res, resUnit, corpus, useDateAdded));
+		}
+		return ret;
+	}
+
+	// The most counts held (by hour and lag) for getResultsForShifts
+	private static final long MAX_SWEEP_CELLS = 1 << 24;
+
+	// The results of getResultsForShifts, from one pass over the store; false
+	// (with nothing done) if the times zero are not on a grid of whole hours or
+	// days (that places times by their hour, when counting by date added or when
+	// the dates of the events are not all on the hour), or the counts would take
+	// too much space
+	private boolean sweepShifts(long[] shifts, List<TimeSeries> grids, GDELT_Event_Store store, boolean useDateAdded, Map<Long, Map<LocalDateTime, TimeSeries>> ret) {
+		long minShift = Long.MAX_VALUE;
+		long maxShift = Long.MIN_VALUE;
+		for(long s: shifts) {
+			minShift = Math.min(minShift, s);
+			maxShift = Math.max(maxShift, s);
+		}
+		// The positions that the trimmed results can hold, in hours
+		long[] from = new long[grids.size()];
+		long[] to   = new long[grids.size()];
+		long   first = Long.MAX_VALUE;
+		long   last  = Long.MIN_VALUE;
+		for(int i = 0; i < grids.size(); i++) {
+			TimeSeries grid = grids.get(i);
+			if(!grid.hasEpochGrid() || ((useDateAdded || !store.eventsOnTheHour()) && !grid.placesByHour())) return false;
+			from[i] = grid.getEpochHourOfInterval(Math.min(grid.toIntervals(tMin, ChronoUnit.DAYS), 0)); // As trimmed in getResult
+			to[i]   = grid.getEpochHourOfInterval(Math.max(grid.toIntervals(tMax, ChronoUnit.DAYS), 0));
+			first   = Math.min(first, from[i]);
+			last    = Math.max(last,  to[i]);
+		}
+		// A match is visible soon enough for a shift if its lag (from its hour to
+		// when it is visible) is at most the shift plus the visibility offset; the
+		// counts are by hour and by lag, from the least of these limits (all lags
+		// at or below it) to the greatest (beyond which no shift counts them)
+		long firstHour = first - maxShift;
+		long hours     = last - minShift - firstHour;
+		long minLag    = minShift + vizOffset;
+		int  lags      = (int)(maxShift - minShift) + 1;
+		if(hours <= 0 || hours * lags > MAX_SWEEP_CELLS) return false;
+		int[]    counts = new int[(int)(hours * lags)];
+		RowTest  test   = new RowTest(store);
+		StoreRow row    = new StoreRow(store);
+		int[]    order  = useDateAdded ? store.getAddedOrder() : null;
+		int      toRow  = useDateAdded ? store.firstAddedAtOrAfterHour(firstHour + hours) : store.firstRowAtOrAfterHour(firstHour + hours);
+		for(int k = useDateAdded ? store.firstAddedAtOrAfterHour(firstHour) : store.firstRowAtOrAfterHour(firstHour); k < toRow; k++) {
+			row.load(order == null ? k : order[k]);
+			// When counting by date added, the event is placed by the time added, so its lag is zero
+			long eventHour = useDateAdded ? row.addedHour : row.eventHour;
+			long lag       = useDateAdded ? 0             : row.visibleHour - row.eventHour;
+			if(lag > minLag + lags - 1 || !(all || test.matches(row))) continue;
+			counts[(int)((eventHour - firstHour) * lags + Math.max(0, lag - minLag))] += row.weight;
+		}
+		for(int h = 0; h < hours; h++) {
+			for(int l = 1; l < lags; l++) counts[h * lags + l] += counts[h * lags + l - 1]; // Now the counts at each lag or below
+		}
+		for(long s: shifts) {
+			Map<LocalDateTime, TimeSeries> results = new LinkedHashMap<LocalDateTime, TimeSeries>();
+			int lag = (int)(s + vizOffset - minLag);
+			for(int i = 0; i < grids.size(); i++) {
+				TimeSeries grid   = grids.get(i);
+				TimeSeries series = new TimeSeries(grid.getTZero(), grid.getResolution(), grid.getChronoUnit());
+				for(long position = from[i]; position < to[i]; position++) {
+					int count = counts[(int)((position - s - firstHour) * lags + lag)];
+					if(count != 0) series.addCountsAtEpochHour(position, (double)count * multiplier);
+				}
+				series.trim(tMin, tMax, ChronoUnit.DAYS); // As in getResult
+				results.put(grid.getTZero(), series);
+			}
+			ret.put(s, results);
+		}
+		return true;
+	}
+
+	// The fields that queries test (see GDELT_QueryTemplate), as the fields of an aggregate store
+	private static int testedFields() {
+		return (GDELT_QueryTemplate.matchRootCode           ? GDELT_Event_Store.ROOT_CODE : 0) |
+			   (GDELT_QueryTemplate.matchGoldsteinScale     ? GDELT_Event_Store.GOLDSTEIN : 0) |
+			   (GDELT_QueryTemplate.matchAverageTone        ? GDELT_Event_Store.AVG_TONE  : 0) |
+			   (GDELT_QueryTemplate.matchActor1CountryCodes ? GDELT_Event_Store.ACTOR_1   : 0) |
+			   (GDELT_QueryTemplate.matchActor2CountryCodes ? GDELT_Event_Store.ACTOR_2   : 0) |
+			   (GDELT_QueryTemplate.matchLatLon             ? GDELT_Event_Store.LAT_LON   : 0);
+	}
+
+	/**
+	 * This query's domains, for the rows of a store (see GDELT_Query_Predicate)
+	 */
+	private final class RowTest {
+		final GDELT_Event_Store     store;
+		final GDELT_Query_Predicate predicate;
+
+		RowTest(GDELT_Event_Store store){
+			this.store = store;
+			predicate  = new GDELT_Query_Predicate(GDELT_Query.this, store);
+		}
+
+		boolean matches(StoreRow row) {
+			return predicate.matches(row.row);
+		}
+
+		// True if the domain of the field matches this value of it (as held in the store's index)
+		boolean matches(GDELT_Event_Index.FIELD field, int v) {
+			return predicate.matches(field, v);
+		}
+
+		// The rows of the store that the domains match, from the store's bitmap
+		// indexes: for each field tested, the rows of the values the domain
+		// matches, and across the fields the rows that all of them match. Null if
+		// no field is tested (or the query matches all rows)
+		RowBitmap matchingRows() {
+			if(all) return null;
+			GDELT_Event_Index index = store.getIndex();
+			RowBitmap ret = null;
+			for(GDELT_Event_Index.FIELD field: GDELT_Event_Index.FIELD.values()) {
+				if(!isTested(field)) continue;
+				int[]           values = index.getValues(field);
+				List<RowBitmap> rows   = new ArrayList<RowBitmap>();
+				for(int i = 0; i < values.length; i++) if(matches(field, values[i])) rows.add(index.getRows(field, i));
+				RowBitmap matched = rows.isEmpty() ? new RowBitmap() : RowBitmap.or(rows);
+				ret = ret == null ? matched : ret.and(matched);
+				if(ret.cardinality() == 0) return ret;
+			}
+			return ret;
+		}
+
+		// The rows of the store that one of these domains and the other query's
+		// (the base's) tell apart: those with a value, in some field whose domains
+		// differ, that one matches and the other does not. No other row can match
+		// one query and not the other
+		RowBitmap changedRows(RowTest base) {
+			GDELT_Event_Index index = store.getIndex();
+			List<RowBitmap>   rows  = new ArrayList<RowBitmap>();
+			for(GDELT_Event_Index.FIELD field: GDELT_Event_Index.FIELD.values()) {
+				if(!isTested(field) || sameDomain(field, base.query())) continue;
+				int[] values = index.getValues(field);
+				for(int i = 0; i < values.length; i++) if(matches(field, values[i]) != base.matches(field, values[i])) rows.add(index.getRows(field, i));
+			}
+			return rows.isEmpty() ? new RowBitmap() : RowBitmap.or(rows);
+		}
+
+		GDELT_Query query() {
+			return GDELT_Query.this;
+		}
+	}
+
+	private boolean sameDomain(GDELT_Event_Index.FIELD field, GDELT_Query other) {
+		switch(field) {
+			case ROOT_CODE: return rootCode.sameSignature(other.rootCode);
+			case GOLDSTEIN: return goldsteinScore.sameSignature(other.goldsteinScore);
+			case AVG_TONE:  return avgTone.sameSignature(other.avgTone);
+			case LAT:       return actionLat.sameSignature(other.actionLat);
+			case LON:       return actionLon.sameSignature(other.actionLon);
+			case ACTOR_1:   return actor1CountryCode.sameSignature(other.actor1CountryCode);
+			case ACTOR_2:   return actor2CountryCode.sameSignature(other.actor2CountryCode);
+			default:        return false;
+		}
+	}
+
+	private static boolean isTested(GDELT_Event_Index.FIELD field) {
+		switch(field) {
+			case ROOT_CODE: return GDELT_QueryTemplate.matchRootCode;
+			case GOLDSTEIN: return GDELT_QueryTemplate.matchGoldsteinScale;
+			case AVG_TONE:  return GDELT_QueryTemplate.matchAverageTone;
+			case ACTOR_1:   return GDELT_QueryTemplate.matchActor1CountryCodes;
+			case ACTOR_2:   return GDELT_QueryTemplate.matchActor2CountryCodes;
+			case LAT:
+			case LON:       return GDELT_QueryTemplate.matchLatLon;
+			default:        return false;
+		}
+	}
+
+	// The store to scan: an aggregate in which each row counts the events that
+	// no query can tell apart (see GDELT_Corpus.getStoreToScan)
+	private static GDELT_Event_Store storeToScan(GDELT_Corpus corpus, boolean useDateAdded) {
+		return corpus.getStoreToScan(testedFields(), useDateAdded);
+	}
+
+	// Scans the columnar store; all times are in whole hours since the epoch.
+	// The store is in order of event hour (and has an ordering by added hour), so
+	// only the rows whose positions can fall within the window that getResult trims
+	// to are scanned. Matches outside the window are trimmed away, but still matter
+	// in two ways: any match sets returnedValuesOnLastProcess, and the span of this
+	// query's own matches is the span into which its children's results are added
+	// (see TimeSeries.add). Where the window has not settled these, the rows on
+	// either side are searched for one further match. Where matches are placed
+	// by their exact times (see StoreScan.exact), every row is scanned.
+	private void processStore(GDELT_Event_Store store, boolean useDateAdded) {
+		StoreScan scan = new StoreScan(store, useDateAdded);
+		if(!result.hasEpochGrid() || scan.exact) {
+			scan.count(0, store.size());
+			return;
+		}
+		long lo       = Math.min(result.toIntervals(tMin, ChronoUnit.DAYS), 0); // As trimmed in getResult
+		long hi       = Math.max(result.toIntervals(tMax, ChronoUnit.DAYS), 0);
+		long margin   = result.getHoursPerInterval();
+		int  from     = scan.firstAtOrAfter(result.getEpochHourOfInterval(lo) - margin - shift);
+		int  to       = scan.firstAtOrAfter(result.getEpochHourOfInterval(hi) + margin - shift);
+		boolean children = childQueries.size() > 0;
+		scan.count(from, to);
+		if(!returnedValuesOnLastProcess || (children && scan.lastInterval(result) < hi - 1)) scan.countFirst(to, store.size(), 1);
+		if(!returnedValuesOnLastProcess || (children && scan.firstInterval(result) > lo))    scan.countFirst(from - 1, -1, -1);
+	}
+
+	/**
+	 * The times and weight of a row of the store, read once for all of the
+	 * queries that test it; each query's predicate reads the fields it tests
+	 */
+	private static final class StoreRow {
+		final GDELT_Event_Store store;
+		int    row;
+		long   eventHour;
+		int    eventSecond;
+		long   addedHour;
+		int    addedSecond;
+		long   visibleHour;
+		int    weight; // The number of events in the row
+
+		StoreRow(GDELT_Event_Store store){
+			this.store = store;
+		}
+
+		void load(int i) {
+			row         = i;
+			eventHour   = store.eventHour(i);
+			eventSecond = store.eventSecond(i);
+			addedHour   = store.addedHour(i);
+			addedSecond = store.addedSecond(i);
+			visibleHour = store.visibleHour(i);
+			weight      = store.weight(i);
+		}
+	}
+
+	private static final long NO_MATCH = Long.MIN_VALUE;
+
+	/**
+	 * A pass of this query over the columnar store, in order of event hour
+	 * (or of added hour, when counting by date added). Matches are added to
+	 * the query's result, or counted by hour over the windows of several
+	 * times zero (see getResults).
+	 */
+	private class StoreScan {
+		final GDELT_Event_Store store;
+		final boolean           useDateAdded;
+		final int[]             order; // Null for the store's own order
+		final boolean           logEvents = IO.isLogging(IO.LEVEL.LEVEL_4);
+		final StoreRow          row;
+		final boolean           exact; // Counting by date added, or over events whose dates are not all on the hour, into a result that does not place times by their hour (see TimeSeries.placesByHour); matches are placed by their exact time
+		final RowTest           test;
+		final RowTest           base;       // When counting the change from another query's results (see openWindows), that query's domains
+		final RowBitmap         candidates; // The rows the domains match, when evaluating by bitmaps (see EVALUATION_ENGINE), or that they and the base's tell apart; only these are visited
+		final GDELT_Query_Kernel kernel;    // When evaluating by blocks of rows (see EVALUATION_ENGINE), the kernel that tests them
+
+		// The earliest and latest positions counted
+		long first = NO_MATCH;
+		long last  = NO_MATCH;
+
+		// When counting by hour: the series of each time zero (as yet empty), with
+		// the span of intervals that each is trimmed to; the rows in the windows; and
+		// the matches at each position from firstHour (matches at other positions
+		// only count toward first and last)
+		final List<TimeSeries> grids;
+		final long[]           lo;
+		final long[]           hi;
+		final int              fromRow;
+		final int              toRow;
+		final int[]            hits;
+		final long             firstHour;
+
+		StoreScan(GDELT_Event_Store store, boolean useDateAdded){
+			this(store, useDateAdded, null);
+		}
+
+		StoreScan(GDELT_Event_Store store, boolean useDateAdded, List<TimeSeries> grids){
+			this(store, useDateAdded, grids, null);
+		}
+
+		StoreScan(GDELT_Event_Store store, boolean useDateAdded, List<TimeSeries> grids, GDELT_Query baseQuery){
+			this.store        = store;
+			this.useDateAdded = useDateAdded;
+			this.order        = useDateAdded ? store.getAddedOrder() : null;
+			this.row          = new StoreRow(store);
+			this.exact        = (useDateAdded || !store.eventsOnTheHour()) && grids == null && !result.placesByHour();
+			test        = new RowTest(store);
+			base        = baseQuery == null ? null : baseQuery.new RowTest(store);
+			if(base != null)                                                      candidates = test.changedRows(base);
+			else if(evaluationEngine == EVALUATION_ENGINE.BITMAP && !useDateAdded) candidates = test.matchingRows(); // Bitmaps are in the store's own order
+			else                                                                  candidates = null;
+			// Blocks are of consecutive rows; a row that is not matched is not logged
+			kernel = evaluationEngine == EVALUATION_ENGINE.VECTOR && order == null && candidates == null && !logEvents ? GDELT_Query_Kernel.get() : null;
+			this.grids  = grids;
+			if(grids == null) {
+				lo = hi = null;
+				fromRow   = 0; // All of the rows
+				toRow     = store.size();
+				hits      = null;
+				firstHour = 0;
+				return;
+			}
+			lo = new long[grids.size()];
+			hi = new long[grids.size()];
+			long from = Long.MAX_VALUE; // Positions, in hours
+			long to   = Long.MIN_VALUE;
+			for(int i = 0; i < grids.size(); i++) {
+				TimeSeries grid = grids.get(i);
+				lo[i] = Math.min(grid.toIntervals(tMin, ChronoUnit.DAYS), 0); // As trimmed in getResult
+				hi[i] = Math.max(grid.toIntervals(tMax, ChronoUnit.DAYS), 0);
+				from  = Math.min(from, grid.getEpochHourOfInterval(lo[i]) - grid.getHoursPerInterval());
+				to    = Math.max(to,   grid.getEpochHourOfInterval(hi[i]) + grid.getHoursPerInterval());
+			}
+			fromRow   = firstAtOrAfter(from - shift);
+			toRow     = firstAtOrAfter(to   - shift);
+			hits      = new int[(int)(to - from)];
+			firstHour = from;
+		}
+
+		// The first position in the scan order whose (event or added) hour is at least this hour
+		int firstAtOrAfter(long hour) {
+			return useDateAdded ? store.firstAddedAtOrAfterHour(hour) : store.firstRowAtOrAfterHour(hour);
+		}
+
+		void count(int from, int to) {
+			if(candidates != null) {
+				for(int k = candidates.nextSetBit(from); k >= 0 && k < to; k = candidates.nextSetBit(k + 1)) count(k);
+				return;
+			}
+			if(kernel != null) {
+				countBlocks(from, to);
+				return;
+			}
+			for(int k = from; k < to; k++) count(order == null ? k : order[k]);
+		}
+
+		// Counts the rows that the kernel finds visible and matched, a block at a time
+		void countBlocks(int from, int to) {
+			long[] matches = new long[GDELT_Query_Kernel.BLOCK >> 6];
+			for(int start = from; start < to; start += GDELT_Query_Kernel.BLOCK) {
+				kernel.match(test.predicate, start, Math.min(to, start + GDELT_Query_Kernel.BLOCK), shift + vizOffset, matches);
+				for(int w = 0; w < matches.length; w++) {
+					for(long bits = matches[w]; bits != 0; bits &= bits - 1) {
+						row.load(start + (w << 6) + Long.numberOfTrailingZeros(bits));
+						countMatch(row, row.eventHour + shift);
+					}
+				}
+			}
+		}
+
+		// True if the scan visits its own rows, rather than being given each row in turn (see scanTogether)
+		boolean runsAlone() {
+			return candidates != null || kernel != null;
+		}
+
+		// Counts the first match, stepping from 'from' up to (but not including) 'end'
+		void countFirst(int from, int end, int step) {
+			if(candidates != null && step > 0) {
+				for(int k = candidates.nextSetBit(from); k >= 0 && k < end; k = candidates.nextSetBit(k + 1)) if(count(k)) return;
+				return;
+			}
+			if(candidates != null) {
+				for(int k = candidates.previousSetBit(from); k > end; k = candidates.previousSetBit(k - 1)) if(count(k)) return;
+				return;
+			}
+			for(int k = from; k != end; k += step) if(count(order == null ? k : order[k])) return;
+		}
+
+		// The span of a series' intervals that holds the matches counted, which always includes zero
+		long firstInterval(TimeSeries series) {
+			return first == NO_MATCH ? 0 : Math.min(0, series.getIntervalOfEpochHour(first));
+		}
+
+		long lastInterval(TimeSeries series) {
+			return last == NO_MATCH ? 0 : Math.max(0, series.getIntervalOfEpochHour(last));
+		}
+
+		// Adds the hourly counts to a series, and extends it to the span of the matches
+		void addTo(TimeSeries series) {
+			for(int h = 0; h < hits.length; h++) {
+				if(hits[h] != 0) series.addCountsAtEpochHour(firstHour + h, (double)hits[h] * multiplier);
+			}
+			if(first != NO_MATCH) series.addCountsAtEpochHour(first, 0);
+			if(last  != NO_MATCH) series.addCountsAtEpochHour(last,  0);
+		}
+
+		boolean count(int i) {
+			row.load(i);
+			return count(row);
+		}
+
+		boolean count(StoreRow row) {
+			if(base != null) {
+				countChange(row);
+				return false;
+			}
+			// The event is placed by its date (its hour, and when exact the seconds past it); when counting by date added, it is placed by the time added and is always visible by then
+			long eventHour   = useDateAdded ? row.addedHour : row.eventHour;
+			long visibleHour = useDateAdded ? row.addedHour : row.visibleHour;
+			long position    = eventHour + shift; // This reflects the time that our query will be 'counting toward';
+			long visibilityWindowCloses = position + vizOffset;
+			boolean visible = visibleHour <= visibilityWindowCloses;  // Can't be later than our visibility window
+			boolean matched = visible && (all || candidates != null || test.matches(row));
+			if(matched) countMatch(row, position);
+			if(logEvents) IO.log(IO.LEVEL.LEVEL_4, "EVENT HOUR " + eventHour + " pos " + position + " viz " + visibleHour + (visible ? " = VALID" : " = NON-VALID") + "; WINDOW: " + visibilityWindowCloses + " " + useDateAdded);
+			return matched;
+		}
+
+		private void countMatch(StoreRow row, long position) {
+			returnedValuesOnLastProcess = true;
+			if(exact)                                                              result.addCountsAtEpochSecond(position * GDELT_Event_Store.SECONDS_PER_HOUR + (useDateAdded ? row.addedSecond : row.eventSecond), (double)multiplier * row.weight);
+			else if(hits == null)                                                  result.addCountsAtEpochHour(position, (double)multiplier * row.weight);
+			else if(position >= firstHour && position - firstHour < hits.length) hits[(int)(position - firstHour)] += row.weight;
+			if(first == NO_MATCH || position < first) first = position;
+			if(last  == NO_MATCH || position > last)  last  = position;
+		}
+
+		// When counting the change from the base's results (never by date added): a
+		// visible row that only this query matches adds to the count at its position,
+		// and one that only the base matches takes from it
+		private void countChange(StoreRow row) {
+			long position = row.eventHour + shift;
+			if(row.visibleHour > position + vizOffset || position < firstHour || position - firstHour >= hits.length) return;
+			int change = (test.matches(row) ? 1 : 0) - (base.matches(row) ? 1 : 0);
+			hits[(int)(position - firstHour)] += change * row.weight;
+		}
+
+		// True if no more than this many of the candidates are in the windows
+		boolean fewCandidates(long most) {
+			long n = 0;
+			for(int k = candidates.nextSetBit(fromRow); k >= 0 && k < toRow; k = candidates.nextSetBit(k + 1)) if(++n > most) return false;
+			return true;
+		}
+	}
+	
+	// Scans the event objects (see process); used when the weights of individual events are to be recorded
+	private void processEvents(GDELT_Corpus corpus, Map<LocalDateTime, Map<GDELT_Global_Event, Double>> eventWeights, boolean useDateAdded) {
 		for(GDELT_Global_Event event: corpus.allEvents) {
 			LocalDateTime eventDate = (useDateAdded ? event.dateAndTimeAdded : event.dateOfEvent).toInstant().atOffset(ZoneOffset.UTC).toLocalDateTime();
 			LocalDateTime eventVisible = event.dateAndTimeAdded.toInstant().atOffset(ZoneOffset.UTC).toLocalDateTime();
@@ -277,28 +1074,19 @@ public class GDELT_Query implements Comparable<GDELT_Query>{
 					returnedValuesOnLastProcess = true;
 					result.addCounts(position, multiplier);
 					
-					if(eventWeights != null) {
-						// Keep a record of the specific articles and their weights
-						Map<GDELT_Global_Event, Double> map = eventWeights.get(position);
-						if(map == null) {
-							map = new HashMap<GDELT_Global_Event, Double>();
-							eventWeights.put(position, map);
-						}
-						Double d = map.get(event);
-						if(d == null) d = 0d;
-						d += multiplier;
-						map.put(event, d);
+					// Keep a record of the specific articles and their weights
+					Map<GDELT_Global_Event, Double> map = eventWeights.get(position);
+					if(map == null) {
+						map = new HashMap<GDELT_Global_Event, Double>();
+						eventWeights.put(position, map);
 					}
+					Double d = map.get(event);
+					if(d == null) d = 0d;
+					d += multiplier;
+					map.put(event, d);
 				}
-				IO.log(IO.LEVEL.LEVEL_4, "EVENT DATE " + eventDate + " pos " + position + " viz " + eventVisible + " = VALID; WINDOW: " + visibilityWindowCloses + " " + useDateAdded);
 			}
-			else IO.log(IO.LEVEL.LEVEL_4, "EVENT DATE " + eventDate + " pos " + position + " viz " + eventVisible + " = NON-VALID; WINDOW: " + visibilityWindowCloses + " " + useDateAdded);
 		}
-		if(IO.log(IO.LEVEL.LEVEL_4, "Giving query result report")) {
-			result.report(IO.LEVEL.LEVEL_4);
-			IO.log(IO.LEVEL.LEVEL_4, "DONE WITH REPORT");
-		}
-		return returnedValuesOnLastProcess;
 	}
 
 	
@@ -356,6 +1144,55 @@ public class GDELT_Query implements Comparable<GDELT_Query>{
 	public GDELT_Query clone() {
 		return get(this.toString()); // Serializes this and constructs a new, identical instance... inefficient? Maybe, but also never needs updated.
 	}
+
+	/**
+	 * A hash of this query's signature (see sameSignature). Nothing is allocated,
+	 * so this can be used to look up every query that is evaluated.
+	 * @return
+	 */
+	public int signatureHash() {
+		int h = all ? 1 : 0;
+		h = 31 * h + (prediction_method == null ? 0 : prediction_method.ordinal() + 1);
+		h = 31 * h + Long.hashCode(shift);
+		h = 31 * h + Long.hashCode(vizOffset);
+		h = 31 * h + Long.hashCode(horizon);
+		h = 31 * h + multiplier;
+		h = 31 * h + tMin;
+		h = 31 * h + tMax;
+		h = 31 * h + goldsteinScore.signatureHash();
+		h = 31 * h + rootCode.signatureHash();
+		h = 31 * h + actor1CountryCode.signatureHash();
+		h = 31 * h + actor2CountryCode.signatureHash();
+		h = 31 * h + avgTone.signatureHash();
+		h = 31 * h + actionLat.signatureHash();
+		h = 31 * h + actionLon.signatureHash();
+		for(int i = 0; i < childQueries.size(); i++) h = 31 * h + childQueries.get(i).signatureHash();
+		return h;
+	}
+
+	/**
+	 * True if the other query has the same signature as this one: the same domains,
+	 * shift, visibility offset, multiplier, window and prediction method, and child
+	 * queries with the same signatures, in the same order. Two such queries give the
+	 * same results and scores; their order of creation, the bounds on their shift
+	 * and offset, and the results of their last evaluation are not compared.
+	 * Nothing is allocated.
+	 * @param other
+	 * @return
+	 */
+	public boolean sameSignature(GDELT_Query other) {
+		if(other == this) return true;
+		if(other == null || all != other.all || prediction_method != other.prediction_method || 
+		   shift != other.shift || vizOffset != other.vizOffset || horizon != other.horizon || multiplier != other.multiplier || 
+		   tMin != other.tMin || tMax != other.tMax || childQueries.size() != other.childQueries.size()) return false;
+		if(!goldsteinScore.sameSignature(other.goldsteinScore)       || !rootCode.sameSignature(other.rootCode) || 
+		   !actor1CountryCode.sameSignature(other.actor1CountryCode) || !actor2CountryCode.sameSignature(other.actor2CountryCode) ||
+		   !avgTone.sameSignature(other.avgTone) || !actionLat.sameSignature(other.actionLat) || !actionLon.sameSignature(other.actionLon)) return false;
+		for(int i = 0; i < childQueries.size(); i++) {
+			if(!childQueries.get(i).sameSignature(other.childQueries.get(i))) return false;
+		}
+		return true;
+	}
 	
 	public void prune() {
 		IO.log(IO.LEVEL.LEVEL_4, "PRUNING...");
@@ -383,13 +1220,17 @@ public class GDELT_Query implements Comparable<GDELT_Query>{
 				return new GDELT_Query(this.tMin, this.tMax, this.prediction_method);
 			}
 		}
+		boolean correctable = childQueries.isEmpty() && !all; // Only the results of such queries can be corrected for a change
+		GDELT_Query parent = null;
 		String returnProcess = flags.containsKey("returnProcess") ? flags.get("returnProcess") : "modify"; // Default is to modify this element in place
 		switch(returnProcess) {
 			case("copy"):{
 				ret = this.clone(); // Deep clone
+				if(correctable) parent = this; // Left as it is
 				break;
 			}
 			case("modify"):{
+				if(correctable) parent = clone(); // As it was before the change
 				ret = this;
 				if(all) return ret; // No modification to 'all' query
 				break;
@@ -425,8 +1266,8 @@ public class GDELT_Query implements Comparable<GDELT_Query>{
 				case ROOT_CODE:             ret.rootCode.mutate();          break;
 				case LAT_LON:{
 					double v = Math.random();
-					if(v < 0.66667) actionLat.mutate(); // Note that they can both mutate, but at least one will
-					if(v > 0.33333) actionLon.mutate();
+					if(v < 0.66667) ret.actionLat.mutate(); // Note that they can both mutate, but at least one will
+					if(v > 0.33333) ret.actionLon.mutate();
 					break;
 				}
 			}
@@ -434,7 +1275,7 @@ public class GDELT_Query implements Comparable<GDELT_Query>{
 				
 		// If you want to change the time shift, use these lines
 		if(Math.random() < GDELT_QueryTemplate.probabilityOfMutatingTimeShift) {
-			long shiftMagnitude = 24; // Units are hours
+			long shiftMagnitude = SHIFT_STEP; // Units are hours
 			long initialVal = shift;
 			if(shift == minShift) ret.shift += shiftMagnitude;
 			else if(shift == maxShift) ret.shift -= shiftMagnitude;
@@ -462,7 +1303,7 @@ public class GDELT_Query implements Comparable<GDELT_Query>{
 //		}
 		
 		
-		
+		ret.mutatedFrom = parent;
 		return ret;
 	}
 	
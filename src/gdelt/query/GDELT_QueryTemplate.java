@@ -28,8 +28,10 @@
 package gdelt.query;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import gdelt.utils.IO;
 
@@ -37,6 +39,10 @@ import gdelt.utils.IO;
  * A QueryTemplate allows you to specify which elements of the query will be used;
  * in earlier versions of the code, this required hard-coding the query class,
  * but using this template the details can be specified at run-time.
+ *
+ * The template is configured once, before any queries are evaluated, and
+ * is then only read; queries may be evaluated (and mutated) on several
+ * threads at once (see GDELT_Explorer_Iterated.evaluationThreads).
  */
 public class GDELT_QueryTemplate {
 	
@@ -97,7 +103,7 @@ public class GDELT_QueryTemplate {
 		}
 	}
 	
-	private static ArrayList<GDELT_Mutator_Selector> mutatorSelectors = new ArrayList<GDELT_Mutator_Selector>();
+	private static List<GDELT_Mutator_Selector> mutatorSelectors = new CopyOnWriteArrayList<GDELT_Mutator_Selector>();
 	
 	public static void initializeMutatorSelector(Vector<GDELT_QueryField> fields, Vector<Integer> weight) {
 		if(fields.size() != weight.size()) return;
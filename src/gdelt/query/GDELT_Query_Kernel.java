@@ -0,0 +1,122 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.query;
+
+import java.util.Arrays;
+
+import gdelt.server.elements.GDELT_Event_Store;
+import gdelt.utils.IO;
+
+/**
+ * Tests a block of consecutive rows of a store against a query's predicate
+ * (see GDELT_Query_Predicate), one test at a time over the whole block, and
+ * gives the rows that pass as a bit mask; the scan then visits only those
+ * rows (see EVALUATION_ENGINE.VECTOR).
+ *
+ * This is the scalar kernel. Where the JVM has the Vector API
+ * (jdk.incubator.vector) and the optional incubator source has been
+ * compiled, get() returns GDELT_Query_Vector_Kernel instead, which tests the
+ * hour and double columns several rows to an instruction.
+ */
+class GDELT_Query_Kernel {
+
+	static final int  BLOCK  = 1024;           // The most rows tested at a time
+	static final long NO_LAG = Long.MAX_VALUE; // Any row is visible soon enough
+
+	private static final String VECTOR_KERNEL = "gdelt.query.GDELT_Query_Vector_Kernel";
+
+	private static volatile GDELT_Query_Kernel kernel;
+
+	/**
+	 * The vector kernel if it can be used, and otherwise the scalar kernel
+	 * @return
+	 */
+	static GDELT_Query_Kernel get() {
+		if(kernel == null) {
+			synchronized(GDELT_Query_Kernel.class) {
+				if(kernel == null) kernel = load();
+			}
+		}
+		return kernel;
+	}
+
+	private static GDELT_Query_Kernel load() {
+		try {
+			GDELT_Query_Kernel ret = (GDELT_Query_Kernel)Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+			IO.log(IO.LEVEL.LEVEL_1, "Evaluating with the vector kernel: " + ret);
+			return ret;
+		}
+		catch(Throwable t) { // Not compiled, not run with --add-modules jdk.incubator.vector, or no usable vector shape
+			IO.log(IO.LEVEL.LEVEL_1, "Vector kernel not available (" + t + "); evaluating with the scalar kernel");
+			return new GDELT_Query_Kernel();
+		}
+	}
+
+	/**
+	 * Finds the rows, from 'from' up to 'to' (no more than BLOCK of them), that
+	 * are visible no more than maxLag hours after their event hour (or any row,
+	 * for NO_LAG) and pass every test of the predicate: bit j of matches[w] is
+	 * set if row from + 64 * w + j does. Every bit past the rows is cleared.
+	 * @param predicate
+	 * @param from
+	 * @param to
+	 * @param maxLag
+	 * @param matches
+	 */
+	void match(GDELT_Query_Predicate predicate, int from, int to, long maxLag, long[] matches) {
+		setRows(matches, to - from);
+		if(maxLag != NO_LAG) clearLate(predicate.store(), from, maxLag, matches);
+		for(int t = 0; t < predicate.tests(); t++) predicate.clearFailing(t, from, matches);
+	}
+
+	// Sets the bits of the first n rows, and clears the rest
+	static void setRows(long[] matches, int n) {
+		Arrays.fill(matches, 0);
+		for(int w = 0; w < n >> 6; w++) matches[w] = -1L;
+		if((n & 63) != 0) matches[n >> 6] = (1L << n) - 1;
+	}
+
+	// Clears the bit of each row that is visible more than maxLag hours after its event hour
+	static void clearLate(GDELT_Event_Store store, int from, long maxLag, long[] matches) {
+		for(int w = 0; w < matches.length; w++) {
+			long bits = matches[w];
+			for(long rest = bits; rest != 0; rest &= rest - 1) {
+				int j   = Long.numberOfTrailingZeros(rest);
+				int row = from + (w << 6) + j;
+				if(store.visibleHour(row) - (long)store.eventHour(row) > maxLag) bits &= ~(1L << j);
+			}
+			matches[w] = bits;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "scalar";
+	}
+
+}
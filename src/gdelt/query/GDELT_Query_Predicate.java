@@ -0,0 +1,238 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.query;
+
+import java.util.Set;
+
+import gdelt.query.domains.RootCode;
+import gdelt.query.domains.components.DoubleQueryDomain;
+import gdelt.query.domains.components.UnorderedSetQueryDomain;
+import gdelt.server.elements.GDELT_Code_Dictionary;
+import gdelt.server.elements.GDELT_Event_Index.FIELD;
+import gdelt.server.elements.GDELT_Event_Store;
+
+/**
+ * A query's domains, compiled for the rows of one store into a flat list of
+ * tests on whole numbers: a range check for each double field (which the
+ * domains compare by their intValue; see DoubleQueryDomain.getIntRange) and
+ * a bit mask for the root code and each actor's country code (by dictionary
+ * id, so no code is decoded). Only the fields that the template matches are
+ * tested, so the test of a row reads no template flags, makes no calls on
+ * the domains and boxes nothing.
+ *
+ * A predicate is made for each scan (see GDELT_Query.StoreScan), after which
+ * neither the query nor the template can change it.
+ */
+final class GDELT_Query_Predicate {
+
+	private static final int NOT_TESTED = -1;
+
+	private final GDELT_Event_Store store;
+	private final FIELD[]           fields;  // The field of each test
+	private final long[]            lowest;  // For a range, its lowest value; for a mask, the value of its bit 0
+	private final long[]            highest; // For a range, its highest value
+	private final boolean[]         exclude; // For a range, true if the values in it fail the test (the domain is inverted)
+	private final long[][]          masks;   // For a mask, its bits; null for a range
+	private final int[]             testOf;  // For each FIELD ordinal, the test of that field, or NOT_TESTED
+
+	GDELT_Query_Predicate(GDELT_Query query, GDELT_Event_Store store) {
+		this.store = store;
+		int n = 0;
+		if(!query.all) {
+			if(GDELT_QueryTemplate.matchRootCode)           n++;
+			if(GDELT_QueryTemplate.matchActor1CountryCodes) n++;
+			if(GDELT_QueryTemplate.matchActor2CountryCodes) n++;
+			if(GDELT_QueryTemplate.matchGoldsteinScale)     n++;
+			if(GDELT_QueryTemplate.matchAverageTone)        n++;
+			if(GDELT_QueryTemplate.matchLatLon)             n += 2;
+		}
+		fields  = new FIELD[n];
+		lowest  = new long[n];
+		highest = new long[n];
+		exclude = new boolean[n];
+		masks   = new long[n][];
+		testOf  = new int[FIELD.values().length];
+		for(int f = 0; f < testOf.length; f++) testOf[f] = NOT_TESTED;
+		if(n == 0) return;
+		int t = 0;
+		GDELT_Code_Dictionary codes = store.getCountryCodes();
+		if(GDELT_QueryTemplate.matchRootCode)           t = addMask(t, FIELD.ROOT_CODE, query.rootCode);
+		if(GDELT_QueryTemplate.matchActor1CountryCodes) t = addMask(t, FIELD.ACTOR_1, codes, query.actor1CountryCode, GDELT_QueryTemplate.actor1CountryCodes);
+		if(GDELT_QueryTemplate.matchActor2CountryCodes) t = addMask(t, FIELD.ACTOR_2, codes, query.actor2CountryCode, GDELT_QueryTemplate.actor2CountryCodes);
+		if(GDELT_QueryTemplate.matchGoldsteinScale)     t = addRange(t, FIELD.GOLDSTEIN, query.goldsteinScore);
+		if(GDELT_QueryTemplate.matchAverageTone)        t = addRange(t, FIELD.AVG_TONE, query.avgTone);
+		if(GDELT_QueryTemplate.matchLatLon) {
+			t = addRange(t, FIELD.LAT, query.actionLat);
+			t = addRange(t, FIELD.LON, query.actionLon);
+		}
+	}
+
+	private int addRange(int t, FIELD field, DoubleQueryDomain domain) {
+		long[] range = domain.getIntRange();
+		fields[t]  = field;
+		lowest[t]  = range[0];
+		highest[t] = range[1];
+		exclude[t] = !domain.includesMatches();
+		testOf[field.ordinal()] = t;
+		return t + 1;
+	}
+
+	// The root codes that the domain matches, as bits by code; from the least
+	// of them for a domain that has no mask (see RootCode.getCodeMask)
+	private int addMask(int t, FIELD field, RootCode domain) {
+		long[] mask = domain.getCodeMask();
+		if(mask != null) return addMask(t, field, 0, mask);
+		Set<Integer> values = domain.getMatchingValues(); // In order
+		long   base = values.isEmpty() ? 0 : values.iterator().next();
+		long[] bits = new long[values.isEmpty() ? 0 : (int)((maxOf(values) - base) >> 6) + 1];
+		for(int value: values) bits[(int)((value - base) >> 6)] |= 1L << (value - base);
+		return addMask(t, field, base, bits);
+	}
+
+	// The country codes that the domain matches, as bits by dictionary id: from
+	// the domain's mask over the template's codes where it has one
+	private int addMask(int t, FIELD field, GDELT_Code_Dictionary codes, UnorderedSetQueryDomain<String> domain, String[] slotCodes) {
+		long[] slotMask = domain.getMask(slotCodes);
+		int[]  slots    = slotMask == null ? null : codes.slotsOf(slotCodes);
+		long[] bits     = new long[(codes.size() >> 6) + 1];
+		for(int id = 0; id < codes.size(); id++) {
+			boolean matches = slotMask != null ? UnorderedSetQueryDomain.matches(slotMask, slots[id]) : domain.matches(codes.decode(id));
+			if(matches) bits[id >> 6] |= 1L << id;
+		}
+		return addMask(t, field, 0, bits);
+	}
+
+	private int addMask(int t, FIELD field, long base, long[] bits) {
+		fields[t]  = field;
+		lowest[t]  = base;
+		masks[t]   = bits;
+		testOf[field.ordinal()] = t;
+		return t + 1;
+	}
+
+	private static int maxOf(Set<Integer> values) {
+		int ret = Integer.MIN_VALUE;
+		for(int value: values) ret = Math.max(ret, value);
+		return ret;
+	}
+
+	/**
+	 * True if the row of the store passes every test
+	 * @param row
+	 * @return
+	 */
+	boolean matches(int row) {
+		for(int t = 0; t < fields.length; t++) {
+			if(!passes(t, valueOf(fields[t], row))) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * True if a value of the field (as held in the store's index) passes its
+	 * test; true for a field that is not tested
+	 * @param field
+	 * @param value
+	 * @return
+	 */
+	boolean matches(FIELD field, int value) {
+		int t = testOf[field.ordinal()];
+		return t == NOT_TESTED || passes(t, value);
+	}
+
+	/**
+	 * Clears the bit of each row that fails test t, where bit j of matches[w]
+	 * stands for row from + 64 * w + j (see GDELT_Query_Kernel.match)
+	 * @param t
+	 * @param from
+	 * @param matches
+	 */
+	void clearFailing(int t, int from, long[] matches) {
+		FIELD field = fields[t];
+		for(int w = 0; w < matches.length; w++) {
+			long bits = matches[w];
+			for(long rest = bits; rest != 0; rest &= rest - 1) {
+				int j = Long.numberOfTrailingZeros(rest);
+				if(!passes(t, valueOf(field, from + (w << 6) + j))) bits &= ~(1L << j);
+			}
+			matches[w] = bits;
+		}
+	}
+
+	// The tests, for a kernel (see GDELT_Query_Kernel)
+
+	GDELT_Event_Store store() {
+		return store;
+	}
+
+	int tests() {
+		return fields.length;
+	}
+
+	FIELD field(int t) {
+		return fields[t];
+	}
+
+	// True for a bit mask, false for a range
+	boolean isMask(int t) {
+		return masks[t] != null;
+	}
+
+	long lowest(int t) {
+		return lowest[t];
+	}
+
+	long highest(int t) {
+		return highest[t];
+	}
+
+	boolean excludes(int t) {
+		return exclude[t];
+	}
+
+	boolean passes(int t, long value) {
+		long[] mask = masks[t];
+		if(mask == null) return (value >= lowest[t] && value <= highest[t]) != exclude[t];
+		long bit = value - lowest[t];
+		return bit >= 0 && (bit >> 6) < mask.length && (mask[(int)(bit >> 6)] & (1L << bit)) != 0;
+	}
+
+	// The value of the field in the row, as the domains compare it
+	private int valueOf(FIELD field, int row) {
+		switch(field) {
+			case ROOT_CODE: return store.rootCode(row);
+			case GOLDSTEIN: return (int)store.goldstein(row);
+			case AVG_TONE:  return (int)store.avgTone(row);
+			case ACTOR_1:   return store.actor1(row);
+			case ACTOR_2:   return store.actor2(row);
+			case LAT:       return (int)store.lat(row);
+			default:        return (int)store.lon(row);
+		}
+	}
+
+}
@@ -27,12 +27,53 @@
  */
 package gdelt.query.domains;
 
+import java.util.TreeSet;
+
 import gdelt.query.domains.components.OrderedSetQueryDomain;
 
 public class RootCode extends OrderedSetQueryDomain<Integer>{
 	
+	// The codes matched, as bits by code; built when first needed after the
+	// matches change (a query read from JSON starts without it, as it is transient)
+	private transient volatile long[] codeMask;
+	
 	public RootCode(INIT_METHOD initMethod) {
 		super("RootCode", initMethod, 
 			9, 8, 7, 6, 5, 4, 3, 2, 1, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20);
 	}
+	
+	@Override
+	protected void matchesChanged() {
+		codeMask = null;
+	}
+	
+	@Override
+	public boolean matches(Integer comparand) {
+		return comparand != null && matches(comparand.intValue());
+	}
+	
+	// As matches(Integer), without boxing
+	public boolean matches(int code) {
+		long[] mask = getCodeMask();
+		if(mask == null) return super.matches(code); // Some code matched is negative
+		return code >= 0 && (code >> 6) < mask.length && (mask[code >> 6] & (1L << code)) != 0;
+	}
+	
+	/**
+	 * The codes matched, as a bit mask: bit c is set if code c matches. Null if
+	 * any code matched is negative (which the root codes never are)
+	 * @return
+	 */
+	public long[] getCodeMask() {
+		long[] ret = codeMask;
+		if(ret == null) {
+			TreeSet<Integer> codes = new TreeSet<Integer>(getMatchingValues());
+			if(!codes.isEmpty() && codes.first() < 0) return null;
+			int highest = codes.isEmpty() ? -1 : codes.last();
+			ret = new long[(highest >> 6) + 1];
+			for(int code: codes) ret[code >> 6] |= 1L << code;
+			codeMask = ret;
+		}
+		return ret;
+	}
 }
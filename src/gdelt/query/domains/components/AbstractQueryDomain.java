@@ -57,6 +57,11 @@ public abstract class AbstractQueryDomain<T>{
 	public void invert() {
 		includeMatches = !includeMatches;
 	}
+
+	// False if the domain has been inverted, so that it matches what it otherwise would not
+	public boolean includesMatches() {
+		return includeMatches;
+	}
 	
 	public abstract void initToFullRange();
 	public abstract void initToRandomRange();
@@ -84,6 +89,11 @@ public abstract class AbstractQueryDomain<T>{
 	public abstract boolean expand();
 
 	public abstract boolean matches(T comparand);
+
+	// A hash of what this domain matches, and a test that another domain matches
+	// exactly the same values; neither allocates (see GDELT_Query.sameSignature)
+	public abstract int     signatureHash();
+	public abstract boolean sameSignature(AbstractQueryDomain<?> other);
 	
 	public String getName() {
 		return name;
@@ -138,7 +138,12 @@ public class DoubleQueryDomain extends AbstractQueryDomain<Double> {
 	}
 	
 	public boolean matches(Double comparand) {
-		int val = comparand.intValue();
+		return matches(comparand.doubleValue());
+	}
+	
+	// As matches(Double), without boxing
+	public boolean matches(double comparand) {
+		int val = (int)comparand; // As intValue
 		//System.out.println("MIN: " + min + " COMP: " + val + " MAX" + max);
 		boolean match = 
 			(min == max ) ? // If the min and max values are the same, then a matching value matches
@@ -150,6 +155,36 @@ public class DoubleQueryDomain extends AbstractQueryDomain<Double> {
 		return includeMatches ? match : !match;
 	}
 	
+	/**
+	 * The whole numbers that match accepts (it compares the comparand's intValue),
+	 * as {lowest, highest}; lowest is greater than highest if there are none. When
+	 * the domain is inverted (see includesMatches) these are the values it rejects.
+	 * @return
+	 */
+	public long[] getIntRange() {
+		if(Double.isNaN(min) || Double.isNaN(max)) return new long[] {1, 0};
+		if(min == max) return min == Math.rint(min) ? new long[] {(long)min, (long)min} : new long[] {1, 0};
+		long lowest  = (long)Math.ceil(min);
+		long highest = max < domainMax ? (long)Math.ceil(max) - 1 : (long)Math.floor(max);
+		return new long[] {lowest, highest};
+	}
+	
+	@Override
+	public int signatureHash() {
+		int h = includeMatches ? 1 : 0;
+		h = 31 * h + Double.hashCode(min + 0.0);
+		h = 31 * h + Double.hashCode(max + 0.0);
+		h = 31 * h + Double.hashCode(domainMin + 0.0);
+		return 31 * h + Double.hashCode(domainMax + 0.0);
+	}
+
+	@Override
+	public boolean sameSignature(AbstractQueryDomain<?> other) {
+		if(!(other instanceof DoubleQueryDomain)) return false;
+		DoubleQueryDomain o = (DoubleQueryDomain)other;
+		return includeMatches == o.includeMatches && min == o.min && max == o.max && domainMin == o.domainMin && domainMax == o.domainMax;
+	}
+	
 	public String toString() {
 		return getName() + "[" + min + "," + max + (max == domainMax ? "]" : ")");
 	}
@@ -115,7 +115,11 @@ public class IntegerQueryDomain extends AbstractQueryDomain<Integer>{
 	}
 	
 	public boolean matches(Integer comparand) {
-		int val = comparand.intValue();
+		return matches(comparand.intValue());
+	}
+	
+	// As matches(Integer), without boxing
+	public boolean matches(int val) {
 		//System.out.println("MIN: " + min + " COMP: " + val + " MAX" + max);
 		boolean match = 
 			(min == max ) ? // If the min and max values are the same, then a matching value matches
@@ -127,6 +131,22 @@ public class IntegerQueryDomain extends AbstractQueryDomain<Integer>{
 		return includeMatches ? match : !match;
 	}
 	
+	@Override
+	public int signatureHash() {
+		int h = includeMatches ? 1 : 0;
+		h = 31 * h + min;
+		h = 31 * h + max;
+		h = 31 * h + domainMin;
+		return 31 * h + domainMax;
+	}
+
+	@Override
+	public boolean sameSignature(AbstractQueryDomain<?> other) {
+		if(!(other instanceof IntegerQueryDomain)) return false;
+		IntegerQueryDomain o = (IntegerQueryDomain)other;
+		return includeMatches == o.includeMatches && min == o.min && max == o.max && domainMin == o.domainMin && domainMax == o.domainMax;
+	}
+	
 	public String toString() {
 		return getName() + "[" + min + "," + max + (max == domainMax ? "]" : ")");
 	}
@@ -128,7 +128,11 @@ public class IntegerWrappedQueryDomain extends AbstractQueryDomain<Integer>{
 	
 	@Override
 	public boolean matches(Integer comparand) {
-		int val = comparand.intValue();
+		return matches(comparand.intValue());
+	}
+	
+	// As matches(Integer), without boxing
+	public boolean matches(int val) {
 		if(val < min) val += rangeSize;
 		System.out.println("MIN: " + min + " COMP: " + val + " MAX " + max);
 		boolean match = 
@@ -141,6 +145,22 @@ public class IntegerWrappedQueryDomain extends AbstractQueryDomain<Integer>{
 		return includeMatches ? match : !match;
 	}
 	
+	@Override
+	public int signatureHash() {
+		int h = includeMatches ? 1 : 0;
+		h = 31 * h + min;
+		h = 31 * h + max;
+		h = 31 * h + domainMin;
+		return 31 * h + domainMax;
+	}
+
+	@Override
+	public boolean sameSignature(AbstractQueryDomain<?> other) {
+		if(!(other instanceof IntegerWrappedQueryDomain)) return false;
+		IntegerWrappedQueryDomain o = (IntegerWrappedQueryDomain)other;
+		return includeMatches == o.includeMatches && min == o.min && max == o.max && domainMin == o.domainMin && domainMax == o.domainMax;
+	}
+	
 	public String showRange() {
 		return min + " - " + (max > domainMax ? domainMax + "|" + domainMin + " - " + (max - rangeSize): max);
 	}
@@ -30,6 +30,7 @@ package gdelt.query.domains.components;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -53,6 +54,14 @@ public class OrderedSetQueryDomain<T> extends AbstractQueryDomain<T> {
     	else{
     		for(int i = minPosition; i < maxPosition; i++) matchValues.add(values.get(i));
     	}
+    	matchesChanged();
+    }
+
+    /**
+     * Called whenever the values matched change, for a subclass that keeps
+     * them in another form
+     */
+    protected void matchesChanged() {
     }
 	
 	public OrderedSetQueryDomain(String name, AbstractQueryDomain.INIT_METHOD initMethod, T ... valuesToUse){
@@ -176,6 +185,29 @@ public class OrderedSetQueryDomain<T> extends AbstractQueryDomain<T> {
 		return matchValues.contains(comparand);
 	}
 	
+	// The positions matched are [minPosition, maxPosition), or minPosition alone if they are equal
+	private int endOfMatches() {
+		return minPosition == maxPosition ? minPosition + 1 : maxPosition;
+	}
+
+	@Override
+	public int signatureHash() {
+		int h = 0;
+		for(int i = minPosition; i < endOfMatches() && i < values.size(); i++) h += Objects.hashCode(values.get(i));
+		return h;
+	}
+
+	@Override
+	public boolean sameSignature(AbstractQueryDomain<?> other) {
+		if(!(other instanceof OrderedSetQueryDomain)) return false;
+		OrderedSetQueryDomain<?> o = (OrderedSetQueryDomain<?>)other;
+		if(minPosition != o.minPosition || endOfMatches() != o.endOfMatches() || values.size() != o.values.size()) return false;
+		for(int i = minPosition; i < endOfMatches() && i < values.size(); i++) {
+			if(!Objects.equals(values.get(i), o.values.get(i))) return false;
+		}
+		return true;
+	}
+	
 	@Override
 	public String toString() {
 		return getName() + "[" +values.get(minPosition) + "," + (maxPosition == values.size() ? values.get(maxPosition  - 1) + "]" : values.get(maxPosition) + ")");
@@ -31,6 +31,7 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -45,6 +46,13 @@ public class UnorderedSetQueryDomain<T> extends AbstractQueryDomain<T>{
 	List<T> domainValues     = new ArrayList<T>(); // Note: Keeping these in an ordered list is just to help with random selection
 	List<T> valuesToCompare  = new ArrayList<T>();
 	List<T> otherValues      = new ArrayList<T>();
+
+	// The values to compare as a bit mask over an array of 'slot' values
+	// (see getMask); rebuilt whenever the values to compare change
+	private transient Object[] maskSlots = null;
+	private transient long[]   mask      = null;
+
+	private static final long[] NO_MASK = new long[0];
 	
 	
 	public UnorderedSetQueryDomain(String name, INIT_METHOD init_method, T ... values) {
@@ -55,12 +63,14 @@ public class UnorderedSetQueryDomain<T> extends AbstractQueryDomain<T>{
 	
 	@Override
 	public void initToFullRange() {
+		mask = null;
 		valuesToCompare.addAll(domainValues);
 		otherValues.clear();
 	}
 
 	@Override
 	public void initToRandomRange() {
+		mask = null;
 		valuesToCompare.clear();
 		otherValues.clear();
 		while(valuesToCompare.size() == 0) { // Can't be left empty
@@ -84,6 +94,7 @@ public class UnorderedSetQueryDomain<T> extends AbstractQueryDomain<T>{
 	@Override
 	public boolean reduce() {
 		if(!canReduce()) return false;
+		mask = null;
 		otherValues.add(valuesToCompare.remove((int)(Math.floor(Math.random() * valuesToCompare.size()))));
 		return true;
 	}
@@ -91,6 +102,7 @@ public class UnorderedSetQueryDomain<T> extends AbstractQueryDomain<T>{
 	@Override
 	public boolean expand() {
 		if(!canExpand()) return false;
+		mask = null;
 		valuesToCompare.add(otherValues.remove((int)(Math.floor(Math.random() * otherValues.size()))));
 		return false;
 	}
@@ -99,11 +111,73 @@ public class UnorderedSetQueryDomain<T> extends AbstractQueryDomain<T>{
 	public boolean matches(T comparand) {
 		return valuesToCompare.contains(comparand);
 	}
+
+	/**
+	 * Returns the values to compare as a bit mask: bit i is set if slots[i]
+	 * is one of the values to compare. A value that is not in the slots
+	 * (the 'other' slot, slots.length) never matches; if any of the values
+	 * to compare is not in the slots, the mask cannot represent this domain
+	 * and null is returned.
+	 *
+	 * The mask is kept until the values change, so the same slots array
+	 * should be passed each time.
+	 * @param slots
+	 * @return
+	 */
+	public long[] getMask(T[] slots) {
+		if(mask == null || maskSlots != slots) {
+			long[] bits = new long[(slots.length >> 6) + 1]; // Room for the 'other' slot
+			int found = 0;
+			for(int i = 0; i < slots.length; i++) {
+				if(valuesToCompare.contains(slots[i])) bits[i >> 6] |= 1L << i;
+			}
+			for(T t: valuesToCompare) {
+				for(T slot: slots) {
+					if(t == null ? slot == null : t.equals(slot)) {
+						found++;
+						break;
+					}
+				}
+			}
+			maskSlots = slots;
+			mask      = found == valuesToCompare.size() ? bits : NO_MASK;
+		}
+		return mask == NO_MASK ? null : mask;
+	}
+
+	/**
+	 * True if the slot's bit is set in the mask
+	 * @param mask
+	 * @param slot
+	 * @return
+	 */
+	public static boolean matches(long[] mask, int slot) {
+		return (mask[slot >> 6] & (1L << slot)) != 0;
+	}
+	
+	// The values to compare, in any order
+	@Override
+	public int signatureHash() {
+		int h = 0;
+		for(int i = 0; i < valuesToCompare.size(); i++) h += Objects.hashCode(valuesToCompare.get(i));
+		return h;
+	}
+
+	@Override
+	public boolean sameSignature(AbstractQueryDomain<?> other) {
+		if(!(other instanceof UnorderedSetQueryDomain)) return false;
+		List<?> theirs = ((UnorderedSetQueryDomain<?>)other).valuesToCompare;
+		if(valuesToCompare.size() != theirs.size()) return false;
+		for(int i = 0; i < valuesToCompare.size(); i++) if(!theirs.contains(valuesToCompare.get(i))) return false;
+		for(int i = 0; i < theirs.size(); i++)          if(!valuesToCompare.contains(theirs.get(i))) return false;
+		return true;
+	}
 	
 	public boolean set(Set<T> values) {
 		Set<T> temp = new HashSet<T>();
 		for(T t: values) if(domainValues.contains(t)) temp.add(t);
 		if(temp.size() == 0) return false; // No change
+		mask = null;
 		otherValues.clear();
 		valuesToCompare.clear();
 		for(T t : domainValues) {
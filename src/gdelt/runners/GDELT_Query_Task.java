@@ -29,6 +29,8 @@ package gdelt.runners;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -41,6 +43,7 @@ import gdelt.predictors.Predictor_Factory;
 import gdelt.query.GDELT_Query;
 import gdelt.server.elements.GDELT_Corpus;
 import gdelt.utils.IO;
+import gdelt.utils.TimeSeries;
 import gdelt.utils.ZeroIndexedSeries;
 
 public class GDELT_Query_Task implements P_Scripts {
@@ -49,7 +52,7 @@ public class GDELT_Query_Task implements P_Scripts {
 	private static Gson gson = null;
 
 	// Retrieve an instance of the JSON builder
-	public static Gson getGson() {
+	public static synchronized Gson getGson() {
 		if(gson == null) {
 			GsonBuilder gsonBuilder = new GsonBuilder();
 			gsonBuilder.serializeSpecialFloatingPointValues();
@@ -81,6 +84,13 @@ public class GDELT_Query_Task implements P_Scripts {
 	
 	@SerializedName("useDateTimeAdded")
 	public boolean useDateTimeAdded  = false;
+
+	// The results, at the same times zero, of a query that differs from this
+	// task's only in its domains (e.g. the one it was mutated from); when set,
+	// only the change from these may be counted (see GDELT_Query.openWindows).
+	// These are not sent to a remote service
+	public transient GDELT_Query                           baseQuery   = null;
+	public transient Map<LocalDateTime, ZeroIndexedSeries> baseResults = null;
 	
 	
 	public GDELT_Query_Task(GDELT_Query q, int res, ChronoUnit resolutionUnit, boolean useDateTimeAdded, LocalDateTime ... timesZero) {
@@ -97,12 +107,77 @@ public class GDELT_Query_Task implements P_Scripts {
 		return getGson().toJson(this);
 	}
 	
-	// Evaluate a corpus and place the results in the results map
+	// Evaluate a corpus and place the results in the results map; all times zero
+	// are evaluated with a single scan of the corpus (see GDELT_Query.getResults)
 	public void evaluateCorpus(GDELT_Corpus corpus){
-		// Version 1
 		query.resetReturn();
-		for(LocalDateTime tZero: resultsMap.keySet()) {
-			TreeMap<LocalDateTime, Double> rets = query.getResult(tZero, resolution, resUnit, corpus, useDateTimeAdded).getMapOfValues();
+		placeResults(query.getResults(new ArrayList<LocalDateTime>(resultsMap.keySet()), resolution, resUnit, corpus, useDateTimeAdded));
+	}
+
+	/**
+	 * Evaluates a corpus for a batch of tasks (e.g. a generation of queries),
+	 * with a single scan of the corpus for all of them: each event is read
+	 * once and tested against every query. Tasks with base results (see
+	 * baseResults) count only the change from them, where they can. The results
+	 * are the same as calling evaluateCorpus on each task in turn.
+	 * @param tasks
+	 * @param corpus
+	 */
+	public static void evaluateCorpus(List<GDELT_Query_Task> tasks, GDELT_Corpus corpus) {
+		List<GDELT_Query_Task> batched = new ArrayList<GDELT_Query_Task>();
+		List<GDELT_Query>      queries = new ArrayList<GDELT_Query>();
+		List<GDELT_Query_Task> changed = new ArrayList<GDELT_Query_Task>();
+		List<GDELT_Query_Task> others  = new ArrayList<GDELT_Query_Task>();
+		for(GDELT_Query_Task task: tasks) {
+			task.query.resetReturn();
+			if(task.baseResults != null && task.baseResults.keySet().equals(task.resultsMap.keySet()) &&
+			   task.query.openWindows(task.baseQuery, corpus, new ArrayList<LocalDateTime>(task.resultsMap.keySet()), task.resolution, task.resUnit, task.useDateTimeAdded)) {
+				changed.add(task);
+				queries.add(task.query);
+			}
+			else if(task.query.openWindows(corpus, new ArrayList<LocalDateTime>(task.resultsMap.keySet()), task.resolution, task.resUnit, task.useDateTimeAdded)) {
+				batched.add(task);
+				queries.add(task.query);
+			}
+			else others.add(task); // Not on an hourly grid, or the same query is already in the batch
+		}
+		GDELT_Query.scanWindows(corpus, queries);
+		for(GDELT_Query_Task task: batched) task.placeResults(task.query.closeWindows());
+		for(GDELT_Query_Task task: changed) if(!task.placeChange(task.query.closeWindows())) others.add(task);
+		for(GDELT_Query_Task task: others)  task.evaluateCorpus(corpus);
+	}
+
+	/**
+	 * Evaluates a corpus for this task's query with each of these shifts in
+	 * place of its own; for a query without children, all of them come from
+	 * one pass over the corpus (see GDELT_Query.getResultsForShifts). This
+	 * task is not changed.
+	 * @param corpus
+	 * @param shifts
+	 * @return a task for each shift (see forShift), evaluated, in the same order
+	 */
+	public List<GDELT_Query_Task> evaluateCorpusForShifts(GDELT_Corpus corpus, long ... shifts) {
+		Map<Long, Map<LocalDateTime, TimeSeries>> results = query.getResultsForShifts(shifts, new ArrayList<LocalDateTime>(resultsMap.keySet()), resolution, resUnit, corpus, useDateTimeAdded);
+		List<GDELT_Query_Task> ret = new ArrayList<GDELT_Query_Task>();
+		for(long shift: shifts) {
+			GDELT_Query_Task task = forShift(shift);
+			task.placeResults(results.get(shift));
+			ret.add(task);
+		}
+		return ret;
+	}
+
+	// A new task, as yet unevaluated, like this one but for a copy of its query with this shift
+	public GDELT_Query_Task forShift(long shift) {
+		GDELT_Query shifted = query.clone();
+		shifted.shift = shift;
+		return new GDELT_Query_Task(shifted, resolution, resUnit, useDateTimeAdded, resultsMap.keySet().toArray(new LocalDateTime[resultsMap.size()]));
+	}
+
+	private void placeResults(Map<LocalDateTime, TimeSeries> results) {
+		for(Map.Entry<LocalDateTime, TimeSeries> result: results.entrySet()) {
+			LocalDateTime tZero = result.getKey();
+			TreeMap<LocalDateTime, Double> rets = result.getValue().getMapOfValues();
 			if(rets == null) System.out.println("RETS IS NULL: " + tZero);
 			// Place in the map
 			int z = 0;
@@ -120,6 +195,27 @@ public class GDELT_Query_Task implements P_Scripts {
 	}
 	
 	
+	// Places the base results corrected by the change from them (see baseResults).
+	// False if the results are all zero, as it is then not known whether the query
+	// matched any events at all (outside the windows); it is to be evaluated in full
+	private boolean placeChange(Map<LocalDateTime, TimeSeries> changes) {
+		placeResults(changes);
+		boolean any = false;
+		for(Map.Entry<LocalDateTime, ZeroIndexedSeries> entry: resultsMap.entrySet()) {
+			ZeroIndexedSeries base   = baseResults.get(entry.getKey());
+			ZeroIndexedSeries change = entry.getValue();
+			if(base.getValues().length != change.getValues().length || base.getZeroIndex() != change.getZeroIndex()) return false;
+			double[] values = new double[base.getValues().length]; // The base results may be shared, so are not changed
+			for(int i = 0; i < values.length; i++) {
+				values[i] = base.getValues()[i] + change.getValues()[i];
+				if(values[i] != 0) any = true;
+			}
+			entry.setValue(new ZeroIndexedSeries(change.getZeroIndex(), values));
+		}
+		if(any) query.returnedValuesOnLastProcess = true;
+		return any;
+	}
+	
 	// Specify a set from  the results set and a training series,
 	// and get back the predictions
 	public double[] getPredictions(LocalDateTime whichSet, ZeroIndexedSeries trainseries) {
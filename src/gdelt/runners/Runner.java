@@ -38,12 +38,16 @@ import gdelt.explorers.EcosystemGenerationLoopIterator;
 import gdelt.explorers.GDELT_Explorer;
 import gdelt.explorers.GDELT_Explorer_Iterated;
 import gdelt.explorers.QueryIterator;
+import gdelt.predictors.Predictor_Factory;
+import gdelt.predictors.Predictor_Python;
+import gdelt.predictors.Python_Worker_Pool;
 import gdelt.query.GDELT_Query;
 import gdelt.query.GDELT_QueryTemplate;
 import gdelt.query.domains.components.AbstractQueryDomain.INIT_METHOD;
 import gdelt.runners.configuration.RunnerConfiguration;
 import gdelt.scorers.Scorer_NRMSE_Mean;
 import gdelt.server.GDELT_Local_Service;
+import gdelt.server.elements.GDELT_Corpus;
 import gdelt.utils.Args;
 import gdelt.utils.DateFormats;
 import gdelt.utils.EnvironmentCheck;
@@ -90,6 +94,9 @@ public class Runner {
 	private GDELT_Query[]           seedQueries     = null;
 	private int                     bailoutValue    = -1;
 	private int                     bailoutInterval = -1;
+	private int                     evaluationThreads = 1;
+	private int                     fitnessCacheSize  = 10000;
+	private IO.LEVEL                logLevel          = IO.LEVEL.LEVEL_2;
 	
 	// Constructor
 	public Runner(Map<String, String> properties) {
@@ -112,6 +119,15 @@ public class Runner {
 		
 		if(properties.containsKey("bailoutValue"))    bailoutValue    = Integer.parseInt(properties.get("bailoutValue"));
 		if(properties.containsKey("bailoutInterval")) bailoutInterval = Integer.parseInt(properties.get("bailoutInterval"));
+		if(properties.containsKey("evaluationThreads")) evaluationThreads = Integer.parseInt(properties.get("evaluationThreads"));
+		if(properties.containsKey("fitnessCacheSize"))  fitnessCacheSize  = Integer.parseInt(properties.get("fitnessCacheSize"));
+		if(properties.containsKey("logLevel"))          logLevel          = IO.LEVEL.valueOf("LEVEL_" + properties.get("logLevel").trim());
+		if(properties.containsKey("evaluationEngine"))  GDELT_Query.evaluationEngine = GDELT_Query.EVALUATION_ENGINE.valueOf(properties.get("evaluationEngine").trim().toUpperCase());
+		if(properties.containsKey("aggregateEvents"))   GDELT_Corpus.aggregateEvents  = Boolean.parseBoolean(properties.get("aggregateEvents").trim());
+		if(properties.containsKey("pythonWorkers"))     Python_Worker_Pool.workers        = Integer.parseInt(properties.get("pythonWorkers").trim());
+		if(properties.containsKey("pythonTimeout"))     Python_Worker_Pool.timeoutSeconds = Long.parseLong(properties.get("pythonTimeout").trim());
+		if(properties.containsKey("pythonPool"))        Predictor_Python.usePool          = Boolean.parseBoolean(properties.get("pythonPool").trim());
+		if(properties.containsKey("nativePredictors"))  Predictor_Factory.nativePredictors = Boolean.parseBoolean(properties.get("nativePredictors").trim());
 	}
 	
 	// Run 
@@ -153,7 +169,7 @@ public class Runner {
 			IO.init(outputDir);
 			
 			// Set log level; 2 is best
-			IO.log_level = IO.LEVEL.LEVEL_2;
+			IO.log_level = logLevel;
 			IO.memCheck();
 			IO.log(IO.LEVEL.LEVEL_0, "Starting run: " + outputDir);
 			IO.log(IO.LEVEL.LEVEL_0, "RUN GROUP DESCRIPTION: " + desc);
@@ -192,6 +208,8 @@ public class Runner {
 	    	
 			if(bailoutValue > 0)    explorer.bailoutValue    = bailoutValue;
 			if(bailoutInterval > 0) explorer.bailoutInterval = bailoutInterval;
+			explorer.evaluationThreads = evaluationThreads;
+			explorer.fitnessCacheSize  = fitnessCacheSize;
 
 			IO.log(IO.LEVEL.LEVEL_1, "Specifying test criteria");
 			// Specify the test criteria
@@ -207,6 +225,7 @@ public class Runner {
 			bestQuery.report(IO.LEVEL.LEVEL_3);			
 					
 		}
+		Python_Worker_Pool.shutdown(); // If any Python predictions were made
 		System.out.println("Done.");
 		
 	}
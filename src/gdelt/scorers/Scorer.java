@@ -30,8 +30,10 @@ package gdelt.scorers;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import gdelt.runners.GDELT_Query_Task;
+import gdelt.scorers.ScorerKernels.GroundTruth;
 import gdelt.scorers.results.SmartScore;
 import gdelt.utils.TimeSeries;
 import gdelt.utils.ZeroIndexedSeries;
@@ -54,21 +56,58 @@ public abstract class Scorer {
 	
 	public Map<LocalDateTime, ZeroIndexedSeries> trainAndTestMap = new HashMap<LocalDateTime, ZeroIndexedSeries>();
 
+	// The statistics of each start date's series (see getFutureTruth and getBaseTruth)
+	private transient Map<LocalDateTime, GroundTruth> futureTruth = new ConcurrentHashMap<LocalDateTime, GroundTruth>();
+	private transient Map<LocalDateTime, GroundTruth> baseTruth   = new ConcurrentHashMap<LocalDateTime, GroundTruth>();
+
 	// Initialize with an empty map; this is useless
 	public Scorer() { }
 	
 	public Scorer(TimeSeries dataSet, int tMin, int tMax, LocalDateTime ... dateTimes) {
-    	for(LocalDateTime ldt: dateTimes) {
-            trainAndTestMap.put(ldt, new ZeroIndexedSeries(-1 * tMin, dataSet.lift(ldt, tMin, tMax).getValues()));    		
-    	}
+    	init(dataSet, tMin, tMax, dateTimes);
 	}
 	
 	
 	public void init(TimeSeries dataSet, int tMin, int tMax, LocalDateTime ... dateTimes) {
     	for(LocalDateTime ldt: dateTimes) {
-            trainAndTestMap.put(ldt, new ZeroIndexedSeries(-1 * tMin, dataSet.lift(ldt, tMin, tMax).getValues()));    		
+    		ZeroIndexedSeries series = new ZeroIndexedSeries(-1 * tMin, dataSet.lift(ldt, tMin, tMax).getValues());
+            trainAndTestMap.put(ldt, series);
+            futureTruth.put(ldt, new GroundTruth(series.getPredictions(), series));
+            baseTruth.put(ldt, new GroundTruth(series.getBaseValues(), series));
     	}
 	}
+	
+	/**
+	 * The values of the series for the date from time zero on (as
+	 * getPredictions), with their statistics; computed once, when the series
+	 * is added, and again only if it is replaced or changed
+	 * @param date
+	 * @return
+	 */
+	public GroundTruth getFutureTruth(LocalDateTime date) {
+		ZeroIndexedSeries series = trainAndTestMap.get(date);
+		GroundTruth       ret    = futureTruth.get(date);
+		if(ret == null || !ret.isFrom(series)) {
+			ret = new GroundTruth(series.getPredictions(), series);
+			futureTruth.put(date, ret);
+		}
+		return ret;
+	}
+	
+	/**
+	 * As getFutureTruth, for the values before time zero (as getBaseValues)
+	 * @param date
+	 * @return
+	 */
+	public GroundTruth getBaseTruth(LocalDateTime date) {
+		ZeroIndexedSeries series = trainAndTestMap.get(date);
+		GroundTruth       ret    = baseTruth.get(date);
+		if(ret == null || !ret.isFrom(series)) {
+			ret = new GroundTruth(series.getBaseValues(), series);
+			baseTruth.put(date, ret);
+		}
+		return ret;
+	}
 		
 	/**
 	 * Return a single score for this entire set
@@ -47,7 +47,9 @@ public class ScorerFactory {
 		return null;
 	}
 	
+	// A composite scorer if more than one metric is named (see Scorer_Composite)
 	public static Scorer get(String scorerName) {
+		if(scorerName.contains(Scorer_Composite.SEPARATOR)) return new Scorer_Composite(Scorer_Composite.methodsOf(scorerName));
 		return get(Scorer.SCORE_METHOD.valueOf(scorerName));
 	}
 	
@@ -66,6 +68,7 @@ public class ScorerFactory {
 	}
 
 	public static Scorer get(String scorerName, TimeSeries dataSet, int tMin, int tMax, LocalDateTime ... dateTimes) {
+		if(scorerName.contains(Scorer_Composite.SEPARATOR)) return new Scorer_Composite(Scorer_Composite.methodsOf(scorerName), dataSet, tMin, tMax, dateTimes);
 		return get(Scorer.SCORE_METHOD.valueOf(scorerName), dataSet, tMin, tMax, dateTimes);
 	}
 	
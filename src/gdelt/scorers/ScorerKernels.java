@@ -0,0 +1,308 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.scorers;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.MathIllegalArgumentException;
+import org.apache.commons.math3.exception.util.LocalizedFormats;
+
+import gdelt.utils.ZeroIndexedSeries;
+
+/**
+ * The arithmetic of the scorers, over primitive arrays and without
+ * allocating: root mean squared error (which the NRMSE scorers then
+ * normalize by the ground truth's mean, range or standard deviation) and
+ * Pearson's correlation, each in one pass over the values.
+ *
+ * The statistics of a ground truth series, which are the same for every
+ * query scored against it, are computed once, in a GroundTruth (see
+ * Scorer.getFutureTruth and Scorer.getBaseTruth).
+ *
+ * The correlation is computed as commons-math's PearsonsCorrelation computes
+ * it (the same running sums, in the same order, and the same exceptions), so
+ * that scores are unchanged to the last bit.
+ */
+public final class ScorerKernels {
+
+	private ScorerKernels() { }
+
+	/**
+	 * A ground truth series with its statistics. The values are not copied
+	 * and must not be changed.
+	 */
+	public static final class GroundTruth {
+		public final double[] values;
+		public final double   mean;      // 0 for no values
+		public final double   std;       // The population standard deviation
+		public final double   range;     // max - min
+		public final double   threshold; // 5% of the greatest value (or of 0, if none is positive); see Scorer_InputCorrelation_Trimmed
+
+		final ZeroIndexedSeries source;       // The series these were taken from, and
+		final double[]          sourceValues; // its values and
+		final int               sourceZero;   // zero index at the time, to tell if it has changed
+
+		public GroundTruth(double[] values) {
+			this(values, null);
+		}
+
+		GroundTruth(double[] values, ZeroIndexedSeries source) {
+			this.values       = values;
+			this.source       = source;
+			this.sourceValues = source == null ? null : source.getValues();
+			this.sourceZero   = source == null ? 0    : source.getZeroIndex();
+			mean  = mean(values);
+			std   = stdDev(values, mean);
+			range = range(values);
+			double max = 0;
+			for(int i = 0; i < values.length; i++) max = Math.max(max, values[i]);
+			threshold = max * .05;
+		}
+
+		// True if this was taken from the series as it is now
+		boolean isFrom(ZeroIndexedSeries series) {
+			return source == series && sourceValues == series.getValues() && sourceZero == series.getZeroIndex();
+		}
+	}
+
+	// Statistics
+
+	public static double mean(double[] vals) {
+		if(vals.length == 0) return 0;
+		double total = 0;
+		for(double val: vals) total += val;
+		return total/vals.length;
+	}
+
+	public static double stdDev(double[] vals) {
+		return stdDev(vals, mean(vals));
+	}
+
+	private static double stdDev(double[] vals, double mean) {
+		double sum = 0;
+		for(int i = 0; i < vals.length; i++) sum = sum + Math.pow(vals[i] - mean, 2);
+		return Math.sqrt(sum/vals.length);
+	}
+
+	public static double range(double[] vals) {
+		double max = Double.NEGATIVE_INFINITY;
+		double min = Double.POSITIVE_INFINITY;
+		for(int i = 0; i < vals.length; i++) {
+			if(max < vals[i]) max = vals[i];
+			if(min > vals[i]) min = vals[i];
+		}
+		return max - min;
+	}
+
+	// Errors
+
+	/**
+	 * The root mean squared error of the predictions. If there are more
+	 * predictions than values, the value of each is taken to be the first of
+	 * the last values.length predictions (as the scorers have always done).
+	 * @param values
+	 * @param predictions
+	 * @return
+	 */
+	public static double rmse(double[] values, double[] predictions) {
+		int    n   = Math.min(predictions.length, values.length);
+		int    at  = predictions.length - values.length; // The prediction for every value, if n < predictions.length
+		double sum = 0;
+		for(int i = 0; i < n; i++) {
+			double p = at > 0 ? predictions[at] : predictions[i];
+			sum += Math.pow(p - values[i], 2);
+		}
+		return Math.sqrt(sum / (double)n);
+	}
+
+	// Correlations
+
+	/**
+	 * Pearson's correlation of the predictions with the values, as
+	 * PearsonsCorrelation.correlation(predictions, values)
+	 * @param values
+	 * @param predictions
+	 * @return
+	 */
+	public static double correlation(double[] values, double[] predictions) {
+		checkDimensions(predictions.length, values.length);
+		return correlationOf(values, predictions, -1);
+	}
+
+	/**
+	 * As correlation, except that if there are more predictions than values
+	 * the value of each is taken to be the first of the last values.length
+	 * predictions (as in rmse)
+	 * @param values
+	 * @param predictions
+	 * @return
+	 */
+	public static double alignedCorrelation(double[] values, double[] predictions) {
+		if(predictions.length <= values.length) return correlation(values, predictions);
+		checkDimensions(values.length, values.length);
+		return correlationOf(values, predictions, predictions.length - values.length);
+	}
+
+	/**
+	 * The correlation over the values at or above the threshold: the pairs
+	 * whose values are also above 0, followed by a pair of zeros for each that
+	 * is not (as Scorer_InputCorrelation_Trimmed has always trimmed them)
+	 * @param values
+	 * @param predictions
+	 * @param threshold
+	 * @return
+	 */
+	public static double thresholdCorrelation(double[] values, double[] predictions, double threshold) {
+		if(predictions.length != values.length) throw new DimensionMismatchException(predictions.length, values.length);
+		long   n     = 0;
+		int    zeros = 0;
+		double xbar  = 0, ybar  = 0;
+		double sumXX = 0, sumYY = 0, sumXY = 0;
+		for(int i = 0; i < values.length + zeros; i++) { // The zeros follow the values
+			double x = 0;
+			double y = 0;
+			if(i < values.length) {
+				if(values[i] < threshold) continue;
+				if(!(values[i] > 0)) {
+					zeros++;
+					continue;
+				}
+				x = predictions[i];
+				y = values[i];
+			}
+			if(n == 0) {
+				xbar = x;
+				ybar = y;
+			}
+			else {
+				double fact1 = 1.0 + n;
+				double fact2 = n / (1.0 + n);
+				double dx    = x - xbar;
+				double dy    = y - ybar;
+				sumXX += dx * dx * fact2;
+				sumYY += dy * dy * fact2;
+				sumXY += dx * dy * fact2;
+				xbar  += dx / fact1;
+				ybar  += dy / fact1;
+			}
+			n++;
+		}
+		checkDimensions((int)n, (int)n);
+		return r(n, sumXX, sumYY, sumXY);
+	}
+
+	// Positions in the result of errorAndCorrelation
+	public static final int RMSE        = 0;
+	public static final int CORRELATION = 1;
+
+	/**
+	 * rmse and correlation (or alignedCorrelation, if aligned) together, in one
+	 * pass over the values: ret[RMSE] and ret[CORRELATION] are as those
+	 * return, except that the correlation is NaN where they would throw
+	 * @param values
+	 * @param predictions
+	 * @param aligned
+	 * @param ret
+	 */
+	public static void errorAndCorrelation(double[] values, double[] predictions, boolean aligned, double[] ret) {
+		int     n          = Math.min(predictions.length, values.length);
+		int     at         = predictions.length - values.length;
+		boolean correlated = (at == 0 || (aligned && at > 0)) && values.length >= 2;
+		long    count = 0;
+		double  sum   = 0;
+		double  xbar  = 0, ybar  = 0;
+		double  sumXX = 0, sumYY = 0, sumXY = 0;
+		for(int i = 0; i < n; i++) {
+			double x = at > 0 ? predictions[at] : predictions[i];
+			double y = values[i];
+			sum += Math.pow(x - y, 2);
+			if(count == 0) {
+				xbar = x;
+				ybar = y;
+			}
+			else {
+				double fact1 = 1.0 + count;
+				double fact2 = count / (1.0 + count);
+				double dx    = x - xbar;
+				double dy    = y - ybar;
+				sumXX += dx * dx * fact2;
+				sumYY += dy * dy * fact2;
+				sumXY += dx * dy * fact2;
+				xbar  += dx / fact1;
+				ybar  += dy / fact1;
+			}
+			count++;
+		}
+		ret[RMSE]        = Math.sqrt(sum / (double)n);
+		ret[CORRELATION] = correlated ? r(count, sumXX, sumYY, sumXY) : Double.NaN;
+	}
+
+	// As PearsonsCorrelation.correlation, by SimpleRegression's running sums;
+	// every prediction is predictions[at], if at is not -1
+	private static double correlationOf(double[] values, double[] predictions, int at) {
+		long   n     = 0;
+		double xbar  = 0, ybar  = 0;
+		double sumXX = 0, sumYY = 0, sumXY = 0;
+		for(int i = 0; i < values.length; i++) {
+			double x = at < 0 ? predictions[i] : predictions[at];
+			double y = values[i];
+			if(n == 0) {
+				xbar = x;
+				ybar = y;
+			}
+			else {
+				double fact1 = 1.0 + n;
+				double fact2 = n / (1.0 + n);
+				double dx    = x - xbar;
+				double dy    = y - ybar;
+				sumXX += dx * dx * fact2;
+				sumYY += dy * dy * fact2;
+				sumXY += dx * dy * fact2;
+				xbar  += dx / fact1;
+				ybar  += dy / fact1;
+			}
+			n++;
+		}
+		return r(n, sumXX, sumYY, sumXY);
+	}
+
+	// As SimpleRegression.getR
+	private static double r(long n, double sumXX, double sumYY, double sumXY) {
+		double slope = n < 2 || Math.abs(sumXX) < 10 * Double.MIN_VALUE ? Double.NaN : sumXY / sumXX;
+		double ssto  = n < 2 ? Double.NaN : sumYY;
+		double sse   = Math.max(0d, sumYY - sumXY * sumXY / sumXX);
+		double ret   = Math.sqrt((ssto - sse) / ssto);
+		return slope < 0 ? -ret : ret;
+	}
+
+	// As PearsonsCorrelation.correlation, which needs as many of each, and at least two
+	private static void checkDimensions(int predictions, int values) {
+		if(predictions != values) throw new DimensionMismatchException(predictions, values);
+		if(predictions < 2) throw new MathIllegalArgumentException(LocalizedFormats.INSUFFICIENT_DIMENSION, predictions, 2);
+	}
+
+}
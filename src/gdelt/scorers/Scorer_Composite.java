@@ -0,0 +1,182 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.scorers;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.apache.commons.math3.exception.MathIllegalArgumentException;
+
+import gdelt.predictors.Predictor;
+import gdelt.runners.GDELT_Query_Task;
+import gdelt.scorers.ScorerKernels.GroundTruth;
+import gdelt.scorers.results.ScoreNaN;
+import gdelt.scorers.results.SmartScore;
+import gdelt.scorers.results.SmartScore_Composite;
+import gdelt.scorers.results.SmartScore_Correlation;
+import gdelt.scorers.results.SmartScore_Correlation_PositiveOnly;
+import gdelt.scorers.results.SmartScore_RMSE;
+import gdelt.utils.TimeSeries;
+import gdelt.utils.ZeroIndexedSeries;
+
+/**
+ * A scorer that scores the same predictions by several of the other scorers'
+ * metrics at once, so that they can be compared without a run for each. The
+ * predictions for each start date are made once, and every metric is taken
+ * from them: the RMSE and its normalized variants and the correlation with
+ * the values from time zero on in one pass (see
+ * ScorerKernels.errorAndCorrelation), and the correlation with the values
+ * before time zero in another. Each metric's score is the one its own scorer
+ * would give, except that a metric that cannot be computed (e.g. a
+ * correlation over too few values) is NaN rather than an exception.
+ *
+ * The first metric drives selection; the score is a SmartScore_Composite,
+ * which compares as that metric's score would, and carries the rest to be
+ * logged with it. Given as the scorer's name, with the metrics joined by
+ * SEPARATOR: e.g. NRMSE_MEAN+RMSE+NRMSE_STD+INPUT_CORRELATION.
+ */
+public class Scorer_Composite extends Scorer {
+
+	public static final String SEPARATOR = "+";
+
+	protected SCORE_METHOD[] methods;
+	protected Scorer[]       scorers; // The scorer of each metric
+	protected String[]       names;
+
+	public Scorer_Composite(SCORE_METHOD ... methodsToUse) {
+		super();
+		setMethods(methodsToUse);
+	}
+
+	public Scorer_Composite(SCORE_METHOD[] methodsToUse, TimeSeries dataSet, int tMin, int tMax, LocalDateTime ... dateTimes) {
+		super(dataSet, tMin, tMax, dateTimes);
+		setMethods(methodsToUse);
+	}
+
+	private void setMethods(SCORE_METHOD[] methodsToUse) {
+		if(methodsToUse.length == 0) throw new IllegalArgumentException("A composite scorer needs at least one metric");
+		methods = methodsToUse.clone();
+		scorers = new Scorer[methods.length];
+		names   = new String[methods.length];
+		for(int m = 0; m < methods.length; m++) {
+			scorers[m] = ScorerFactory.get(methods[m]);
+			names[m]   = methods[m].name();
+		}
+	}
+
+	/**
+	 * The metrics named in a composite scorer's name (see SEPARATOR)
+	 * @param spec
+	 * @return
+	 */
+	public static SCORE_METHOD[] methodsOf(String spec) {
+		String[]       parts = spec.split("\\" + SEPARATOR);
+		SCORE_METHOD[] ret   = new SCORE_METHOD[parts.length];
+		for(int i = 0; i < parts.length; i++) ret[i] = SCORE_METHOD.valueOf(parts[i].trim());
+		return ret;
+	}
+
+	public SmartScore score(GDELT_Query_Task toScore) {
+		if(trainAndTestMap.size() == 0) return new ScoreNaN();
+		boolean testBase   = toScore.query.prediction_method == Predictor.PREDICTION_METHOD.TEST_BASE_VALUES;
+		boolean usesFuture = false; // True if a metric is taken from the values from time zero on,
+		boolean usesBase   = false; // and from the values before it
+		for(SCORE_METHOD method: methods) {
+			switch(method) {
+				case CORRELATION_POSITIVE_ONLY:       usesFuture |= !testBase; usesBase |= testBase; break;
+				case INPUT_CORRELATION:
+				case INPUT_CORRELATION_POSITIVE_ONLY: usesBase = true; break;
+				case INPUT_CORRELATION_TRIMMED:       break;
+				default:                              usesFuture = true;
+			}
+		}
+		double[] sums   = new double[methods.length];
+		double[] future = new double[2];
+		double[] base   = new double[2];
+		for(Map.Entry<LocalDateTime, ZeroIndexedSeries> entry: trainAndTestMap.entrySet()) {
+			ZeroIndexedSeries testAgainst = trainAndTestMap.get(entry.getKey());
+			double[]    predictions = toScore.getPredictions(entry.getKey(), testAgainst); // Once, for every metric
+			GroundTruth futureTruth = getFutureTruth(entry.getKey());
+			GroundTruth baseTruth   = getBaseTruth(entry.getKey());
+			if(usesFuture) ScorerKernels.errorAndCorrelation(futureTruth.values, predictions, false, future);
+			if(usesBase)   ScorerKernels.errorAndCorrelation(baseTruth.values, predictions, true, base);
+			for(int m = 0; m < methods.length; m++) {
+				switch(methods[m]) {
+					case CORRELATION_POSITIVE_ONLY: // Without the alignment of the input correlations
+						sums[m] += !testBase                                     ? future[ScorerKernels.CORRELATION] :
+						           predictions.length == baseTruth.values.length ? base[ScorerKernels.CORRELATION]   : Double.NaN;
+						break;
+					case INPUT_CORRELATION:
+					case INPUT_CORRELATION_POSITIVE_ONLY:
+						sums[m] += base[ScorerKernels.CORRELATION];
+						break;
+					case INPUT_CORRELATION_TRIMMED:
+						sums[m] += trimmedCorrelation(baseTruth, predictions);
+						break;
+					default:
+						sums[m] += ((Scorer_RMSE)scorers[m]).normalize(future[ScorerKernels.RMSE], futureTruth);
+				}
+			}
+		}
+		double[] values = new double[methods.length];
+		for(int m = 0; m < methods.length; m++) values[m] = sums[m] / (double)trainAndTestMap.size();
+		return new SmartScore_Composite(smartScore(methods[0], values[0]), names, values);
+	}
+
+	private static double trimmedCorrelation(GroundTruth truth, double[] predictions) {
+		try {
+			return ScorerKernels.thresholdCorrelation(truth.values, predictions, truth.threshold);
+		}
+		catch(MathIllegalArgumentException e) {
+			return Double.NaN;
+		}
+	}
+
+	// The score of the metric, as its own scorer gives it
+	private static SmartScore smartScore(SCORE_METHOD method, double value) {
+		switch(method) {
+			case CORRELATION_POSITIVE_ONLY:
+			case INPUT_CORRELATION_POSITIVE_ONLY: return new SmartScore_Correlation_PositiveOnly(value);
+			case INPUT_CORRELATION:
+			case INPUT_CORRELATION_TRIMMED:       return new SmartScore_Correlation(value);
+			default:                              return new SmartScore_RMSE(value);
+		}
+	}
+
+	// By the first metric's scorer
+	public double score(double[] testvals, double[] predictions) {
+		return scorers[0].score(testvals, predictions);
+	}
+
+	public String getType() {
+		String ret = "";
+		for(String name: names) ret += (ret.isEmpty() ? "" : SEPARATOR) + name;
+		return "Scorer_Composite(" + ret + ")";
+	}
+
+}
@@ -30,8 +30,6 @@ package gdelt.scorers;
 import java.time.LocalDateTime;
 import java.util.Map;
 
-import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
-
 import gdelt.predictors.Predictor;
 import gdelt.runners.GDELT_Query_Task;
 import gdelt.scorers.results.ScoreNaN;
@@ -66,15 +64,14 @@ public class Scorer_Correlation_PositiveOnly extends Scorer {
 			ZeroIndexedSeries testAgainst = trainAndTestMap.get(entry.getKey());
 			sum += score(
 					toScore.query.prediction_method == 
-					Predictor.PREDICTION_METHOD.TEST_BASE_VALUES ? testAgainst.getBaseValues() : testAgainst.getPredictions(), 					
+					Predictor.PREDICTION_METHOD.TEST_BASE_VALUES ? getBaseTruth(entry.getKey()).values : getFutureTruth(entry.getKey()).values, 					
 					toScore.getPredictions(entry.getKey(), testAgainst));
 		}
 		return new SmartScore_Correlation_PositiveOnly(sum / (double)trainAndTestMap.size());
 	}
 
 	public double score(double[] testvals, double[] predictions) {
-		PearsonsCorrelation pc = new PearsonsCorrelation();
-		return pc.correlation(predictions, testvals);
+		return ScorerKernels.correlation(testvals, predictions);
 	}
 	
 	
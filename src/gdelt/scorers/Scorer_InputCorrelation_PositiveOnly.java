@@ -30,8 +30,6 @@ package gdelt.scorers;
 import java.time.LocalDateTime;
 import java.util.Map;
 
-import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
-
 import gdelt.runners.GDELT_Query_Task;
 import gdelt.scorers.results.ScoreNaN;
 import gdelt.scorers.results.SmartScore;
@@ -64,20 +62,13 @@ public class Scorer_InputCorrelation_PositiveOnly extends Scorer {
 			ZeroIndexedSeries testAgainst = trainAndTestMap.get(entry.getKey());
 			
 			double[] predictions = toScore.getPredictions(entry.getKey(), testAgainst);
-			double[] testvals    = testAgainst.getBaseValues();
-			if(predictions.length > testvals.length) {
-				double[] newPreds = new double[testvals.length];
-				for(int i = 0; i < testvals.length; i++) newPreds[i] = predictions[predictions.length - testvals.length];
-				predictions = newPreds;
-			}
-			sum += score(testvals, predictions);
+			sum += ScorerKernels.alignedCorrelation(getBaseTruth(entry.getKey()).values, predictions);
 		}
 		return new SmartScore_Correlation_PositiveOnly(sum / (double)trainAndTestMap.size());
 	}
 	
 	public double score(double[] testvals, double[] predictions) {
-		PearsonsCorrelation pc = new PearsonsCorrelation();
-		return pc.correlation(predictions, testvals);
+		return ScorerKernels.correlation(testvals, predictions);
 	}
 	
 	public String getType() {
@@ -30,12 +30,12 @@ package gdelt.scorers;
 import java.time.LocalDateTime;
 import java.util.Map;
 
-import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
-
 import gdelt.runners.GDELT_Query_Task;
+import gdelt.scorers.ScorerKernels.GroundTruth;
 import gdelt.scorers.results.ScoreNaN;
 import gdelt.scorers.results.SmartScore;
 import gdelt.scorers.results.SmartScore_Correlation;
+import gdelt.utils.IO;
 import gdelt.utils.TimeSeries;
 import gdelt.utils.ZeroIndexedSeries;
 
@@ -55,65 +55,30 @@ public class Scorer_InputCorrelation_Trimmed extends Scorer {
 	
 	public SmartScore score(GDELT_Query_Task toScore) {
 		if(trainAndTestMap.size() == 0) return new ScoreNaN();
-//		PearsonsCorrelation pc = new PearsonsCorrelation();
 		double sum = 0;
 		for(Map.Entry<LocalDateTime, ZeroIndexedSeries> entry: trainAndTestMap.entrySet()) {
 			ZeroIndexedSeries testAgainst = trainAndTestMap.get(entry.getKey());
 			
-			double[] predictionsORIG = toScore.getPredictions(entry.getKey(), testAgainst);
-			double[] testvalsORIG    = testAgainst.getBaseValues();
-			
-			double[] predictions = new double[predictionsORIG.length];
-			for(int i = 0; i < predictionsORIG.length; i++) predictions[i] = predictionsORIG[i];
-			double[] testvals    = new double[testvalsORIG.length];
-			for(int i = 0; i < testvalsORIG.length; i++) testvals[i] = testvalsORIG[i];
-			
-			
-			// Trim out anything where the predicted values are lower than 3% of the max value
-			double maxTestValue = 0;
-			for(int i = 0; i < testvals.length; i++) maxTestValue = Math.max(maxTestValue, testvals[i]);
-			double threshold = maxTestValue * .05; // 3%
-			int count = 0;
-			for(int i = 0; i < testvals.length; i++) {
-				if(testvals[i] < threshold) {
-					predictions[i] = 0;
-					testvals[i] = 0;
-				}
-				else count++;
-			}
-			
-			
-			double[] newpredictions = new double[count];
-			double[] newtestvals = new double[count];
+			double[]    predictions = toScore.getPredictions(entry.getKey(), testAgainst);
+			GroundTruth truth       = getBaseTruth(entry.getKey());
 			
-			int indx = 0;
-			for(int i = 0; i < predictions.length; i++) {
-				if(testvals[i] > 0) {
-					newpredictions[indx] = predictions[i];
-					newtestvals[indx] = testvals[i];
-					indx++;
-				}
-			}
-			predictions = newpredictions;
-			testvals = newtestvals;
-			
-			
-			
-			if(predictions.length > testvals.length) {
-				double[] newPreds = new double[testvals.length];
-				for(int i = 0; i < testvals.length; i++) newPreds[i] = predictions[predictions.length - testvals.length];
-				predictions = newPreds;
-			}
-			for(int i = 0; i < predictions.length; i++) System.out.println(predictions[i] + "," + testvals[i]);
-			sum += score(testvals, predictions);
+			// Leave out anything where the values are lower than 5% of the max value
+			if(IO.isLogging(IO.LEVEL.LEVEL_4)) logPairs(truth, predictions);
+			sum += ScorerKernels.thresholdCorrelation(truth.values, predictions, truth.threshold);
 		}
 		return new SmartScore_Correlation(sum / (double)trainAndTestMap.size());
 	}
 	
 	
+	// The pairs that are scored, for debugging
+	private static void logPairs(GroundTruth truth, double[] predictions) {
+		for(int i = 0; i < truth.values.length && i < predictions.length; i++) {
+			if(truth.values[i] >= truth.threshold && truth.values[i] > 0) IO.log(IO.LEVEL.LEVEL_4, predictions[i] + "," + truth.values[i]);
+		}
+	}
+	
 	public double score(double[] testvals, double[] predictions) {
-		PearsonsCorrelation pc = new PearsonsCorrelation();
-		return pc.correlation(predictions, testvals);
+		return ScorerKernels.correlation(testvals, predictions);
 	}
 	
 	
@@ -29,6 +29,7 @@ package gdelt.scorers;
 
 import java.time.LocalDateTime;
 
+import gdelt.scorers.ScorerKernels.GroundTruth;
 import gdelt.utils.TimeSeries;
 
 /**
@@ -46,9 +47,8 @@ public class Scorer_NRMSE_Mean extends Scorer_RMSE{
 	}
 	
 	@Override
-	protected double normalize(double valToNormalize, double[] testvals) {
-		double mean = mean(testvals);
-		return mean != 0 ? valToNormalize/mean: valToNormalize;
+	protected double normalize(double valToNormalize, GroundTruth truth) {
+		return truth.mean != 0 ? valToNormalize/truth.mean: valToNormalize;
 	}
 	
 	public String getType() {
@@ -29,6 +29,7 @@ package gdelt.scorers;
 
 import java.time.LocalDateTime;
 
+import gdelt.scorers.ScorerKernels.GroundTruth;
 import gdelt.utils.TimeSeries;
 
 /**
@@ -46,9 +47,8 @@ public class Scorer_NRMSE_MinMax extends Scorer_RMSE{
 	}
 	
 	@Override
-	protected double normalize(double valToNormalize, double[] testvals) {
-		double range = range(testvals);
-		return range != 0 ? valToNormalize/range : valToNormalize;
+	protected double normalize(double valToNormalize, GroundTruth truth) {
+		return truth.range != 0 ? valToNormalize/truth.range : valToNormalize;
 	}
 	
 	public String getType() {
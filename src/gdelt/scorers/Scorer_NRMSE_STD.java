@@ -29,6 +29,7 @@ package gdelt.scorers;
 
 import java.time.LocalDateTime;
 
+import gdelt.scorers.ScorerKernels.GroundTruth;
 import gdelt.utils.TimeSeries;
 
 /**
@@ -45,8 +46,8 @@ public class Scorer_NRMSE_STD extends Scorer_RMSE{
 	}
 	
 	@Override
-	protected double normalize(double valToNormalize, double[] testvals) {
-		return valToNormalize/stdDev(testvals);
+	protected double normalize(double valToNormalize, GroundTruth truth) {
+		return valToNormalize/truth.std;
 	}
 	
 	public String getType() {
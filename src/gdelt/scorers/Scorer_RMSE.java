@@ -31,6 +31,7 @@ import java.time.LocalDateTime;
 import java.util.Map;
 
 import gdelt.runners.GDELT_Query_Task;
+import gdelt.scorers.ScorerKernels.GroundTruth;
 import gdelt.scorers.results.ScoreNaN;
 import gdelt.scorers.results.SmartScore;
 import gdelt.scorers.results.SmartScore_RMSE;
@@ -49,33 +50,6 @@ public class Scorer_RMSE extends Scorer {
 	protected double std;
 	protected double range;
 	
-	protected static double mean(double[] vals) {
-		if(vals.length == 0) return 0;
-		double total = 0;
-		for(double val: vals) total += val;
-		return total/vals.length;
-	}
-	
-	protected static double stdDev(double[] vals) {
-		double mean = mean(vals);
-	   	double sum = 0;
-		for(int i = 0; i < vals.length; i++) {
-			sum = sum + Math.pow(vals[i] - mean, 2);
-			
-		}
-		return Math.sqrt(sum/vals.length); 
-	}
-	
-	protected static double range(double[] vals) {
-		   double max = Double.NEGATIVE_INFINITY;
-		   double min = Double.POSITIVE_INFINITY;
-		   for(int i = 0; i < vals.length; i++) {
-			   if (max < vals[i]) max = vals[i];
-			   if(min > vals[i])  min = vals[i];
-		   }
-		   return(max - min);
-	}
-	
 	public Scorer_RMSE() {
 		super();
 	}
@@ -92,11 +66,8 @@ public class Scorer_RMSE extends Scorer {
 		for(Map.Entry<LocalDateTime, ZeroIndexedSeries> entry: trainAndTestMap.entrySet()) {
 			ZeroIndexedSeries testAgainst = trainAndTestMap.get(entry.getKey());
 			double[] predictions = toScore.getPredictions(entry.getKey(), testAgainst);
-			double[] testvals    = testAgainst.getPredictions();
 			
-			ret+= score(testvals, predictions);
-
-//			for(int i = 0; i < predictions.length; i++) System.out.println("RMSE SCORER IS SCORING B : " + predictions[i] + "," + testvals[i]);
+			ret+= score(getFutureTruth(entry.getKey()), predictions);
 		}
 		IO.log(IO.LEVEL.LEVEL_4, "RET: " + ret);
 		IO.log(IO.LEVEL.LEVEL_4, "TRAIN MAP SIZE" + (double)trainAndTestMap.size());
@@ -106,30 +77,41 @@ public class Scorer_RMSE extends Scorer {
 	}
 	
 	public double score(double[] testvals, double[] predictions) {
-		if(predictions.length > testvals.length) {
-			double[] newPreds = new double[testvals.length];
-			for(int i = 0; i < testvals.length; i++) {
-				newPreds[i] = predictions[predictions.length - testvals.length];
-			}
-			predictions = newPreds;
-		}
+		return score(new GroundTruth(testvals), predictions);
+	}
+	
+	/**
+	 * The (normalized) error of the predictions; if there are more predictions
+	 * than values, the value of each is taken to be the first of the last
+	 * testvals.length predictions (see ScorerKernels.rmse)
+	 * @param truth
+	 * @param predictions
+	 * @return
+	 */
+	public double score(GroundTruth truth, double[] predictions) {
+		double rmse  = ScorerKernels.rmse(truth.values, predictions);
+		double nrmse = normalize(rmse, truth);
+		if(IO.isLogging(IO.LEVEL.LEVEL_4)) logDifferences(truth.values, predictions, nrmse);
+		return nrmse;
+	}
+	
+	// Each squared difference, as scored, for debugging
+	private static void logDifferences(double[] testvals, double[] predictions, double nrmse) {
+		int    n     = Math.min(predictions.length, testvals.length);
+		int    at    = predictions.length - testvals.length;
 		double sumOfSquaredDiff = 0;
 		double total = 0;
-		for(int i = 0; i < predictions.length; i++) {
+		for(int i = 0; i < n; i++) {
 			total += testvals[i];
-			double squaredDiff = (Math.pow(predictions[i] - testvals[i], 2));
-//			IO.log("new total "+ total);
+			double squaredDiff = Math.pow((at > 0 ? predictions[at] : predictions[i]) - testvals[i], 2);
 			sumOfSquaredDiff += squaredDiff;
-			IO.log(IO.LEVEL.LEVEL_0, "Squared diff: " + squaredDiff + " ( sum: " + sumOfSquaredDiff +") " + "total " + total);
+			IO.log(IO.LEVEL.LEVEL_4, "Squared diff: " + squaredDiff + " ( sum: " + sumOfSquaredDiff +") " + "total " + total);
 		}
-		double avg   = sumOfSquaredDiff / (double)predictions.length;
-		double rmse  = Math.sqrt(avg);
-		double nrmse = normalize(rmse, testvals);
-		IO.log(IO.LEVEL.LEVEL_0, "AVG: " + avg + " rmse: " + rmse + " nrmse: " + nrmse);
-		return nrmse;
+		double avg = sumOfSquaredDiff / (double)n;
+		IO.log(IO.LEVEL.LEVEL_4, "AVG: " + avg + " rmse: " + Math.sqrt(avg) + " nrmse: " + nrmse);
 	}
 	
-	protected double normalize(double valToNormalize, double[] testvals) {
+	protected double normalize(double valToNormalize, GroundTruth truth) {
 		return valToNormalize;		
 	}
 	
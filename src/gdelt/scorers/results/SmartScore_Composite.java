@@ -0,0 +1,60 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.scorers.results;
+
+/**
+ * A vector of scores for the same predictions, one for each of several
+ * metrics (see Scorer_Composite). The first of these drives selection: the
+ * value of the composite is its value, and the composite compares as it does.
+ * The rest are carried along, and are written with it when it is logged.
+ */
+public class SmartScore_Composite extends SmartScore {
+
+	public final String[]   names;  // The name of each metric
+	public final double[]   values; // The score for each metric
+	public final SmartScore primary;
+
+	public SmartScore_Composite(SmartScore primary, String[] names, double[] values) {
+		super(primary.value);
+		this.primary = primary;
+		this.names   = names;
+		this.values  = values;
+	}
+
+	@Override
+	public COMPARISON isBetter(SmartScore other) {
+		return primary.isBetter(other instanceof SmartScore_Composite ? ((SmartScore_Composite)other).primary : other);
+	}
+
+	public String toString() {
+		String ret = "" + value + " (";
+		for(int i = 0; i < names.length; i++) ret += (i > 0 ? ", " : "") + names[i] + ": " + values[i];
+		return ret + ")";
+	}
+
+}
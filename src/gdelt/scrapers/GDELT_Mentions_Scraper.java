@@ -75,7 +75,7 @@ public class GDELT_Mentions_Scraper {
 		
 		// Start from a GDELT corpus; the mentions that are loaded will be the ones contained in this corpus
 		GDELT_Corpus all = GDELT_Corpus.get(GDELT_DATA_PATH);
-		IO.log(IO.LEVEL.LEVEL_1, "Size of corpus: " + all.allEvents.size());
+		IO.log(IO.LEVEL.LEVEL_1, "Size of corpus: " + all.size());
 		
 		try {
 			// Create the output writer
@@ -27,6 +27,9 @@
  */
 package gdelt.server;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.google.gson.Gson;
 
 import gdelt.runners.GDELT_Query_Task;
@@ -48,12 +51,44 @@ public class GDELT_Local_Service extends GDELT_Service{
 	
 	public GDELT_Local_Service(String corpusFileName, String mentionsFileName) {
 		all = GDELT_Corpus.get(corpusFileName, mentionsFileName);
-		IO.log(IO.LEVEL.LEVEL_1, "Corpus size: " + all.allEvents.size());
+		IO.log(IO.LEVEL.LEVEL_1, "Corpus size: " + all.size());
 	}
 	
 	public String processQueryTask(GDELT_Query_Task task) {
+		return queryTaskGsonBuilder.toJson(evaluate(task));
+	}
+
+	// No JSON in this process: the task passed in is evaluated and returned
+	@Override
+	public GDELT_Query_Task evaluate(GDELT_Query_Task task) {
 		task.evaluateCorpus(all);
-		return queryTaskGsonBuilder.toJson(task);
+		return task;
+	}
+
+	// The corpus is only read once it is loaded
+	@Override
+	public boolean allowsConcurrentTasks() {
+		return true;
+	}
+
+	@Override
+	public List<String> processQueryTasks(List<GDELT_Query_Task> tasks) {
+		List<String> ret = new ArrayList<String>();
+		for(GDELT_Query_Task task: evaluate(tasks)) ret.add(queryTaskGsonBuilder.toJson(task));
+		return ret;
+	}
+
+	// The whole batch is evaluated with a single scan of the corpus
+	@Override
+	public List<GDELT_Query_Task> evaluate(List<GDELT_Query_Task> tasks) {
+		GDELT_Query_Task.evaluateCorpus(tasks, all);
+		return tasks;
+	}
+
+	// All of the shifts are had from one pass over the corpus, where the query allows
+	@Override
+	public List<GDELT_Query_Task> evaluateShifts(GDELT_Query_Task task, long ... shifts) {
+		return task.evaluateCorpusForShifts(all, shifts);
 	}
 	
 }
@@ -27,10 +27,50 @@
  */
 package gdelt.server;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import gdelt.runners.GDELT_Query_Task;
 
 public abstract class GDELT_Service {
 
 	public abstract String processQueryTask(GDELT_Query_Task task);
-	
+
+	// True if processQueryTask(s) can be called from several threads at once
+	public boolean allowsConcurrentTasks() {
+		return false;
+	}
+
+	// Processes a batch of tasks, returning the results in the same order;
+	// services that can share work between the tasks override this
+	public List<String> processQueryTasks(List<GDELT_Query_Task> tasks) {
+		List<String> ret = new ArrayList<String>();
+		for(GDELT_Query_Task task: tasks) ret.add(processQueryTask(task));
+		return ret;
+	}
+
+	// Evaluates a task and returns the evaluated task. By default this goes through
+	// the JSON of processQueryTask; services in this process override it to return
+	// the task itself, so the task returned may be the one passed in
+	public GDELT_Query_Task evaluate(GDELT_Query_Task task) {
+		return GDELT_Query_Task.get(processQueryTask(task));
+	}
+
+	// As evaluate, for a batch of tasks, returning them in the same order
+	public List<GDELT_Query_Task> evaluate(List<GDELT_Query_Task> tasks) {
+		List<GDELT_Query_Task> ret = new ArrayList<GDELT_Query_Task>();
+		for(String result: processQueryTasks(tasks)) ret.add(GDELT_Query_Task.get(result));
+		return ret;
+	}
+
+	// Evaluates the task's query with each of these shifts in place of its own (see
+	// GDELT_Query_Task.forShift), returning a task for each, in the same order. By
+	// default this is a batch of one task per shift; services in this process
+	// override it to have all of the shifts from one pass over the corpus
+	public List<GDELT_Query_Task> evaluateShifts(GDELT_Query_Task task, long ... shifts) {
+		List<GDELT_Query_Task> tasks = new ArrayList<GDELT_Query_Task>();
+		for(long shift: shifts) tasks.add(task.forShift(shift));
+		return evaluate(tasks);
+	}
+
 }
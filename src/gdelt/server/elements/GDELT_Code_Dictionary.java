@@ -0,0 +1,125 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.server.elements;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dictionary of string codes (e.g. country codes) used by the
+ * columnar event store. Each distinct string is given a small
+ * integer id, so that the store can keep a short per event
+ * instead of a String reference.
+ *
+ * Id 0 is reserved for a Java null, which is distinct from the
+ * empty string and from the literal string "null" (both of which
+ * may appear in the input data and in the configuration files).
+ * Equality is exact string equality, as it is for the query domains.
+ *
+ */
+public class GDELT_Code_Dictionary {
+
+	public static final int NULL_CODE = 0;
+	public static final int MAX_CODES = Short.MAX_VALUE;
+
+	private List<String>         codes = new ArrayList<String>();
+	private Map<String, Integer> ids   = new HashMap<String, Integer>();
+
+	// Results of slotsOf, by the array of codes they were made for
+	private Map<String[], int[]> slots = new IdentityHashMap<String[], int[]>();
+
+	public GDELT_Code_Dictionary() {
+		codes.add(null);
+	}
+
+	/**
+	 * Returns the id for this code, adding it to the dictionary
+	 * if it has not been seen before
+	 * @param code
+	 * @return
+	 */
+	public int encode(String code) {
+		if(code == null) return NULL_CODE;
+		Integer id = ids.get(code);
+		if(id == null) {
+			if(codes.size() >= MAX_CODES) throw new IllegalStateException("Too many distinct codes for dictionary: " + codes.size());
+			id = codes.size();
+			codes.add(code);
+			ids.put(code, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the id for this code, or -1 if the code is not in the dictionary
+	 * @param code
+	 * @return
+	 */
+	public int lookup(String code) {
+		if(code == null) return NULL_CODE;
+		Integer id = ids.get(code);
+		return id == null ? -1 : id;
+	}
+
+	public String decode(int id) {
+		return codes.get(id);
+	}
+
+	public int size() {
+		return codes.size();
+	}
+
+	/**
+	 * Maps every id in the dictionary to a 'slot': the position of its code in
+	 * the given array (e.g. GDELT_QueryTemplate.actor1CountryCodes), or
+	 * codes.length (the 'other' slot) if the code is not in the array. A query
+	 * domain can then be tested against an id with a bit mask over the slots
+	 * (see UnorderedSetQueryDomain.getMask).
+	 *
+	 * The result is kept for as long as the array and the dictionary are unchanged.
+	 * @param slotCodes
+	 * @return
+	 */
+	public synchronized int[] slotsOf(String[] slotCodes) {
+		int[] ret = slots.get(slotCodes);
+		if(ret != null && ret.length == codes.size()) return ret;
+		ret = new int[codes.size()];
+		for(int id = 0; id < ret.length; id++) {
+			String code = codes.get(id);
+			int slot = 0;
+			while(slot < slotCodes.length && !(code == null ? slotCodes[slot] == null : code.equals(slotCodes[slot]))) slot++;
+			ret[id] = slot;
+		}
+		slots.put(slotCodes, ret);
+		return ret;
+	}
+
+}
@@ -70,10 +70,36 @@ public class GDELT_Corpus {
 		CSV
 	}
 
+	// If false, the event objects are released once the columnar store
+	// has been built (unless mentions are materialized, which attach to them)
+	public static boolean retainEventObjects = false;
+
+	// If true, a GDELTMention and GDELTMentionDoc object is created for every
+	// line of the mentions file and attached to the event objects; otherwise
+	// only the per-event aggregates are kept, in the store
+	public static boolean materializeMentions = false;
+	
+	// Number of threads used to parse the events CSV file
+	public static int loaderThreads = Runtime.getRuntime().availableProcessors();
+
 	// Load occurs using JSON directly
 	@SerializedName("values")
 	public LinkedList<GDELT_Global_Event> allEvents;
 
+	// Primitive, columnar copy of the events; this is what queries scan
+	public transient GDELT_Event_Store store;
+
+	// If true, queries scan an aggregate of the store (see getStoreToScan)
+	// rather than the store itself
+	public static boolean aggregateEvents = true;
+
+	// An aggregate with more rows than this fraction of the store's is not used
+	public static double maxAggregateFraction = 0.5;
+
+	// The aggregates of the store built so far, by the fields they keep apart (and whether by added hour)
+	private transient Map<Integer, GDELT_Event_Store> aggregates   = null;
+	private transient GDELT_Event_Store               aggregatesOf = null;
+
 	// All the documents are reachable through this map
 	Map<String, GDELTMentionDoc>       docs         = new HashMap<String, GDELTMentionDoc>();
 	Map<String, List<GDELTMentionDoc>> docsBySource = new HashMap<String, List<GDELTMentionDoc>>();
@@ -83,39 +109,81 @@ public class GDELT_Corpus {
     public void initAllEvents() {
     	allEvents = new LinkedList<GDELT_Global_Event>();
     }
+    
+    /**
+     * Builds the columnar store from the event objects and, if
+     * they are not needed, releases the objects
+     * @param keepObjects
+     */
+    public void initStore(boolean keepObjects) {
+    	store = GDELT_Event_Store.from(allEvents);
+    	IO.log(IO.LEVEL.LEVEL_1, "Built event store: " + store.size() + " events, " + store.getCountryCodes().size() + " country codes");
+    	if(!keepObjects) {
+    		allEvents = null;
+    		events.clear();
+    	}
+    }
+    
+    public int size() {
+    	return store.size();
+    }
+
+    /**
+     * The store that queries testing only these fields (see GDELT_Event_Store.aggregate)
+     * should scan: an aggregate of the store, built when first needed, in which
+     * the events that these queries cannot tell apart are counted together. The
+     * store itself is returned if aggregateEvents is off, or if too few events
+     * are grouped together for the aggregate to be worth scanning.
+     * @param fields
+     * @param byAddedHour
+     * @return
+     */
+    public synchronized GDELT_Event_Store getStoreToScan(int fields, boolean byAddedHour) {
+    	if(!aggregateEvents) return store;
+    	if(aggregates == null || aggregatesOf != store) {
+    		aggregates   = new HashMap<Integer, GDELT_Event_Store>();
+    		aggregatesOf = store;
+    	}
+    	Integer key = byAddedHour ? ~fields : fields;
+    	GDELT_Event_Store ret = aggregates.get(key);
+    	if(ret == null) {
+    		ret = store.aggregate(fields, byAddedHour);
+    		boolean used = ret.size() <= maxAggregateFraction * store.size();
+    		IO.log(IO.LEVEL.LEVEL_1, "Aggregated event store" + (byAddedHour ? " by date added" : "") + ": " + store.size() + " events in " + ret.size() + " rows" + (used ? "" : "; too many to use"));
+    		if(!used) ret = store;
+    		aggregates.put(key, ret);
+    	}
+    	return ret;
+    }
 	
 	
 	
 	public Map<String, Long> getStringDomainRange(String domain){
 		Map<String, Long> ret = new TreeMap<String, Long>();
+		boolean actor1;
 		switch(domain) {
-		   case "Actor1":{
-			   for(GDELT_Global_Event article: allEvents) {
-				   String actor1 = article.Actor1CountryCode;
-				   if(actor1 != null) {
-					   if(!ret.containsKey(actor1)) ret.put(actor1, 1l);
-					   else                         ret.put(actor1, ret.get(actor1) + 1);
-				   }
-			   }
-			   break;
-		   }
-		   case "Actor2":{
-			   for(GDELT_Global_Event article: allEvents) {
-				   String actor2 = article.Actor2CountryCode;
-				   if(actor2 != null) {
-					   if(!ret.containsKey(actor2)) ret.put(actor2, 1l);
-					   else                         ret.put(actor2, ret.get(actor2) + 1);
-				   }
-			   }
-			   break;
-		   }		}
+		   case "Actor1": actor1 = true;  break;
+		   case "Actor2": actor1 = false; break;
+		   default: return ret;
+		}
+		GDELT_Code_Dictionary codes = store.getCountryCodes();
+		long[] counts = new long[codes.size()];
+		for(int i = 0; i < store.size(); i++) counts[actor1 ? store.actor1(i) : store.actor2(i)]++;
+		for(int code = 0; code < counts.length; code++) {
+			String value = codes.decode(code);
+			if(value != null && counts[code] > 0) ret.put(value, counts[code]);
+		}
 		return ret;
 	}
 	
 	
 	public void write() {
+		if(allEvents == null) {
+			IO.log(IO.LEVEL.LEVEL_0, "Cannot write corpus: event objects were not retained");
+			return;
+		}
 		try {
-			Date post = DateFormats.dateFormat1.parse("2018-12-23");
+			Date post = DateFormats.dateFormat1.get().parse("2018-12-23");
 			FileWriter fileout = new FileWriter("./output/gdelt/GDELT.csv");
 			fileout.write("Actor1,Actor2,EventRootCode,EventBasecode,EventCode,NumArticles,NumMentions,dateOfEvent,avgTone" + IO.LS);
 			for(GDELT_Global_Event article: allEvents) {
@@ -127,7 +195,7 @@ public class GDELT_Corpus {
 					    article.EventCode + "," + 
 				        article.NumArticles + "," +
 			            article.NumMentions + "," + 
-			            DateFormats.dateFormat1.format(article.dateOfEvent) + "," + article.AvgTone + IO.LS);
+			            DateFormats.dateFormat1.get().format(article.dateOfEvent) + "," + article.AvgTone + IO.LS);
 			}
 			fileout.close();
 		}
@@ -138,12 +206,12 @@ public class GDELT_Corpus {
 	
 	
 	public boolean containsID(String eventID) {
-		return events.keySet().contains(eventID);
+		return store.rowOf(eventID) >= 0;
 	}
 	
 	public long sumOfAllMentions() {
 		long ret = 0;
-		for(GDELT_Global_Event article: allEvents) ret += article.NumMentions;
+		for(int i = 0; i < store.size(); i++) ret += store.numMentions(i);
 		return ret;
 	}
 	
@@ -155,7 +223,51 @@ public class GDELT_Corpus {
 		return get(globalEventsFile, null);
 	}
 	
+	/**
+	 * Gets the corpus; if the events file is a snapshot directory, or there is
+	 * an up-to-date snapshot next to it, the snapshot is memory-mapped instead
+	 * of parsing the file (see GDELT_Corpus_Snapshot). Mention aggregates are
+	 * taken from the snapshot if it was made with the same mentions file, and
+	 * are otherwise read from the mentions file. A snapshot next to the file is
+	 * not used if the event objects are to be retained (retainEventObjects) or
+	 * mentions materialized, since it has no event objects. A snapshot that
+	 * cannot be loaded (e.g. one made in another time zone) is replaced by
+	 * the file it was made from.
+	 * @param globalEventsfile
+	 * @param mentionsFile
+	 * @return
+	 */
 	public static GDELT_Corpus get(String globalEventsfile, String mentionsFile){
+		String sourceFile = globalEventsfile;
+		try {
+			File source   = new File(globalEventsfile);
+			File snapshot = GDELT_Corpus_Snapshot.isSnapshot(source) ? source : GDELT_Corpus_Snapshot.defaultLocation(globalEventsfile);
+			if(snapshot == source && GDELT_Corpus_Snapshot.sourceOf(snapshot) != null) sourceFile = GDELT_Corpus_Snapshot.sourceOf(snapshot);
+			if(snapshot == source && materializeMentions && mentionsFile != null) {
+				IO.log(IO.LEVEL.LEVEL_0, "Mention objects cannot be attached to an event snapshot; loading mention aggregates only");
+			}
+			if(snapshot == source && retainEventObjects) {
+				IO.log(IO.LEVEL.LEVEL_0, "An event snapshot has no event objects to retain; loading the columnar store only");
+			}
+			if(snapshot == source || (!materializeMentions && !retainEventObjects && GDELT_Corpus_Snapshot.matches(snapshot, globalEventsfile))) {
+				GDELT_Corpus corpus = GDELT_Corpus_Snapshot.load(snapshot);
+				if(mentionsFile != null && !GDELT_Corpus_Snapshot.matchesMentions(snapshot, mentionsFile)) corpus.loadMentions(mentionsFile);
+				return corpus;
+			}
+		}
+		catch(IOException e) {
+			e.printStackTrace(); // Fall back to reading the file itself
+		}
+		return read(sourceFile, mentionsFile);
+	}
+	
+	/**
+	 * Reads the corpus from the events file (CSV or JSON) and optional mentions file
+	 * @param globalEventsfile
+	 * @param mentionsFile
+	 * @return
+	 */
+	public static GDELT_Corpus read(String globalEventsfile, String mentionsFile){
 		IO.log(IO.LEVEL.LEVEL_0, "Beginning get of corpus from " + globalEventsfile + " mentions = " + mentionsFile);
 		GDELT_Corpus_File_Type fileType = (globalEventsfile.substring(globalEventsfile.lastIndexOf(".") + 1).compareToIgnoreCase("csv") == 0 ? GDELT_Corpus_File_Type.CSV : GDELT_Corpus_File_Type.JSON);
 		GDELT_Corpus articleCollection = null;
@@ -173,65 +285,9 @@ public class GDELT_Corpus {
 						articleCollection.events.put(article.globalEventID, article);
 					}
 					IO.log(IO.LEVEL.LEVEL_0, "Loaded " + articleCollection.allEvents.size() + " from " + globalEventsfile);					
-					if(mentionsFile != null) {
-						BufferedReader mentionsReader;
-						IO.log(IO.LEVEL.LEVEL_1, "Starting read of mentions file");
-						mentionsReader = new BufferedReader(new FileReader(new File(mentionsFile)));
-						String line = mentionsReader.readLine(); // Skip header
-						int lineCount = 0;
-						while((line = mentionsReader.readLine()) != null) {
-							// Get the data for the source
-							String[] vals = line.split("\t");
-							String mentionIdentifier  = vals[5];
-							String mentionSourceName = vals[4];
-							// Need to create the mention and the article
-							if(!articleCollection.docs.containsKey(mentionIdentifier)) {
-								GDELTMentionDoc doc = new GDELTMentionDoc();
-								doc.MentionTimeDate   =  DateFormats.dateFormat2.parse(vals[2]);
-								doc.MentionType       =  Integer.parseInt(vals[3]);
-								doc.MentionSourceName = mentionSourceName;
-								doc.MentionDocLen     = Integer.parseInt(vals[12]);
-								doc.MentionDocTone    = Double.parseDouble(vals[13]);
-								String mentionDocTranslationInfo = "";
-								if(vals.length > 14) mentionDocTranslationInfo = vals[14]; // Null for all English articles
-								doc.MentionDocTranslationInfo = mentionDocTranslationInfo;
-								articleCollection.docs.put(mentionIdentifier, doc);
-								
-								// Also track documents by sources (e.g. all URLS from nytimes.com)
-								if(!articleCollection.docsBySource.containsKey(mentionSourceName)) {
-									articleCollection.docsBySource.put(mentionSourceName, new ArrayList<GDELTMentionDoc>());
-								}
-								articleCollection.docsBySource.get(mentionSourceName).add(doc);
-							}
-								
-							GDELTMentionDoc doc = articleCollection.docs.get(mentionIdentifier); // Retrieve; will exist, even if just placed
-							GDELTMention mention = new GDELTMention();
-							mention.EventTimeDate    = DateFormats.dateFormat2.parse(vals[1]);
-							mention.mentionURL       = mentionIdentifier;
-							mention.SentenceID       = Integer.parseInt(vals[6]);
-							mention.Actor1CharOffset = Integer.parseInt(vals[7]);
-							mention.Actor2CharOffset = Integer.parseInt(vals[8]);
-							mention.ActionCharOffset = Integer.parseInt(vals[9]);
-							mention.InRawText        = Boolean.parseBoolean(vals[10]);
-							mention.Confidence       = Integer.parseInt(vals[11]);
-							
-							// Add the mention to the document's list of mentions
-							doc.addMention(mention);
-
-							GDELT_Global_Event event = articleCollection.events.get(vals[0]);
-							if(event == null) {
-								System.out.println("Orphan mention: refers to event " + vals[0]);
-							}
-							else {
-								event.mentions.add(mention); // This sets the mention's event pointer and adds the mention to the event's list
-							}
-							
-							lineCount++;
-							
-						}
-						IO.log(IO.LEVEL.LEVEL_1, "Read mentions file, " + lineCount + " lines, " + articleCollection.docs.size() + " distinct documents"); 
-						mentionsReader.close();
-					}
+					if(mentionsFile != null && materializeMentions) articleCollection.loadMentionObjects(mentionsFile);
+					articleCollection.initStore(retainEventObjects || materializeMentions);
+					if(mentionsFile != null) articleCollection.loadMentions(mentionsFile);
 				}
 				catch(IOException e) {
 					e.printStackTrace();
@@ -244,6 +300,18 @@ public class GDELT_Corpus {
 				break;
 			}
 			case CSV:{
+				if(!retainEventObjects && !materializeMentions) {
+					// No event objects are needed; parse straight into the columnar store
+					try {
+						articleCollection = new GDELT_Corpus();
+						articleCollection.store = GDELT_Events_CSV_Parser.parse(globalEventsfile, loaderThreads);
+						if(mentionsFile != null) articleCollection.loadMentions(mentionsFile);
+					}
+					catch(IOException e) {
+						e.printStackTrace();
+					}
+					break;
+				}
 				try {
 					IO.log(IO.LEVEL.LEVEL_1, "Starting csv read for corpus load");
 			        File myObj = new File(globalEventsfile);
@@ -258,65 +326,9 @@ public class GDELT_Corpus {
 						articleCollection.events.put(article.globalEventID, article);
 					}
 					IO.log(IO.LEVEL.LEVEL_0, "Loaded " + articleCollection.allEvents.size() + " from " + globalEventsfile);					
-					if(mentionsFile != null) {
-						BufferedReader mentionsReader;
-						IO.log(IO.LEVEL.LEVEL_1, "Starting read of mentions file");
-						mentionsReader = new BufferedReader(new FileReader(new File(mentionsFile)));
-						String line = mentionsReader.readLine(); // Skip header
-						int lineCount = 0;
-						while((line = mentionsReader.readLine()) != null) {
-							// Get the data for the source
-							String[] vals = line.split("\t");
-							String mentionIdentifier  = vals[5];
-							String mentionSourceName = vals[4];
-							// Need to create the mention and the article
-							if(!articleCollection.docs.containsKey(mentionIdentifier)) {
-								GDELTMentionDoc doc = new GDELTMentionDoc();
-								doc.MentionTimeDate   =  DateFormats.dateFormat2.parse(vals[2]);
-								doc.MentionType       =  Integer.parseInt(vals[3]);
-								doc.MentionSourceName = mentionSourceName;
-								doc.MentionDocLen     = Integer.parseInt(vals[12]);
-								doc.MentionDocTone    = Double.parseDouble(vals[13]);
-								String mentionDocTranslationInfo = "";
-								if(vals.length > 14) mentionDocTranslationInfo = vals[14]; // Null for all English articles
-								doc.MentionDocTranslationInfo = mentionDocTranslationInfo;
-								articleCollection.docs.put(mentionIdentifier, doc);
-								
-								// Also track documents by sources (e.g. all URLS from nytimes.com)
-								if(!articleCollection.docsBySource.containsKey(mentionSourceName)) {
-									articleCollection.docsBySource.put(mentionSourceName, new ArrayList<GDELTMentionDoc>());
-								}
-								articleCollection.docsBySource.get(mentionSourceName).add(doc);
-							}
-								
-							GDELTMentionDoc doc = articleCollection.docs.get(mentionIdentifier); // Retrieve; will exist, even if just placed
-							GDELTMention mention = new GDELTMention();
-							mention.EventTimeDate    = DateFormats.dateFormat2.parse(vals[1]);
-							mention.mentionURL       = mentionIdentifier;
-							mention.SentenceID       = Integer.parseInt(vals[6]);
-							mention.Actor1CharOffset = Integer.parseInt(vals[7]);
-							mention.Actor2CharOffset = Integer.parseInt(vals[8]);
-							mention.ActionCharOffset = Integer.parseInt(vals[9]);
-							mention.InRawText        = Boolean.parseBoolean(vals[10]);
-							mention.Confidence       = Integer.parseInt(vals[11]);
-							
-							// Add the mention to the document's list of mentions
-							doc.addMention(mention);
-
-							GDELT_Global_Event event = articleCollection.events.get(vals[0]);
-							if(event == null) {
-								System.out.println("Orphan mention: refers to event " + vals[0]);
-							}
-							else {
-								event.mentions.add(mention); // This sets the mention's event pointer and adds the mention to the event's list
-							}
-							
-							lineCount++;
-							
-						}
-						IO.log(IO.LEVEL.LEVEL_1, "Read mentions file, " + lineCount + " lines, " + articleCollection.docs.size() + " distinct documents"); 
-						mentionsReader.close();
-					}
+					if(mentionsFile != null && materializeMentions) articleCollection.loadMentionObjects(mentionsFile);
+					articleCollection.initStore(retainEventObjects || materializeMentions);
+					if(mentionsFile != null) articleCollection.loadMentions(mentionsFile);
 				}
 				catch(IOException e) {
 					e.printStackTrace();
@@ -331,7 +343,84 @@ public class GDELT_Corpus {
 		return articleCollection;
 	}
 	
+	/**
+	 * Streams the mentions file into the store's per-event mention aggregates
+	 * @param mentionsFile
+	 * @throws IOException
+	 */
+	public void loadMentions(String mentionsFile) throws IOException {
+		GDELT_Mentions_Loader.load(store, mentionsFile, loaderThreads);
+	}
+
+	/**
+	 * Reads the mentions file into mention and document objects, attached to
+	 * the event objects; the events must still be in the 'events' map
+	 * @param mentionsFile
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	private void loadMentionObjects(String mentionsFile) throws IOException, ParseException {
+		BufferedReader mentionsReader;
+		IO.log(IO.LEVEL.LEVEL_1, "Starting read of mentions file");
+		mentionsReader = new BufferedReader(new FileReader(new File(mentionsFile)));
+		String line = mentionsReader.readLine(); // Skip header
+		int lineCount = 0;
+		while((line = mentionsReader.readLine()) != null) {
+			// Get the data for the source
+			String[] vals = line.split("\t");
+			String mentionIdentifier  = vals[5];
+			String mentionSourceName = vals[4];
+			// Need to create the mention and the article
+			if(!docs.containsKey(mentionIdentifier)) {
+				GDELTMentionDoc doc = new GDELTMentionDoc();
+				doc.MentionTimeDate   =  DateFormats.dateFormat2.get().parse(vals[2]);
+				doc.MentionType       =  Integer.parseInt(vals[3]);
+				doc.MentionSourceName = mentionSourceName;
+				doc.MentionDocLen     = Integer.parseInt(vals[12]);
+				doc.MentionDocTone    = Double.parseDouble(vals[13]);
+				String mentionDocTranslationInfo = "";
+				if(vals.length > 14) mentionDocTranslationInfo = vals[14]; // Null for all English articles
+				doc.MentionDocTranslationInfo = mentionDocTranslationInfo;
+				docs.put(mentionIdentifier, doc);
+
+				// Also track documents by sources (e.g. all URLS from nytimes.com)
+				if(!docsBySource.containsKey(mentionSourceName)) {
+					docsBySource.put(mentionSourceName, new ArrayList<GDELTMentionDoc>());
+				}
+				docsBySource.get(mentionSourceName).add(doc);
+			}
+
+			GDELTMentionDoc doc = docs.get(mentionIdentifier); // Retrieve; will exist, even if just placed
+			GDELTMention mention = new GDELTMention();
+			mention.EventTimeDate    = DateFormats.dateFormat2.get().parse(vals[1]);
+			mention.mentionURL       = mentionIdentifier;
+			mention.SentenceID       = Integer.parseInt(vals[6]);
+			mention.Actor1CharOffset = Integer.parseInt(vals[7]);
+			mention.Actor2CharOffset = Integer.parseInt(vals[8]);
+			mention.ActionCharOffset = Integer.parseInt(vals[9]);
+			mention.InRawText        = Boolean.parseBoolean(vals[10]);
+			mention.Confidence       = Integer.parseInt(vals[11]);
+
+			// Add the mention to the document's list of mentions
+			doc.addMention(mention);
+
+			GDELT_Global_Event event = events.get(vals[0]);
+			if(event == null) {
+				System.out.println("Orphan mention: refers to event " + vals[0]);
+			}
+			else {
+				event.mentions.add(mention); // This sets the mention's event pointer and adds the mention to the event's list
+			}
+
+			lineCount++;
+
+		}
+		IO.log(IO.LEVEL.LEVEL_1, "Read mentions file, " + lineCount + " lines, " + docs.size() + " distinct documents");
+		mentionsReader.close();
+	}
+
 	public void resetWeights() {
+		if(allEvents == null) return;
 		for(GDELT_Global_Event event: allEvents) event.weight = 0;
 	}
 		
@@ -0,0 +1,391 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.server.elements;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.zip.CRC32;
+
+import gdelt.utils.IO;
+import gdelt.utils.PropertiesReader;
+
+/**
+ * A binary snapshot of the columnar event store.
+ *
+ * A snapshot is a directory containing one file per column (raw
+ * little-endian values), a file with the country code dictionary
+ * (one code per line, in id order) and a header file in the same
+ * 'key = value' format as the configuration properties. The header
+ * records the schema (the type of each column), the number of rows
+ * and a fingerprint of the source file the snapshot was made from.
+ * The event hours are those of the time zone the snapshot was made in
+ * (dates in the source file are read in the default time zone), so the
+ * header records that zone, and a snapshot made in another zone is not
+ * used. The rows are in the store's order (by event hour), so the loaded
+ * store needs no sorting.
+ *
+ * The loader memory-maps the column files, so loading is nearly
+ * instantaneous and all of the runner processes on a machine share
+ * the same pages instead of each holding its own copy of the corpus.
+ *
+ * Create a snapshot with:
+ *
+ *   java gdelt.server.elements.GDELT_Corpus_Snapshot eventsFile [snapshotDirectory [mentionsFile]]
+ *
+ * If no directory is given the snapshot is written next to the
+ * events file (eventsFile.snapshot); GDELT_Corpus.get will then use
+ * it automatically as long as the fingerprint still matches. If a
+ * mentions file is given, the per-event mention aggregates are
+ * included in the snapshot, with the fingerprint of the mentions file.
+ *
+ */
+public class GDELT_Corpus_Snapshot {
+
+	public static final String    FORMAT       = "GDELT_EVENT_SNAPSHOT";
+	public static final int       VERSION      = 4; // 2: rows are in order of event hour; 3: the seconds past the hour added are kept; 4: and of the event date, with visible hours from it
+	public static final String    SUFFIX       = ".snapshot";
+	public static final String    HEADER_FILE  = "snapshot.header";
+	public static final String    CODES_FILE   = "countryCodes.txt";
+	public static final String    COLUMN_EXT   = ".col";
+	public static final ByteOrder BYTE_ORDER   = ByteOrder.LITTLE_ENDIAN;
+
+	private static final int FINGERPRINT_BYTES = 1 << 20; // Bytes at the start and end of the file that are checksummed
+
+	private GDELT_Corpus_Snapshot() {}
+
+	/**
+	 * The location used for the snapshot of a given source file, if no other is given
+	 * @param sourceFile
+	 * @return
+	 */
+	public static File defaultLocation(String sourceFile) {
+		return new File(sourceFile + SUFFIX);
+	}
+
+	public static boolean isSnapshot(File location) {
+		return new File(location, HEADER_FILE).isFile();
+	}
+
+	/**
+	 * A fingerprint of a source file: its length, modification time and a
+	 * checksum of its first and last megabyte
+	 * @param sourceFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static String fingerprint(String sourceFile) throws IOException {
+		File file = new File(sourceFile);
+		CRC32 crc = new CRC32();
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r")){
+			long length = raf.length();
+			byte[] buffer = new byte[(int)Math.min(FINGERPRINT_BYTES, length)];
+			raf.readFully(buffer);
+			crc.update(buffer);
+			if(length > FINGERPRINT_BYTES) {
+				raf.seek(Math.max(FINGERPRINT_BYTES, length - FINGERPRINT_BYTES));
+				int n = raf.read(buffer);
+				if(n > 0) crc.update(buffer, 0, n);
+			}
+			return length + ":" + file.lastModified() + ":" + Long.toHexString(crc.getValue());
+		}
+	}
+
+	/**
+	 * True if the snapshot at this location was made from this source file,
+	 * and the source file has not changed since
+	 * @param location
+	 * @param sourceFile
+	 * @return
+	 */
+	public static boolean matches(File location, String sourceFile) {
+		return headerMatches(location, "sourceFingerprint", sourceFile) && zoneMatches(location);
+	}
+
+	/**
+	 * True if the snapshot at this location was made in the default time zone,
+	 * in which the dates of the source file are read
+	 * @param location
+	 * @return
+	 */
+	public static boolean zoneMatches(File location) {
+		if(!isSnapshot(location)) return false;
+		Map<String, String> header = PropertiesReader.getProperties(new File(location, HEADER_FILE).getPath());
+		return TimeZone.getDefault().getID().equals(header.get("timeZone"));
+	}
+
+	/**
+	 * True if the snapshot at this location includes the mention aggregates
+	 * of this mentions file, and the mentions file has not changed since
+	 * @param location
+	 * @param mentionsFile
+	 * @return
+	 */
+	public static boolean matchesMentions(File location, String mentionsFile) {
+		return headerMatches(location, "mentionsFingerprint", mentionsFile);
+	}
+
+	/**
+	 * The source file the snapshot at this location was made from
+	 * @param location
+	 * @return
+	 */
+	public static String sourceOf(File location) {
+		return PropertiesReader.getProperties(new File(location, HEADER_FILE).getPath()).get("source");
+	}
+
+	private static boolean headerMatches(File location, String key, String file) {
+		if(!isSnapshot(location)) return false;
+		try {
+			Map<String, String> header = PropertiesReader.getProperties(new File(location, HEADER_FILE).getPath());
+			return fingerprint(file).equals(header.get(key));
+		}
+		catch(IOException e) {
+			return false;
+		}
+	}
+
+
+	// *******
+	// Writing
+	// *******
+
+	public static void write(GDELT_Corpus corpus, File location, String sourceFile) throws IOException {
+		write(corpus, location, sourceFile, null);
+	}
+
+	/**
+	 * Writes the snapshot; if the corpus has mention aggregates, the mentions
+	 * file they were read from should be given
+	 * @param corpus
+	 * @param location
+	 * @param sourceFile
+	 * @param mentionsFile
+	 * @throws IOException
+	 */
+	public static void write(GDELT_Corpus corpus, File location, String sourceFile, String mentionsFile) throws IOException {
+		GDELT_Event_Store store = corpus.store;
+		location.mkdirs();
+		new File(location, HEADER_FILE).delete();
+		int rows = store.size();
+		Map<String, Buffer> columns = store.getColumns();
+
+		for(Map.Entry<String, Buffer> column: columns.entrySet()) {
+			writeColumn(new File(location, column.getKey() + COLUMN_EXT), column.getValue(), rows);
+		}
+
+		try(Writer codes = new OutputStreamWriter(new FileOutputStream(new File(location, CODES_FILE)), StandardCharsets.UTF_8)){
+			GDELT_Code_Dictionary dictionary = store.getCountryCodes();
+			for(int id = 1; id < dictionary.size(); id++) codes.write(dictionary.decode(id) + "\n"); // id 0 is always null
+		}
+
+		// The header is written last, so that an incomplete snapshot is never used
+		FileWriter header = new FileWriter(new File(location, HEADER_FILE));
+		header.write("# GDELT event corpus snapshot" + IO.LS);
+		header.write("format = "            + FORMAT                                    + IO.LS);
+		header.write("version = "           + VERSION                                   + IO.LS);
+		header.write("byteOrder = "         + BYTE_ORDER                                + IO.LS);
+		header.write("rows = "              + rows                                      + IO.LS);
+		header.write("timeZone = "          + TimeZone.getDefault().getID()             + IO.LS);
+		header.write("countryCodes = "      + (store.getCountryCodes().size() - 1)      + IO.LS);
+		header.write("source = "            + sourceFile                                + IO.LS);
+		header.write("sourceFingerprint = " + fingerprint(sourceFile)                   + IO.LS);
+		if(store.hasMentions() && mentionsFile != null) {
+			header.write("mentions = "            + mentionsFile                            + IO.LS);
+			header.write("mentionsFingerprint = " + fingerprint(mentionsFile)               + IO.LS);
+		}
+		for(Map.Entry<String, Buffer> column: columns.entrySet()) {
+			header.write("column." + column.getKey() + " = " + typeOf(column.getValue()) + IO.LS);
+		}
+		header.close();
+		IO.log(IO.LEVEL.LEVEL_0, "Wrote snapshot of " + rows + " events to " + location);
+	}
+
+	private static void writeColumn(File file, Buffer source, int rows) throws IOException {
+		long bytes = (long)rows * widthOf(typeOf(source));
+		if(bytes > Integer.MAX_VALUE) throw new IOException("Column too large for snapshot: " + file);
+		file.delete();
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()){
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(bytes, 1));
+			out.order(BYTE_ORDER);
+			if(source instanceof LongBuffer) {
+				LongBuffer src = ((LongBuffer)source).duplicate();
+				src.position(0);
+				src.limit(rows);
+				out.asLongBuffer().put(src);
+			}
+			else if(source instanceof IntBuffer) {
+				IntBuffer src = ((IntBuffer)source).duplicate();
+				src.position(0);
+				src.limit(rows);
+				out.asIntBuffer().put(src);
+			}
+			else if(source instanceof ShortBuffer) {
+				ShortBuffer src = ((ShortBuffer)source).duplicate();
+				src.position(0);
+				src.limit(rows);
+				out.asShortBuffer().put(src);
+			}
+			else if(source instanceof DoubleBuffer) {
+				DoubleBuffer src = ((DoubleBuffer)source).duplicate();
+				src.position(0);
+				src.limit(rows);
+				out.asDoubleBuffer().put(src);
+			}
+			else {
+				ByteBuffer src = ((ByteBuffer)source).duplicate();
+				src.position(0);
+				src.limit(rows);
+				out.put(src);
+			}
+			out.force();
+		}
+	}
+
+	private static String typeOf(Buffer buffer) {
+		if(buffer instanceof LongBuffer)   return "long";
+		if(buffer instanceof IntBuffer)    return "int";
+		if(buffer instanceof ShortBuffer)  return "short";
+		if(buffer instanceof DoubleBuffer) return "double";
+		return "byte";
+	}
+
+	private static int widthOf(String type) {
+		switch(type) {
+			case "long":
+			case "double": return 8;
+			case "int":    return 4;
+			case "short":  return 2;
+			default:       return 1;
+		}
+	}
+
+
+	// *******
+	// Loading
+	// *******
+
+	public static GDELT_Corpus load(File location) throws IOException {
+		Map<String, String> header = PropertiesReader.getProperties(new File(location, HEADER_FILE).getPath());
+		if(!FORMAT.equals(header.get("format")) || Integer.parseInt(header.get("version")) != VERSION) {
+			throw new IOException("Not a readable snapshot (format " + header.get("format") + ", version " + header.get("version") + "): " + location);
+		}
+		if(!TimeZone.getDefault().getID().equals(header.get("timeZone"))) {
+			throw new IOException("Snapshot made in time zone " + header.get("timeZone") + ", not " + TimeZone.getDefault().getID() + ": " + location);
+		}
+		int rows = Integer.parseInt(header.get("rows"));
+
+		GDELT_Code_Dictionary dictionary = new GDELT_Code_Dictionary();
+		int codes = Integer.parseInt(header.get("countryCodes"));
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(new File(location, CODES_FILE)), StandardCharsets.UTF_8))){
+			for(int i = 0; i < codes; i++) dictionary.encode(reader.readLine());
+		}
+
+		GDELT_Event_Store store = new GDELT_Event_Store(rows, dictionary);
+		Map<String, Buffer> columns = new LinkedHashMap<String, Buffer>();
+		for(Map.Entry<String, Buffer> expected: store.getColumns().entrySet()) {
+			String name = expected.getKey();
+			String type = header.get("column." + name);
+			if(type == null) throw new IOException("Snapshot is missing column " + name + ": " + location);
+			columns.put(name, mapColumn(new File(location, name + COLUMN_EXT), type, rows));
+		}
+		if(header.get("mentionsFingerprint") != null) {
+			for(String name: GDELT_Event_Store.MENTION_COLUMNS) {
+				String type = header.get("column." + name);
+				if(type == null) throw new IOException("Snapshot is missing column " + name + ": " + location);
+				columns.put(name, mapColumn(new File(location, name + COLUMN_EXT), type, rows));
+			}
+		}
+		store.setColumns(columns);
+		if(!store.isSortedByEventHour()) throw new IOException("Snapshot rows are not in order of event hour: " + location);
+
+		GDELT_Corpus corpus = new GDELT_Corpus();
+		corpus.store = store;
+		IO.log(IO.LEVEL.LEVEL_0, "Mapped snapshot of " + rows + " events from " + location + " (source: " + header.get("source") + ")");
+		return corpus;
+	}
+
+	private static Buffer mapColumn(File file, String type, int rows) throws IOException {
+		long bytes = (long)rows * widthOf(type);
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()){
+			if(channel.size() < bytes) throw new IOException("Snapshot column is truncated: " + file);
+			ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes).order(BYTE_ORDER);
+			switch(type) {
+				case "long":   return in.asLongBuffer();
+				case "int":    return in.asIntBuffer();
+				case "short":  return in.asShortBuffer();
+				case "double": return in.asDoubleBuffer();
+				default:       return in;
+			}
+		}
+	}
+
+
+	/**
+	 * Converter: reads an events file (CSV or JSON) and writes its snapshot
+	 * @param args events file, and optionally the snapshot directory and the mentions file
+	 */
+	public static void main(String[] args) {
+		if(args.length < 1) {
+			System.out.println("Usage: GDELT_Corpus_Snapshot eventsFile [snapshotDirectory [mentionsFile]]");
+			return;
+		}
+		IO.echo = true;
+		String source   = args[0];
+		File   location = args.length > 1 ? new File(args[1]) : defaultLocation(source);
+		String mentions = args.length > 2 ? args[2] : null;
+		try {
+			GDELT_Corpus.materializeMentions = false;
+			GDELT_Corpus corpus = GDELT_Corpus.read(source, mentions);
+			write(corpus, location, source, mentions);
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.server.elements;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import gdelt.utils.RowBitmap;
+
+/**
+ * Bitmap indexes over the rows of an event store: for each field that
+ * queries test, the rows (see RowBitmap) that hold each value of it. The
+ * double fields are indexed by their whole-number part (as truncated by
+ * intValue), which is how the query domains compare them. The rows that a
+ * query matches are then the AND, over the fields it tests, of the OR of
+ * the rows of the values it matches in each.
+ *
+ * Each field is indexed when first needed.
+ */
+public class GDELT_Event_Index {
+
+	public static enum FIELD {
+		ROOT_CODE,
+		GOLDSTEIN,
+		AVG_TONE,
+		ACTOR_1,
+		ACTOR_2,
+		LAT,
+		LON
+	}
+
+	private final GDELT_Event_Store store;
+
+	// For each field indexed so far: its values, in order, and the rows of each
+	private final Map<FIELD, int[]>       values = new EnumMap<FIELD, int[]>(FIELD.class);
+	private final Map<FIELD, RowBitmap[]> rows   = new EnumMap<FIELD, RowBitmap[]>(FIELD.class);
+
+	GDELT_Event_Index(GDELT_Event_Store store) {
+		this.store = store;
+	}
+
+	/**
+	 * The values of the field that occur in the store, in increasing order
+	 * @param field
+	 * @return
+	 */
+	public synchronized int[] getValues(FIELD field) {
+		if(!values.containsKey(field)) index(field);
+		return values.get(field);
+	}
+
+	/**
+	 * The rows that hold the i-th of getValues(field)
+	 * @param field
+	 * @param i
+	 * @return
+	 */
+	public synchronized RowBitmap getRows(FIELD field, int i) {
+		if(!rows.containsKey(field)) index(field);
+		return rows.get(field)[i];
+	}
+
+	private void index(FIELD field) {
+		Map<Integer, RowBitmap> byValue = new TreeMap<Integer, RowBitmap>();
+		for(int row = 0; row < store.size(); row++) {
+			int value = valueOf(field, row);
+			RowBitmap set = byValue.get(value);
+			if(set == null) byValue.put(value, set = new RowBitmap());
+			set.add(row);
+		}
+		int[]       keys = new int[byValue.size()];
+		RowBitmap[] sets = new RowBitmap[byValue.size()];
+		int i = 0;
+		for(Map.Entry<Integer, RowBitmap> entry: byValue.entrySet()) {
+			keys[i]   = entry.getKey();
+			sets[i++] = entry.getValue();
+		}
+		values.put(field, keys);
+		rows.put(field, sets);
+	}
+
+	private int valueOf(FIELD field, int row) {
+		switch(field) {
+			case ROOT_CODE: return store.rootCode(row);
+			case GOLDSTEIN: return (int)store.goldstein(row);
+			case AVG_TONE:  return (int)store.avgTone(row);
+			case ACTOR_1:   return store.actor1(row);
+			case ACTOR_2:   return store.actor2(row);
+			case LAT:       return (int)store.lat(row);
+			case LON:       return (int)store.lon(row);
+			default:        return 0;
+		}
+	}
+
+}
@@ -0,0 +1,1004 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.server.elements;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gdelt.utils.IO;
+
+/**
+ * A columnar, primitive-typed copy of the fields of the corpus
+ * that are used when queries are evaluated.
+ *
+ * Each event is a row; each field is a parallel column. Times are
+ * kept as whole hours since the epoch (UTC), which is the resolution
+ * at which query shifts and visibility offsets operate. Country
+ * codes are dictionary encoded (see GDELT_Code_Dictionary).
+ *
+ * Note that the dates of an event have a finer resolution than an
+ * hour. The date of the event is kept as 'eventHour', rounded down,
+ * and 'eventSecond', the seconds past that hour; it is midnight in
+ * the time zone the file was read in, so the seconds are 0 unless
+ * that zone is offset from UTC by part of an hour. The date the event
+ * was added to GDELT is kept the same way, as 'addedHour' and
+ * 'addedSecond', which together place the event in time when counting
+ * by date added. 'visibleHour' is the event hour plus the time from
+ * the date of the event to the time added, rounded up to whole hours
+ * (the time added rounded up, when the event is on the hour); an
+ * event is visible a whole number of hours after its date if its
+ * event hour plus those hours is at least its visible hour. These
+ * reproduce the comparisons that were made on the full date values.
+ *
+ * The rows are kept in order of event hour (see sortByEventHour), so
+ * that a query only needs to scan the rows whose times can fall within
+ * the window it is scoring; an index from hour to first row, and an
+ * ordering of the rows by added hour, are built when first needed.
+ *
+ * If a mentions file is loaded, each event also gets a compact
+ * summary of its mentions (see GDELT_Mentions_Loader) in five more
+ * columns; these are absent (null) when no mentions were loaded.
+ *
+ * A store can also be an aggregate of another (see aggregate), in
+ * which each row stands for a number of events, given by the 'weight'
+ * column; the weight column is absent (every row is one event) otherwise.
+ *
+ */
+public class GDELT_Event_Store {
+
+	public static final long MILLIS_PER_HOUR    = 3600000L;
+	public static final long SECONDS_PER_HOUR   = 3600L;
+	private static final int INITIAL_CAPACITY   = 1024;
+	private static final int MAX_INDEXED_HOURS  = 1 << 20; // Beyond this span the hour index is replaced by a binary search
+
+	// The fields that an aggregate keeps apart (see aggregate)
+	public static final int ROOT_CODE = 1;
+	public static final int GOLDSTEIN = 1 << 1;
+	public static final int AVG_TONE  = 1 << 2;
+	public static final int ACTOR_1   = 1 << 3;
+	public static final int ACTOR_2   = 1 << 4;
+	public static final int LAT_LON   = 1 << 5;
+
+	private int size = 0;
+	
+	// The columns are read through these buffers; for a store that is built
+	// in memory they wrap the arrays below, and for a store loaded from a
+	// snapshot they are memory-mapped views of the column files
+	LongBuffer   eventID;
+	IntBuffer    eventHour;
+	ShortBuffer  eventSecond;
+	IntBuffer    addedHour;
+	ShortBuffer  addedSecond;
+	IntBuffer    visibleHour;
+	ByteBuffer   rootCode;
+	DoubleBuffer goldstein;
+	DoubleBuffer avgTone;
+	DoubleBuffer lat;
+	DoubleBuffer lon;
+	ShortBuffer  actor1;
+	ShortBuffer  actor2;
+	IntBuffer    numMentions;
+
+	// Mention aggregates: the number of mention rows, the number of distinct
+	// documents and the sum of their tones, and the hours of the first and
+	// last mentions
+	IntBuffer    mentionCount;
+	IntBuffer    mentionDocCount;
+	DoubleBuffer mentionToneSum;
+	IntBuffer    firstMentionHour;
+	IntBuffer    lastMentionHour;
+
+	static final String[] MENTION_COLUMNS = {"mentionCount", "mentionDocCount", "mentionToneSum", "firstMentionHour", "lastMentionHour"};
+
+	// The number of events in each row, for an aggregate
+	IntBuffer    weight;
+
+	// Backing arrays, while the store is being built in memory
+	private long[]   eventIDs;
+	private int[]    eventHours;
+	private short[]  eventSeconds;
+	private int[]    addedHours;
+	private short[]  addedSeconds;
+	private int[]    visibleHours;
+	private byte[]   rootCodes;
+	private double[] goldsteins;
+	private double[] avgTones;
+	private double[] lats;
+	private double[] lons;
+	private short[]  actor1s;
+	private short[]  actor2s;
+	private int[]    numMentionsValues;
+	private int[]    mentionCounts;
+	private int[]    mentionDocCounts;
+	private double[] mentionToneSums;
+	private int[]    firstMentionHours;
+	private int[]    lastMentionHours;
+	private int[]    weights;
+
+	// Shared by both actor columns
+	GDELT_Code_Dictionary countryCodes = new GDELT_Code_Dictionary();
+
+	// Built when first needed, for look-up by event id
+	private volatile long[] sortedIDs      = null;
+	private int[]           rowsBySortedID = null;
+
+	// Built when first needed, for scans by time: hourIndex[h - firstIndexedHour] is
+	// the first row with an event hour of at least h, and addedOrder lists the rows
+	// in order of added hour
+	private volatile int[]  hourIndex        = null;
+	private int             firstIndexedHour = 0;
+	private volatile int[]  addedOrder       = null;
+
+	// Built when first needed, for evaluation by bitmaps (see GDELT_Event_Index)
+	private volatile GDELT_Event_Index index = null;
+
+	// Found when first needed (see eventsOnTheHour)
+	private volatile Boolean onTheHour = null;
+
+	public GDELT_Event_Store() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public GDELT_Event_Store(int capacity) {
+		allocate(Math.max(capacity, 1));
+	}
+	
+	/**
+	 * A store over existing (e.g. memory-mapped) columns; this cannot be appended to
+	 */
+	GDELT_Event_Store(int rows, GDELT_Code_Dictionary dictionary) {
+		size         = rows;
+		countryCodes = dictionary;
+	}
+
+	/**
+	 * Builds the store from a list of events; the events must
+	 * already have been initialized (so that their dates are set)
+	 * @param events
+	 * @return
+	 */
+	public static GDELT_Event_Store from(List<GDELT_Global_Event> events) {
+		GDELT_Event_Store store = new GDELT_Event_Store(events.size());
+		int skipped = 0;
+		for(GDELT_Global_Event event: events) {
+			if(event.dateOfEvent == null || event.dateAndTimeAdded == null) skipped++;
+			else store.append(event);
+		}
+		if(skipped > 0) IO.log(IO.LEVEL.LEVEL_0, "Event store: skipped " + skipped + " events with no valid dates");
+		store.trimToSize();
+		store.sortByEventHour();
+		return store;
+	}
+
+	private void allocate(int capacity) {
+		eventIDs          = new long[capacity];
+		eventHours        = new int[capacity];
+		eventSeconds      = new short[capacity];
+		addedHours        = new int[capacity];
+		addedSeconds      = new short[capacity];
+		visibleHours      = new int[capacity];
+		rootCodes         = new byte[capacity];
+		goldsteins        = new double[capacity];
+		avgTones          = new double[capacity];
+		lats              = new double[capacity];
+		lons              = new double[capacity];
+		actor1s           = new short[capacity];
+		actor2s           = new short[capacity];
+		numMentionsValues = new int[capacity];
+		wrap();
+	}
+
+	private void resize(int capacity) {
+		eventIDs          = Arrays.copyOf(eventIDs,          capacity);
+		eventHours        = Arrays.copyOf(eventHours,        capacity);
+		eventSeconds      = Arrays.copyOf(eventSeconds,      capacity);
+		addedHours        = Arrays.copyOf(addedHours,        capacity);
+		addedSeconds      = Arrays.copyOf(addedSeconds,      capacity);
+		visibleHours      = Arrays.copyOf(visibleHours,      capacity);
+		rootCodes         = Arrays.copyOf(rootCodes,         capacity);
+		goldsteins        = Arrays.copyOf(goldsteins,        capacity);
+		avgTones          = Arrays.copyOf(avgTones,          capacity);
+		lats              = Arrays.copyOf(lats,              capacity);
+		lons              = Arrays.copyOf(lons,              capacity);
+		actor1s           = Arrays.copyOf(actor1s,           capacity);
+		actor2s           = Arrays.copyOf(actor2s,           capacity);
+		numMentionsValues = Arrays.copyOf(numMentionsValues, capacity);
+		if(mentionCounts != null) {
+			mentionCounts     = Arrays.copyOf(mentionCounts,     capacity);
+			mentionDocCounts  = Arrays.copyOf(mentionDocCounts,  capacity);
+			mentionToneSums   = Arrays.copyOf(mentionToneSums,   capacity);
+			firstMentionHours = Arrays.copyOf(firstMentionHours, capacity);
+			lastMentionHours  = Arrays.copyOf(lastMentionHours,  capacity);
+			wrapMentions();
+		}
+		if(weights != null) {
+			weights = Arrays.copyOf(weights, capacity);
+			weight  = IntBuffer.wrap(weights);
+		}
+		wrap();
+	}
+	
+	private void wrap() {
+		eventID     = LongBuffer.wrap(eventIDs);
+		eventHour   = IntBuffer.wrap(eventHours);
+		eventSecond = ShortBuffer.wrap(eventSeconds);
+		addedHour   = IntBuffer.wrap(addedHours);
+		addedSecond = ShortBuffer.wrap(addedSeconds);
+		visibleHour = IntBuffer.wrap(visibleHours);
+		rootCode    = ByteBuffer.wrap(rootCodes);
+		goldstein   = DoubleBuffer.wrap(goldsteins);
+		avgTone     = DoubleBuffer.wrap(avgTones);
+		lat         = DoubleBuffer.wrap(lats);
+		lon         = DoubleBuffer.wrap(lons);
+		actor1      = ShortBuffer.wrap(actor1s);
+		actor2      = ShortBuffer.wrap(actor2s);
+		numMentions = IntBuffer.wrap(numMentionsValues);
+	}
+
+	private void wrapMentions() {
+		mentionCount     = IntBuffer.wrap(mentionCounts);
+		mentionDocCount  = IntBuffer.wrap(mentionDocCounts);
+		mentionToneSum   = DoubleBuffer.wrap(mentionToneSums);
+		firstMentionHour = IntBuffer.wrap(firstMentionHours);
+		lastMentionHour  = IntBuffer.wrap(lastMentionHours);
+	}
+
+	public void trimToSize() {
+		if(eventIDs != null && eventIDs.length != size) resize(Math.max(size, 1));
+	}
+
+	/**
+	 * Adds a row for this event
+	 * @param event
+	 * @return the row index
+	 */
+	public int append(GDELT_Global_Event event) {
+		if(eventIDs == null) throw new UnsupportedOperationException("This event store is read-only");
+		if(size == eventIDs.length) resize(eventIDs.length * 2);
+		int row = size++;
+		eventIDs[row]          = parseID(event.globalEventID);
+		eventHours[row]        = floorHour(event.dateOfEvent);
+		eventSeconds[row]      = (short)secondsPastHour(event.dateOfEvent);
+		addedHours[row]        = floorHour(event.dateAndTimeAdded);
+		addedSeconds[row]      = (short)secondsPastHour(event.dateAndTimeAdded);
+		visibleHours[row]      = visibleHour(event.dateOfEvent, event.dateAndTimeAdded);
+		rootCodes[row]         = (byte)event.EventRootCode; // Root codes are 1 - 20
+		goldsteins[row]        = event.GoldsteinScale;
+		avgTones[row]          = event.AvgTone;
+		lats[row]              = event.ActionGeo_Lat;
+		lons[row]              = event.ActionGeo_Long;
+		actor1s[row]           = (short)countryCodes.encode(event.Actor1CountryCode);
+		actor2s[row]           = (short)countryCodes.encode(event.Actor2CountryCode);
+		numMentionsValues[row] = event.NumMentions == null ? 0 : event.NumMentions.intValue();
+		clearIndexes();
+		return row;
+	}
+
+	/**
+	 * Adds a row from values that have already been converted; the country
+	 * codes must be ids in this store's dictionary
+	 * @return the row index
+	 */
+	public int append(long id, int eventHour, int eventSecond, int addedHour, int addedSecond, int visibleHour, int rootCode, 
+			          double goldstein, double avgTone, double lat, double lon, 
+			          int actor1, int actor2, int numMentions) {
+		if(eventIDs == null) throw new UnsupportedOperationException("This event store is read-only");
+		if(size == eventIDs.length) resize(eventIDs.length * 2);
+		int row = size++;
+		eventIDs[row]          = id;
+		eventHours[row]        = eventHour;
+		eventSeconds[row]      = (short)eventSecond;
+		addedHours[row]        = addedHour;
+		addedSeconds[row]      = (short)addedSecond;
+		visibleHours[row]      = visibleHour;
+		rootCodes[row]         = (byte)rootCode;
+		goldsteins[row]        = goldstein;
+		avgTones[row]          = avgTone;
+		lats[row]              = lat;
+		lons[row]              = lon;
+		actor1s[row]           = (short)actor1;
+		actor2s[row]           = (short)actor2;
+		numMentionsValues[row] = numMentions;
+		clearIndexes();
+		return row;
+	}
+	
+	/**
+	 * Joins stores end to end, in the order given; the country codes
+	 * are re-encoded into the dictionary of the new store
+	 * @param parts
+	 * @return
+	 */
+	public static GDELT_Event_Store concat(List<GDELT_Event_Store> parts) {
+		int total = 0;
+		for(GDELT_Event_Store part: parts) total += part.size;
+		GDELT_Event_Store ret = new GDELT_Event_Store(total);
+		for(GDELT_Event_Store part: parts) {
+			GDELT_Code_Dictionary codes = part.getCountryCodes();
+			short[] recode = new short[codes.size()];
+			for(int id = 0; id < recode.length; id++) recode[id] = (short)ret.countryCodes.encode(codes.decode(id));
+			for(int i = 0; i < part.size; i++) {
+				ret.append(part.eventID(i), part.eventHour(i), part.eventSecond(i), part.addedHour(i), part.addedSecond(i), part.visibleHour(i), part.rootCode(i),
+						   part.goldstein(i), part.avgTone(i), part.lat(i), part.lon(i),
+						   recode[part.actor1(i)], recode[part.actor2(i)], part.numMentions(i));
+			}
+		}
+		ret.trimToSize();
+		ret.sortByEventHour();
+		return ret;
+	}
+
+	private void clearIndexes() {
+		sortedIDs  = null;
+		hourIndex  = null;
+		addedOrder = null;
+		index      = null;
+		onTheHour  = null;
+	}
+
+	// *******
+	// Time order
+	// *******
+
+	public boolean isSortedByEventHour() {
+		for(int i = 1; i < size; i++) if(eventHour.get(i) < eventHour.get(i - 1)) return false;
+		return true;
+	}
+
+	/**
+	 * Reorders the rows by event hour; rows with the same event hour keep
+	 * their order. Only a store that is built in memory can be reordered.
+	 */
+	public void sortByEventHour() {
+		if(isSortedByEventHour()) return;
+		if(eventIDs == null) throw new UnsupportedOperationException("This event store is read-only");
+		// Sort (hour, row) pairs packed into longs; the hour is offset to be non-negative
+		int min = Integer.MAX_VALUE;
+		for(int i = 0; i < size; i++) min = Math.min(min, eventHours[i]);
+		long[] keys = new long[size];
+		for(int i = 0; i < size; i++) keys[i] = (((long)eventHours[i] - min) << 32) | i;
+		Arrays.sort(keys);
+		int[] order = new int[size];
+		for(int i = 0; i < size; i++) order[i] = (int)keys[i];
+
+		eventIDs          = permute(eventIDs,          order);
+		eventHours        = permute(eventHours,        order);
+		eventSeconds      = permute(eventSeconds,      order);
+		addedHours        = permute(addedHours,        order);
+		addedSeconds      = permute(addedSeconds,      order);
+		visibleHours      = permute(visibleHours,      order);
+		rootCodes         = permute(rootCodes,         order);
+		goldsteins        = permute(goldsteins,        order);
+		avgTones          = permute(avgTones,          order);
+		lats              = permute(lats,              order);
+		lons              = permute(lons,              order);
+		actor1s           = permute(actor1s,           order);
+		actor2s           = permute(actor2s,           order);
+		numMentionsValues = permute(numMentionsValues, order);
+		if(mentionCounts != null) {
+			mentionCounts     = permute(mentionCounts,     order);
+			mentionDocCounts  = permute(mentionDocCounts,  order);
+			mentionToneSums   = permute(mentionToneSums,   order);
+			firstMentionHours = permute(firstMentionHours, order);
+			lastMentionHours  = permute(lastMentionHours,  order);
+			wrapMentions();
+		}
+		if(weights != null) {
+			weights = permute(weights, order);
+			weight  = IntBuffer.wrap(weights);
+		}
+		wrap();
+		clearIndexes();
+	}
+
+	private static long[] permute(long[] values, int[] order) {
+		long[] ret = new long[values.length];
+		for(int i = 0; i < order.length; i++) ret[i] = values[order[i]];
+		return ret;
+	}
+
+	private static int[] permute(int[] values, int[] order) {
+		int[] ret = new int[values.length];
+		for(int i = 0; i < order.length; i++) ret[i] = values[order[i]];
+		return ret;
+	}
+
+	private static short[] permute(short[] values, int[] order) {
+		short[] ret = new short[values.length];
+		for(int i = 0; i < order.length; i++) ret[i] = values[order[i]];
+		return ret;
+	}
+
+	private static byte[] permute(byte[] values, int[] order) {
+		byte[] ret = new byte[values.length];
+		for(int i = 0; i < order.length; i++) ret[i] = values[order[i]];
+		return ret;
+	}
+
+	private static double[] permute(double[] values, int[] order) {
+		double[] ret = new double[values.length];
+		for(int i = 0; i < order.length; i++) ret[i] = values[order[i]];
+		return ret;
+	}
+
+	/**
+	 * The first row whose event hour is at least this hour (size() if there is none);
+	 * the store must be sorted by event hour
+	 * @param hour
+	 * @return
+	 */
+	public int firstRowAtOrAfterHour(long hour) {
+		if(size == 0) return 0;
+		if(hourIndex == null) indexHours();
+		int[] index = hourIndex;
+		if(index.length == 0) {
+			// Too wide a span of hours to index
+			int lo = 0, hi = size;
+			while(lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if(eventHour.get(mid) < hour) lo = mid + 1;
+				else                          hi = mid;
+			}
+			return lo;
+		}
+		long offset = hour - firstIndexedHour;
+		if(offset <= 0)           return 0;
+		if(offset >= index.length) return size;
+		return index[(int)offset];
+	}
+
+	private synchronized void indexHours() {
+		if(hourIndex != null) return;
+		int  first = eventHour.get(0);
+		long span  = (long)eventHour.get(size - 1) - first + 1;
+		if(span > MAX_INDEXED_HOURS) {
+			hourIndex = new int[0];
+			return;
+		}
+		int[] index = new int[(int)span];
+		int row = 0;
+		for(int h = 0; h < index.length; h++) {
+			while(row < size && eventHour.get(row) < first + h) row++;
+			index[h] = row;
+		}
+		firstIndexedHour = first;
+		hourIndex        = index;
+	}
+
+	/**
+	 * The rows in order of added hour (rows with the same added hour are in row order)
+	 * @return
+	 */
+	public int[] getAddedOrder() {
+		if(addedOrder == null) orderByAddedHour();
+		return addedOrder;
+	}
+
+	/**
+	 * The first position in getAddedOrder() whose row has an added hour of at least this hour
+	 * @param hour
+	 * @return
+	 */
+	public int firstAddedAtOrAfterHour(long hour) {
+		int[] order = getAddedOrder();
+		int lo = 0, hi = size;
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(addedHour.get(order[mid]) < hour) lo = mid + 1;
+			else                                 hi = mid;
+		}
+		return lo;
+	}
+
+	private synchronized void orderByAddedHour() {
+		if(addedOrder != null) return;
+		int min = Integer.MAX_VALUE;
+		for(int i = 0; i < size; i++) min = Math.min(min, addedHour.get(i));
+		long[] keys = new long[size];
+		for(int i = 0; i < size; i++) keys[i] = (((long)addedHour.get(i) - min) << 32) | i;
+		Arrays.sort(keys);
+		int[] order = new int[size];
+		for(int i = 0; i < size; i++) order[i] = (int)keys[i];
+		addedOrder = order;
+	}
+
+	// *******
+	// Aggregates
+	// *******
+
+	/**
+	 * An aggregate of this store (a 'cube' of event counts): events that have the
+	 * same times and the same values of the given fields (see ROOT_CODE etc.) become
+	 * a single row, whose weight is the number of events. A query that tests only
+	 * these fields matches all of a row's events or none of them, so scanning the
+	 * aggregate gives the same counts as scanning the events, with a cost that
+	 * depends on the number of distinct rows rather than the number of events.
+	 *
+	 * The double fields are kept as whole numbers (truncated, as intValue does),
+	 * which is how the query domains compare them; the fields not given are 0.
+	 * If byAddedHour, the events are grouped by the time they were added alone
+	 * (its hour and the seconds past it), and each of a row's hours is that
+	 * hour; this serves only for counting by date added. Otherwise they are
+	 * grouped by the date of the event (its hour and the seconds past it) and
+	 * visible hour, and a row's added hour is its visible hour, with no
+	 * seconds past it.
+	 *
+	 * Each row has the id of its first event; mentions are not kept.
+	 * @param fields
+	 * @param byAddedHour
+	 * @return
+	 */
+	public GDELT_Event_Store aggregate(int fields, boolean byAddedHour) {
+		GDELT_Event_Store ret = new GDELT_Event_Store();
+		ret.countryCodes = countryCodes; // The actor codes are unchanged
+		int[]              counts  = new int[INITIAL_CAPACITY];
+		int[]              order   = byAddedHour ? getAddedOrder() : null;
+		Map<Cell, Integer> rows    = new HashMap<Cell, Integer>(); // Of the cells in the current hour
+		Cell               cell    = new Cell();
+		long               runHour = Long.MIN_VALUE;
+		for(int k = 0; k < size; k++) {
+			int i = order == null ? k : order[k];
+			cell.eventHour   = byAddedHour ? addedHour.get(i) : eventHour.get(i);
+			cell.eventSecond = byAddedHour ? 0                : eventSecond.get(i);
+			cell.visibleHour = byAddedHour ? addedHour.get(i) : visibleHour.get(i);
+			cell.addedSecond = byAddedHour ? addedSecond.get(i) : 0;
+			cell.rootCode    = (fields & ROOT_CODE) != 0 ? rootCode.get(i)       : 0;
+			cell.goldstein   = (fields & GOLDSTEIN) != 0 ? (int)goldstein.get(i) : 0;
+			cell.avgTone     = (fields & AVG_TONE)  != 0 ? (int)avgTone.get(i)   : 0;
+			cell.actor1      = (fields & ACTOR_1)   != 0 ? actor1.get(i)         : 0;
+			cell.actor2      = (fields & ACTOR_2)   != 0 ? actor2.get(i)         : 0;
+			cell.lat         = (fields & LAT_LON)   != 0 ? (int)lat.get(i)       : 0;
+			cell.lon         = (fields & LAT_LON)   != 0 ? (int)lon.get(i)       : 0;
+			if(cell.eventHour != runHour) { // The rows are in order of this hour, so no later event can join an earlier cell
+				rows.clear();
+				runHour = cell.eventHour;
+			}
+			Integer row = rows.get(cell);
+			if(row == null) {
+				row = ret.append(eventID.get(i), cell.eventHour, cell.eventSecond, cell.visibleHour, cell.addedSecond, cell.visibleHour, cell.rootCode,
+						         cell.goldstein, cell.avgTone, cell.lat, cell.lon, cell.actor1, cell.actor2, 0);
+				rows.put(cell.copy(), row);
+				if(row >= counts.length) counts = Arrays.copyOf(counts, counts.length * 2);
+			}
+			counts[row]++;
+			ret.numMentionsValues[row] += numMentions.get(i);
+		}
+		ret.weights = counts;
+		ret.weight  = IntBuffer.wrap(counts);
+		ret.trimToSize();
+		ret.sortByEventHour(); // Already in order; this only checks
+		return ret;
+	}
+
+	// The values that an aggregate groups events by
+	private static final class Cell {
+		int eventHour, eventSecond, visibleHour, addedSecond, rootCode, goldstein, avgTone, actor1, actor2, lat, lon;
+
+		Cell copy() {
+			Cell ret = new Cell();
+			ret.eventHour   = eventHour;
+			ret.eventSecond = eventSecond;
+			ret.visibleHour = visibleHour;
+			ret.addedSecond = addedSecond;
+			ret.rootCode    = rootCode;
+			ret.goldstein   = goldstein;
+			ret.avgTone     = avgTone;
+			ret.actor1      = actor1;
+			ret.actor2      = actor2;
+			ret.lat         = lat;
+			ret.lon         = lon;
+			return ret;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = eventHour;
+			h = 31 * h + eventSecond;
+			h = 31 * h + visibleHour;
+			h = 31 * h + addedSecond;
+			h = 31 * h + rootCode;
+			h = 31 * h + goldstein;
+			h = 31 * h + avgTone;
+			h = 31 * h + actor1;
+			h = 31 * h + actor2;
+			h = 31 * h + lat;
+			return 31 * h + lon;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Cell)) return false;
+			Cell c = (Cell)o;
+			return eventHour == c.eventHour && eventSecond == c.eventSecond && visibleHour == c.visibleHour && addedSecond == c.addedSecond && rootCode == c.rootCode &&
+				   goldstein == c.goldstein && avgTone     == c.avgTone     && actor1   == c.actor1   &&
+				   actor2    == c.actor2    && lat         == c.lat         && lon      == c.lon;
+		}
+	}
+
+	/**
+	 * Bitmap indexes over the rows of this store, by the values of the fields that queries test
+	 * @return
+	 */
+	public GDELT_Event_Index getIndex() {
+		if(index == null) indexRows();
+		return index;
+	}
+
+	private synchronized void indexRows() {
+		if(index == null) index = new GDELT_Event_Index(this);
+	}
+
+	// *******
+	// Mention aggregates
+	// *******
+
+	/**
+	 * Adds empty mention aggregate columns, replacing any that are present.
+	 * This may be done on a read-only (memory-mapped) store; the aggregate
+	 * columns are then held in memory.
+	 */
+	public void initMentions() {
+		int capacity = eventIDs == null ? Math.max(size, 1) : eventIDs.length;
+		mentionCounts     = new int[capacity];
+		mentionDocCounts  = new int[capacity];
+		mentionToneSums   = new double[capacity];
+		firstMentionHours = new int[capacity];
+		lastMentionHours  = new int[capacity];
+		wrapMentions();
+	}
+
+	public boolean hasMentions() {
+		return mentionCount != null;
+	}
+
+	/**
+	 * Records one mention of the event in this row. The caller must hold a lock
+	 * that covers the row if mentions are being added from more than one thread.
+	 * @param row
+	 * @param hour the hour of the mention
+	 * @param docTone the tone of the mentioning document
+	 * @param newDocument true if this is the first mention of the event by this document
+	 */
+	void addMention(int row, int hour, double docTone, boolean newDocument) {
+		int count = mentionCounts[row]++;
+		if(count == 0 || hour < firstMentionHours[row]) firstMentionHours[row] = hour;
+		if(count == 0 || hour > lastMentionHours[row])  lastMentionHours[row]  = hour;
+		if(newDocument) {
+			mentionDocCounts[row]++;
+			mentionToneSums[row] += docTone;
+		}
+	}
+
+	private static long parseID(String id) {
+		try {
+			return Long.parseLong(id);
+		}
+		catch(Exception E) {
+			return -1;
+		}
+	}
+
+	// *******
+	// Time conversions
+	// *******
+
+	public static int floorHour(Date date) {
+		return (int)Math.floorDiv(date.getTime(), MILLIS_PER_HOUR);
+	}
+
+	// The whole seconds past the hour (rounded down)
+	public static int secondsPastHour(Date date) {
+		return (int)(Math.floorMod(date.getTime(), MILLIS_PER_HOUR) / 1000);
+	}
+
+	// The hour of the event date plus the time from it to the time added, rounded up to whole hours
+	public static int visibleHour(Date dateOfEvent, Date dateAdded) {
+		return visibleHour(dateOfEvent.getTime(), dateAdded.getTime());
+	}
+
+	public static int visibleHour(long eventMillis, long addedMillis) {
+		return (int)(Math.floorDiv(eventMillis, MILLIS_PER_HOUR) - Math.floorDiv(eventMillis - addedMillis, MILLIS_PER_HOUR));
+	}
+
+	public static LocalDateTime toLocalDateTime(long hour) {
+		return LocalDateTime.ofEpochSecond(hour * SECONDS_PER_HOUR, 0, ZoneOffset.UTC);
+	}
+
+	// *******
+	// Column access
+	// *******
+
+	public final int size() {
+		return size;
+	}
+
+	public final long eventID(int row) {
+		return eventID.get(row);
+	}
+
+	public final int eventHour(int row) {
+		return eventHour.get(row);
+	}
+
+	// The seconds past eventHour(row) of the date of the event
+	public final int eventSecond(int row) {
+		return eventSecond.get(row);
+	}
+
+	/**
+	 * True if the date of every event is on a whole hour (UTC), as when the
+	 * file was read in a time zone offset from UTC by whole hours; the event
+	 * hour then places each event as its date does
+	 * @return
+	 */
+	public boolean eventsOnTheHour() {
+		Boolean ret = onTheHour;
+		if(ret == null) {
+			ret = Boolean.TRUE;
+			for(int i = 0; i < size && ret; i++) if(eventSecond.get(i) != 0) ret = Boolean.FALSE;
+			onTheHour = ret;
+		}
+		return ret;
+	}
+
+	public final int addedHour(int row) {
+		return addedHour.get(row);
+	}
+
+	// The seconds past addedHour(row) that the event was added
+	public final int addedSecond(int row) {
+		return addedSecond.get(row);
+	}
+
+	public final int visibleHour(int row) {
+		return visibleHour.get(row);
+	}
+
+	public final int rootCode(int row) {
+		return rootCode.get(row);
+	}
+
+	public final double goldstein(int row) {
+		return goldstein.get(row);
+	}
+
+	public final double avgTone(int row) {
+		return avgTone.get(row);
+	}
+
+	public final double lat(int row) {
+		return lat.get(row);
+	}
+
+	public final double lon(int row) {
+		return lon.get(row);
+	}
+
+	public final int actor1(int row) {
+		return actor1.get(row);
+	}
+
+	public final int actor2(int row) {
+		return actor2.get(row);
+	}
+
+	public final int numMentions(int row) {
+		return numMentions.get(row);
+	}
+
+	// The columns themselves, for kernels that test many rows at a time (see
+	// GDELT_Query_Kernel); they have backing arrays (hasArray) for a store that
+	// was built in memory, and not for one mapped from a snapshot
+
+	public final IntBuffer eventHourColumn() {
+		return eventHour;
+	}
+
+	public final IntBuffer visibleHourColumn() {
+		return visibleHour;
+	}
+
+	public final DoubleBuffer goldsteinColumn() {
+		return goldstein;
+	}
+
+	public final DoubleBuffer avgToneColumn() {
+		return avgTone;
+	}
+
+	public final DoubleBuffer latColumn() {
+		return lat;
+	}
+
+	public final DoubleBuffer lonColumn() {
+		return lon;
+	}
+
+	// The number of events in the row: 1, unless this is an aggregate
+	public final int weight(int row) {
+		return weight == null ? 1 : weight.get(row);
+	}
+
+	// The mention aggregates are 0 (and the average tone NaN) if no mentions were loaded
+
+	public final int mentionCount(int row) {
+		return mentionCount == null ? 0 : mentionCount.get(row);
+	}
+
+	public final int mentionDocCount(int row) {
+		return mentionDocCount == null ? 0 : mentionDocCount.get(row);
+	}
+
+	public final double mentionToneSum(int row) {
+		return mentionToneSum == null ? 0 : mentionToneSum.get(row);
+	}
+
+	/**
+	 * The hour of the event's first mention; only meaningful if mentionCount(row) > 0
+	 */
+	public final int firstMentionHour(int row) {
+		return firstMentionHour == null ? 0 : firstMentionHour.get(row);
+	}
+
+	/**
+	 * The hour of the event's last mention; only meaningful if mentionCount(row) > 0
+	 */
+	public final int lastMentionHour(int row) {
+		return lastMentionHour == null ? 0 : lastMentionHour.get(row);
+	}
+
+	/**
+	 * The average tone of the documents that mention the event, as
+	 * GDELT_Global_Event.getAverageToneFromArticles
+	 */
+	public final double averageToneFromArticles(int row) {
+		return mentionToneSum(row) / (double)mentionDocCount(row);
+	}
+
+	public GDELT_Code_Dictionary getCountryCodes() {
+		return countryCodes;
+	}
+
+	/**
+	 * The columns, by name, for writing and loading snapshots
+	 * @return
+	 */
+	Map<String, Buffer> getColumns() {
+		Map<String, Buffer> ret = new LinkedHashMap<String, Buffer>();
+		ret.put("eventID",     eventID);
+		ret.put("eventHour",   eventHour);
+		ret.put("eventSecond", eventSecond);
+		ret.put("addedHour",   addedHour);
+		ret.put("addedSecond", addedSecond);
+		ret.put("visibleHour", visibleHour);
+		ret.put("rootCode",    rootCode);
+		ret.put("goldstein",   goldstein);
+		ret.put("avgTone",     avgTone);
+		ret.put("lat",         lat);
+		ret.put("lon",         lon);
+		ret.put("actor1",      actor1);
+		ret.put("actor2",      actor2);
+		ret.put("numMentions", numMentions);
+		if(hasMentions()) {
+			ret.put("mentionCount",     mentionCount);
+			ret.put("mentionDocCount",  mentionDocCount);
+			ret.put("mentionToneSum",   mentionToneSum);
+			ret.put("firstMentionHour", firstMentionHour);
+			ret.put("lastMentionHour",  lastMentionHour);
+		}
+		if(weight != null) ret.put("weight", weight);
+		return ret;
+	}
+	
+	void setColumns(Map<String, Buffer> columns) {
+		eventID     = (LongBuffer)  columns.get("eventID");
+		eventHour   = (IntBuffer)   columns.get("eventHour");
+		eventSecond = (ShortBuffer) columns.get("eventSecond");
+		addedHour   = (IntBuffer)   columns.get("addedHour");
+		addedSecond = (ShortBuffer) columns.get("addedSecond");
+		visibleHour = (IntBuffer)   columns.get("visibleHour");
+		rootCode    = (ByteBuffer)  columns.get("rootCode");
+		goldstein   = (DoubleBuffer)columns.get("goldstein");
+		avgTone     = (DoubleBuffer)columns.get("avgTone");
+		lat         = (DoubleBuffer)columns.get("lat");
+		lon         = (DoubleBuffer)columns.get("lon");
+		actor1      = (ShortBuffer) columns.get("actor1");
+		actor2      = (ShortBuffer) columns.get("actor2");
+		numMentions = (IntBuffer)   columns.get("numMentions");
+		// Optional
+		mentionCount     = (IntBuffer)   columns.get("mentionCount");
+		mentionDocCount  = (IntBuffer)   columns.get("mentionDocCount");
+		mentionToneSum   = (DoubleBuffer)columns.get("mentionToneSum");
+		firstMentionHour = (IntBuffer)   columns.get("firstMentionHour");
+		lastMentionHour  = (IntBuffer)   columns.get("lastMentionHour");
+		weight           = (IntBuffer)   columns.get("weight");
+	}
+
+	// *******
+	// Look-up by id
+	// *******
+
+	/**
+	 * Returns the row of the event with this id, or -1 if not present
+	 * @param id
+	 * @return
+	 */
+	public int rowOf(long id) {
+		if(sortedIDs == null) indexIDs();
+		int pos = Arrays.binarySearch(sortedIDs, id);
+		return pos < 0 ? -1 : rowsBySortedID[pos];
+	}
+
+	public int rowOf(String id) {
+		long l = parseID(id);
+		return l < 0 ? -1 : rowOf(l);
+	}
+
+	private synchronized void indexIDs() {
+		if(sortedIDs != null) return;
+		long[] keys = new long[size];
+		int[]  r    = new int[size];
+		boolean inOrder = true;
+		for(int i = 0; i < size; i++) {
+			r[i]    = i;
+			keys[i] = eventID.get(i);
+			if(i > 0 && keys[i] < keys[i - 1]) inOrder = false;
+		}
+		if(!inOrder) {
+			// GDELT files are usually in id order already; this is the uncommon case
+			final long[] ids = Arrays.copyOf(keys, size);
+			Integer[] rows = new Integer[size];
+			for(int i = 0; i < size; i++) rows[i] = i;
+			Arrays.sort(rows, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return Long.compare(ids[a], ids[b]);
+				}
+			});
+			for(int i = 0; i < size; i++) {
+				r[i]    = rows[i];
+				keys[i] = ids[r[i]];
+			}
+		}
+		rowsBySortedID = r;
+		sortedIDs      = keys;
+	}
+}
@@ -0,0 +1,245 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.server.elements;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gdelt.utils.DateFormats;
+import gdelt.utils.IO;
+
+/**
+ * A parallel parser for the tab-separated GDELT events file that
+ * produces the columnar event store directly, without creating a
+ * GDELT_Global_Event (and its 61 Strings) for every line.
+ *
+ * The file is split into byte ranges; each range is parsed by its
+ * own thread, starting at the first line that begins inside the range.
+ * Lines are tokenized in place and only the columns used by queries
+ * are parsed. The partial stores are then concatenated in file order,
+ * so the rows are in the same order as they would be if the file
+ * were read line by line.
+ *
+ * The values are parsed to the same results as the GDELT_Global_Event
+ * constructor: empty numeric fields are 0, and the dates are parsed
+ * with the same date formats (and so in the same time zone).
+ *
+ */
+public class GDELT_Events_CSV_Parser {
+
+	// Columns of the GDELT 2.0 events table
+	private static final int COL_ID            = 0;
+	private static final int COL_DAY           = 1;
+	private static final int COL_ACTOR1_CC     = 7;
+	private static final int COL_ACTOR2_CC     = 17;
+	private static final int COL_ROOT_CODE     = 28;
+	private static final int COL_GOLDSTEIN     = 30;
+	private static final int COL_NUM_MENTIONS  = 31;
+	private static final int COL_AVG_TONE      = 34;
+	private static final int COL_LAT           = 56;
+	private static final int COL_LON           = 57;
+	private static final int COL_DATE_ADDED    = 59;
+	private static final int COLUMNS_REQUIRED  = 61;
+
+	private GDELT_Events_CSV_Parser() {}
+
+	public static GDELT_Event_Store parse(String fileName) throws IOException {
+		return parse(fileName, Runtime.getRuntime().availableProcessors());
+	}
+
+	public static GDELT_Event_Store parse(String fileName, int threads) throws IOException {
+		long length = GDELT_Range_Parser.fileLength(fileName);
+		int  ranges = GDELT_Range_Parser.rangeCount(length, threads);
+		IO.log(IO.LEVEL.LEVEL_1, "Parsing " + fileName + " (" + length + " bytes) in " + ranges + " ranges on " + threads + " threads");
+
+		List<RangeParser> parsers = new ArrayList<RangeParser>();
+		for(int i = 0; i < ranges; i++) parsers.add(new RangeParser(fileName, length * i / ranges, length * (i + 1) / ranges));
+		GDELT_Range_Parser.runAll(parsers, threads);
+
+		List<GDELT_Event_Store> parts = new ArrayList<GDELT_Event_Store>();
+		for(RangeParser parser: parsers) parts.add(parser.store);
+		GDELT_Event_Store store = GDELT_Event_Store.concat(parts);
+		IO.log(IO.LEVEL.LEVEL_0, "Loaded " + store.size() + " from " + fileName);
+		return store;
+	}
+
+
+	/**
+	 * Parses the lines that begin within one byte range of the file
+	 */
+	private static class RangeParser extends GDELT_Range_Parser {
+
+		GDELT_Event_Store store = new GDELT_Event_Store();
+
+		// Start and end (exclusive) of each column on the current line
+		final int[] colStart = new int[COLUMNS_REQUIRED];
+		final int[] colEnd   = new int[COLUMNS_REQUIRED];
+
+		// Codes seen so far; ids are in this range's dictionary
+		final ByteKeyCodes codes;
+		final DateCache    days  = new DateCache();
+		final DateCache    added = new DateCache();
+
+		final SimpleDateFormat dayFormat;
+		final SimpleDateFormat addedFormat;
+
+		RangeParser(String fileName, long start, long end){
+			super(fileName, start, end, false);
+			this.codes = new ByteKeyCodes(store.getCountryCodes());
+			// The shared formats are not thread safe
+			this.dayFormat   = (SimpleDateFormat)DateFormats.dateFormat1.get().clone();
+			this.addedFormat = (SimpleDateFormat)DateFormats.dateFormat2.get().clone();
+		}
+
+		@Override
+		void finish() {
+			store.trimToSize();
+		}
+
+		@Override
+		void parseLine(byte[] buf, int from, int to) {
+			if(split(buf, from, to, colStart, colEnd) < COLUMNS_REQUIRED) { // The last required column (the source url) ends the line
+				skipped++;
+				return;
+			}
+
+			long dayMillis   = dayMillis(buf, colStart[COL_DAY], colEnd[COL_DAY]);
+			long addedMillis = addedMillis(buf, colStart[COL_DATE_ADDED], colEnd[COL_DATE_ADDED]);
+			if(dayMillis == Long.MIN_VALUE || addedMillis == Long.MIN_VALUE) {
+				skipped++;
+				return;
+			}
+			try {
+				store.append(parseID(buf, colStart[COL_ID], colEnd[COL_ID]),
+						     (int)Math.floorDiv(dayMillis,    GDELT_Event_Store.MILLIS_PER_HOUR),
+						     (int)(Math.floorMod(dayMillis,   GDELT_Event_Store.MILLIS_PER_HOUR) / 1000),
+						     (int)Math.floorDiv(addedMillis,  GDELT_Event_Store.MILLIS_PER_HOUR),
+						     (int)(Math.floorMod(addedMillis, GDELT_Event_Store.MILLIS_PER_HOUR) / 1000),
+						     GDELT_Event_Store.visibleHour(dayMillis, addedMillis),
+						     (int)parseLong(buf, colStart[COL_ROOT_CODE], colEnd[COL_ROOT_CODE]),
+						     parseDouble(buf, colStart[COL_GOLDSTEIN], colEnd[COL_GOLDSTEIN]),
+						     parseDouble(buf, colStart[COL_AVG_TONE],  colEnd[COL_AVG_TONE]),
+						     parseDouble(buf, colStart[COL_LAT],       colEnd[COL_LAT]),
+						     parseDouble(buf, colStart[COL_LON],       colEnd[COL_LON]),
+						     codes.encode(buf, colStart[COL_ACTOR1_CC], colEnd[COL_ACTOR1_CC]),
+						     codes.encode(buf, colStart[COL_ACTOR2_CC], colEnd[COL_ACTOR2_CC]),
+						     (int)parseLong(buf, colStart[COL_NUM_MENTIONS], colEnd[COL_NUM_MENTIONS]));
+			}
+			catch(NumberFormatException e) {
+				skipped++;
+			}
+		}
+
+		// yyyymmdd, parsed as the event's 'day' (yyyy-mm-dd) would be
+		private long dayMillis(byte[] buf, int from, int to) {
+			long key = dateKey(buf, from, to);
+			if(key >= 0) {
+				long cached = days.get(key);
+				if(cached != Long.MIN_VALUE) return cached;
+			}
+			long ret = Long.MIN_VALUE;
+			if(to - from >= 8) {
+				String d = string(buf, from, to);
+				String day = d.substring(0, 4) + "-" + d.substring(4, 6) + "-" + d.substring(6);
+				try {
+					ret = dayFormat.parse(day.substring(0, Math.min(10, day.length()))).getTime();
+				}
+				catch(ParseException e) {
+					// Not a valid date
+				}
+			}
+			if(key >= 0) days.put(key, ret);
+			return ret;
+		}
+
+		// yyyyMMddHHmmss
+		private long addedMillis(byte[] buf, int from, int to) {
+			long key = dateKey(buf, from, to);
+			if(key >= 0) {
+				long cached = added.get(key);
+				if(cached != Long.MIN_VALUE) return cached;
+			}
+			long ret = Long.MIN_VALUE;
+			try {
+				ret = addedFormat.parse(string(buf, from, to)).getTime();
+			}
+			catch(ParseException e) {
+				// Not a valid date
+			}
+			if(key >= 0) added.put(key, ret);
+			return ret;
+		}
+	}
+
+
+	private static long parseID(byte[] buf, int from, int to) {
+		return GDELT_Range_Parser.digits(buf, from, to); // -1 if not numeric, as for GDELT_Event_Store
+	}
+
+
+	/**
+	 * Encodes country code fields into a dictionary; codes of up to seven
+	 * bytes are looked up by their bytes, so a String is only created the
+	 * first time a code is seen
+	 */
+	private static class ByteKeyCodes {
+		private static final int SLOTS = 1 << 12;
+		private final long[] keys = new long[SLOTS];
+		private final int[]  ids  = new int[SLOTS];
+		private final GDELT_Code_Dictionary dictionary;
+
+		ByteKeyCodes(GDELT_Code_Dictionary dictionary){
+			this.dictionary = dictionary;
+			Arrays.fill(keys, -1);
+		}
+
+		int encode(byte[] buf, int from, int to) {
+			int length = to - from;
+			if(length > 7) return dictionary.encode(new String(buf, from, length, StandardCharsets.UTF_8));
+			long key = 0;
+			for(int i = from; i < to; i++) key = (key << 8) | (buf[i] & 0xff);
+			key |= ((long)length) << 56;
+			int slot = (int)((key ^ (key >>> 23) ^ (key >>> 41)) & (SLOTS - 1));
+			while(keys[slot] != -1) {
+				if(keys[slot] == key) return ids[slot];
+				slot = (slot + 1) & (SLOTS - 1);
+			}
+			int id = dictionary.encode(new String(buf, from, length, StandardCharsets.UTF_8));
+			if(dictionary.size() < SLOTS / 2) {
+				keys[slot] = key;
+				ids[slot]  = id;
+			}
+			return id;
+		}
+	}
+}
@@ -196,8 +196,8 @@ public class GDELT_Global_Event{
 		  
 		  public void init() {
 			  try {
-				  dateOfEvent      = DateFormats.dateFormat1.parse(day.substring(0, 10));
-				  dateAndTimeAdded = DateFormats.dateFormat2.parse(dateadded);				  
+				  dateOfEvent      = DateFormats.dateFormat1.get().parse(day.substring(0, 10));
+				  dateAndTimeAdded = DateFormats.dateFormat2.get().parse(dateadded);				  
 			  }
 			  catch(Exception E) {
 				  System.out.println("PROBLEM 1: " + day);
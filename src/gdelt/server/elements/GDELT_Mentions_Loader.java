@@ -0,0 +1,194 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.server.elements;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import gdelt.utils.DateFormats;
+import gdelt.utils.IO;
+import gdelt.utils.LongHashSet;
+
+/**
+ * Streams a mentions file into the per-event mention aggregates of
+ * the columnar event store, without creating mention or document
+ * objects.
+ *
+ * For every event this keeps the number of mention rows, the
+ * number of distinct documents (by URL) that mention it and the sum
+ * of those documents' tones, and the hours of its first and last
+ * mentions. These are what GDELT_Global_Event.getAverageToneFromArticles
+ * and the mention counts need; the full GDELTMention and GDELTMentionDoc
+ * objects are only built if GDELT_Corpus.materializeMentions is set.
+ *
+ * The file is read in parallel byte ranges (see GDELT_Range_Parser).
+ * Rows of the store are guarded by a fixed set of lock stripes; each
+ * stripe also holds the set of (event, document) pairs already seen
+ * for its rows, keyed by a 64-bit hash of the document URL.
+ *
+ */
+public class GDELT_Mentions_Loader {
+
+	// Columns of the mentions table
+	private static final int COL_EVENT_ID     = 0;
+	private static final int COL_MENTION_TIME = 2;
+	private static final int COL_URL          = 5;
+	private static final int COL_DOC_TONE     = 13;
+	private static final int COLUMNS_REQUIRED = 14;
+
+	private static final int STRIPES = 1024; // Power of two
+
+	private final GDELT_Event_Store store;
+	private final Object[]          locks     = new Object[STRIPES];
+	private final LongHashSet[]     documents = new LongHashSet[STRIPES];
+
+	private GDELT_Mentions_Loader(GDELT_Event_Store store) {
+		this.store = store;
+		for(int i = 0; i < STRIPES; i++) {
+			locks[i]     = new Object();
+			documents[i] = new LongHashSet();
+		}
+	}
+
+	/**
+	 * Loads the mentions file into the store's mention aggregates, replacing
+	 * any that were there. As for the mention objects, the first line of the
+	 * file is taken to be a header.
+	 * @param store
+	 * @param mentionsFile
+	 * @param threads
+	 * @throws IOException
+	 */
+	public static void load(GDELT_Event_Store store, String mentionsFile, int threads) throws IOException {
+		store.initMentions();
+		store.rowOf(0L); // Build the id index before the threads start
+		GDELT_Mentions_Loader loader = new GDELT_Mentions_Loader(store);
+
+		long length = GDELT_Range_Parser.fileLength(mentionsFile);
+		int  ranges = GDELT_Range_Parser.rangeCount(length, threads);
+		IO.log(IO.LEVEL.LEVEL_1, "Reading mentions from " + mentionsFile + " (" + length + " bytes) in " + ranges + " ranges on " + threads + " threads");
+
+		List<RangeParser> parsers = new ArrayList<RangeParser>();
+		for(int i = 0; i < ranges; i++) parsers.add(loader.new RangeParser(mentionsFile, length * i / ranges, length * (i + 1) / ranges));
+		GDELT_Range_Parser.runAll(parsers, threads);
+
+		long lines   = 0;
+		long orphans = 0;
+		for(RangeParser parser: parsers) {
+			lines   += parser.lines;
+			orphans += parser.orphans;
+		}
+		long docs = 0;
+		for(LongHashSet set: loader.documents) docs += set.size();
+		if(orphans > 0) IO.log(IO.LEVEL.LEVEL_0, "Orphan mentions: " + orphans + " mentions refer to events that are not in the corpus");
+		IO.log(IO.LEVEL.LEVEL_1, "Read mentions file, " + lines + " lines, " + docs + " distinct event documents");
+	}
+
+	// FNV-1a
+	private static long hash(byte[] buf, int from, int to) {
+		long h = 0xcbf29ce484222325L;
+		for(int i = from; i < to; i++) {
+			h ^= buf[i] & 0xff;
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+
+	/**
+	 * Reads the mentions that begin within one byte range of the file
+	 */
+	private class RangeParser extends GDELT_Range_Parser {
+
+		long lines   = 0;
+		long orphans = 0;
+
+		final int[] colStart = new int[COLUMNS_REQUIRED];
+		final int[] colEnd   = new int[COLUMNS_REQUIRED];
+
+		final DateCache        times = new DateCache();
+		final SimpleDateFormat timeFormat;
+
+		RangeParser(String fileName, long start, long end){
+			super(fileName, start, end, true);
+			this.timeFormat = (SimpleDateFormat)DateFormats.dateFormat2.get().clone(); // Used by a worker thread, not this one
+		}
+
+		@Override
+		void parseLine(byte[] buf, int from, int to) {
+			if(split(buf, from, to, colStart, colEnd) < COLUMNS_REQUIRED) {
+				skipped++;
+				return;
+			}
+			long   id     = digits(buf, colStart[COL_EVENT_ID], colEnd[COL_EVENT_ID]);
+			long   millis = timeMillis(buf, colStart[COL_MENTION_TIME], colEnd[COL_MENTION_TIME]);
+			double tone;
+			try {
+				tone = Double.parseDouble(string(buf, colStart[COL_DOC_TONE], colEnd[COL_DOC_TONE]));
+			}
+			catch(NumberFormatException e) {
+				skipped++;
+				return;
+			}
+			if(millis == Long.MIN_VALUE) {
+				skipped++;
+				return;
+			}
+			lines++;
+			int row = id < 0 ? -1 : store.rowOf(id);
+			if(row < 0) {
+				orphans++;
+				return;
+			}
+			// One key per (event, document) pair
+			long key = hash(buf, colStart[COL_URL], colEnd[COL_URL]) * 31 + row;
+			int  stripe = row & (STRIPES - 1);
+			synchronized(locks[stripe]) {
+				store.addMention(row, (int)Math.floorDiv(millis, GDELT_Event_Store.MILLIS_PER_HOUR), tone, documents[stripe].add(key));
+			}
+		}
+
+		// yyyyMMddHHmmss
+		private long timeMillis(byte[] buf, int from, int to) {
+			long key = dateKey(buf, from, to);
+			long ret = times.get(key);
+			if(ret != Long.MIN_VALUE) return ret;
+			try {
+				ret = timeFormat.parse(string(buf, from, to)).getTime();
+			}
+			catch(ParseException e) {
+				return Long.MIN_VALUE;
+			}
+			times.put(key, ret);
+			return ret;
+		}
+	}
+}
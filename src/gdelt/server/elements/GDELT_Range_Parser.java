@@ -0,0 +1,313 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.server.elements;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import gdelt.utils.IO;
+
+/**
+ * Reads the lines of one byte range of a tab-separated GDELT file.
+ *
+ * A file is split into ranges, and each range is read by its own
+ * parser on its own thread. A line belongs to the range in which it
+ * begins, so each parser skips forward to the first line that begins
+ * inside its range and reads past the end of its range to finish its
+ * last line. Lines are handed to the subclass as byte ranges within
+ * a buffer; the helpers here parse fields without creating Strings.
+ *
+ */
+abstract class GDELT_Range_Parser implements Runnable {
+
+	private static final int  BLOCK_SIZE        = 1 << 20;
+	private static final long MIN_RANGE_SIZE    = 1 << 22;
+	private static final int  RANGES_PER_THREAD = 4;
+
+	final String  fileName;
+	final long    start;
+	final long    end;
+	final boolean skipHeader;
+
+	// Lines that could not be used
+	int skipped = 0;
+
+	GDELT_Range_Parser(String fileName, long start, long end, boolean fileHasHeader){
+		this.fileName   = fileName;
+		this.start      = start;
+		this.end        = end;
+		this.skipHeader = fileHasHeader && start == 0;
+	}
+
+	/**
+	 * Handle one line; 'to' is exclusive, and excludes the line ending
+	 */
+	abstract void parseLine(byte[] buf, int from, int to);
+
+	/**
+	 * Called once all the lines of the range have been read
+	 */
+	void finish() {}
+
+	@Override
+	public void run() {
+		try(RandomAccessFile raf = new RandomAccessFile(fileName, "r"); FileChannel channel = raf.getChannel()){
+			byte[]     buf     = new byte[BLOCK_SIZE];
+			ByteBuffer wrapper = ByteBuffer.wrap(buf);
+			long bufPos = start == 0 ? 0 : start - 1; // File position of buf[0]
+			int  len    = 0;
+			int  off    = 0;
+			boolean eof = false;
+			boolean skipFirst = start != 0 || skipHeader; // Skip the end of a line that began in the previous range
+			while(true) {
+				int nl = -1;
+				for(int i = off; i < len; i++) if(buf[i] == '\n') { nl = i; break; }
+				if(nl < 0 && !eof) {
+					// Need more data: compact, growing the buffer if a line does not fit
+					if(off == 0 && len == buf.length) {
+						buf     = Arrays.copyOf(buf, buf.length * 2);
+						wrapper = ByteBuffer.wrap(buf);
+					}
+					else {
+						System.arraycopy(buf, off, buf, 0, len - off);
+						bufPos += off;
+						len    -= off;
+						off     = 0;
+					}
+					wrapper.clear();
+					wrapper.position(len);
+					int n = channel.read(wrapper, bufPos + len);
+					if(n < 0) eof = true;
+					else      len += n;
+					continue;
+				}
+				int lineEnd = nl < 0 ? len : nl;
+				if(skipFirst) {
+					skipFirst = false;
+				}
+				else {
+					if(bufPos + off >= end) break;
+					if(lineEnd > off && buf[lineEnd - 1] == '\r') lineEnd--;
+					if(lineEnd > off) parseLine(buf, off, lineEnd);
+				}
+				if(nl < 0) break; // End of file
+				off = nl + 1;
+			}
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+		finish();
+	}
+
+
+	// *******
+	// Running a file's parsers
+	// *******
+
+	static long fileLength(String fileName) throws IOException {
+		try(RandomAccessFile raf = new RandomAccessFile(fileName, "r")){
+			return raf.length();
+		}
+	}
+
+	static int rangeCount(long length, int threads) {
+		return (int)Math.max(1, Math.min((long)Math.max(1, threads) * RANGES_PER_THREAD, length / MIN_RANGE_SIZE));
+	}
+
+	/**
+	 * Runs the parsers on a pool of threads, and waits for all of them
+	 * @param parsers
+	 * @param threads
+	 * @return the total number of lines skipped
+	 * @throws IOException
+	 */
+	static int runAll(List<? extends GDELT_Range_Parser> parsers, int threads) throws IOException {
+		ExecutorService pool    = Executors.newFixedThreadPool(Math.max(1, threads));
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for(GDELT_Range_Parser parser: parsers) futures.add(pool.submit(parser));
+		int skipped = 0;
+		try {
+			for(int i = 0; i < parsers.size(); i++) {
+				futures.get(i).get();
+				skipped += parsers.get(i).skipped;
+			}
+		}
+		catch(InterruptedException | ExecutionException e) {
+			Throwable cause = e.getCause() == null ? e : e.getCause();
+			throw new IOException("Failed to parse " + parsers.get(0).fileName, cause.getCause() instanceof IOException ? cause.getCause() : cause);
+		}
+		finally {
+			pool.shutdown();
+		}
+		if(skipped > 0) IO.log(IO.LEVEL.LEVEL_0, "Skipped " + skipped + " unusable lines in " + parsers.get(0).fileName);
+		return skipped;
+	}
+
+
+	// *******
+	// Field parsing, without creating Strings
+	// *******
+
+	/**
+	 * Finds the tab-separated columns of a line
+	 * @return the number of columns found, up to colStart.length
+	 */
+	static int split(byte[] buf, int from, int to, int[] colStart, int[] colEnd) {
+		int max = colStart.length;
+		int col = 0;
+		colStart[0] = from;
+		for(int i = from; i < to; i++) {
+			if(buf[i] == '\t') {
+				colEnd[col++] = i;
+				if(col == max) return col;
+				colStart[col] = i + 1;
+			}
+		}
+		colEnd[col++] = to;
+		return col;
+	}
+
+	static String string(byte[] buf, int from, int to) {
+		return new String(buf, from, to - from, StandardCharsets.UTF_8);
+	}
+
+	// The value of a field of (at most 18) digits, or -1
+	static long digits(byte[] buf, int from, int to) {
+		if(to <= from || to - from > 18) return -1;
+		long ret = 0;
+		for(int i = from; i < to; i++) {
+			int d = buf[i] - '0';
+			if(d < 0 || d > 9) return -1;
+			ret = ret * 10 + d;
+		}
+		return ret;
+	}
+
+	// A cache key for a date field of (at most 17) digits: the value and the length, or -1
+	static long dateKey(byte[] buf, int from, int to) {
+		if(to - from > 17) return -1;
+		long value = digits(buf, from, to);
+		return value < 0 ? -1 : value * 32 + (to - from);
+	}
+
+	// As Long.parseLong, with an empty field read as 0
+	static long parseLong(byte[] buf, int from, int to) {
+		if(to <= from) return 0;
+		boolean negative = buf[from] == '-';
+		int i = (negative || buf[from] == '+') ? from + 1 : from;
+		if(i == to || to - i > 18) return Long.parseLong(string(buf, from, to));
+		long ret = 0;
+		for(; i < to; i++) {
+			int d = buf[i] - '0';
+			if(d < 0 || d > 9) return Long.parseLong(string(buf, from, to)); // Throws
+			ret = ret * 10 + d;
+		}
+		return negative ? -ret : ret;
+	}
+
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for(int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10; // Exact up to 1e22
+	}
+
+	/**
+	 * As Double.parseDouble, with an empty field read as 0. Plain decimals
+	 * with at most 15 significant digits are computed as an exact integer divided
+	 * by an exact power of ten, which is correctly rounded (and so identical to
+	 * Double.parseDouble); anything else is handed to Double.parseDouble.
+	 */
+	static double parseDouble(byte[] buf, int from, int to) {
+		if(to <= from) return 0;
+		boolean negative = buf[from] == '-';
+		int i = (negative || buf[from] == '+') ? from + 1 : from;
+		long mantissa = 0;
+		int  digits   = 0;
+		int  scale    = 0;
+		boolean point = false;
+		boolean any   = false;
+		for(; i < to; i++) {
+			byte b = buf[i];
+			if(b >= '0' && b <= '9') {
+				any = true;
+				if(mantissa == 0 && b == '0') {
+					if(point) scale++;
+					continue;
+				}
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if(point) scale++;
+				if(digits > 15) return Double.parseDouble(string(buf, from, to));
+			}
+			else if(b == '.' && !point) point = true;
+			else return Double.parseDouble(string(buf, from, to));
+		}
+		if(!any || scale >= POWERS_OF_TEN.length) return Double.parseDouble(string(buf, from, to));
+		double ret = mantissa / POWERS_OF_TEN[scale];
+		return negative ? -ret : ret;
+	}
+
+
+	/**
+	 * A small cache of parsed dates, keyed by dateKey.
+	 * GDELT dates are few and repeat heavily.
+	 */
+	static class DateCache {
+		private static final int SLOTS = 1 << 13;
+		private final long[] keys   = new long[SLOTS];
+		private final long[] values = new long[SLOTS];
+
+		DateCache(){
+			Arrays.fill(keys, -1);
+		}
+
+		long get(long key) {
+			if(key < 0) return Long.MIN_VALUE;
+			int slot = (int)((key ^ (key >>> 17)) & (SLOTS - 1));
+			return keys[slot] == key ? values[slot] : Long.MIN_VALUE;
+		}
+
+		void put(long key, long value) {
+			if(key < 0) return;
+			int slot = (int)((key ^ (key >>> 17)) & (SLOTS - 1));
+			keys[slot]   = key;
+			values[slot] = value;
+		}
+	}
+}
@@ -42,8 +42,19 @@ public class DateFormats {
                                Month.OCTOBER, Month.NOVEMBER, Month.DECEMBER};
 
 	
-	public static SimpleDateFormat dateFormat1 = new SimpleDateFormat("yyyy-MM-dd");
-	public static SimpleDateFormat dateFormat2 = new SimpleDateFormat("yyyyMMddHHmmss");
+	// SimpleDateFormat is not thread safe, so each thread has its own
+	public static final ThreadLocal<SimpleDateFormat> dateFormat1 = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("yyyy-MM-dd");
+		}
+	};
+	public static final ThreadLocal<SimpleDateFormat> dateFormat2 = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("yyyyMMddHHmmss");
+		}
+	};
 	
 	
 	/**
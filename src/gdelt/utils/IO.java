@@ -168,7 +168,18 @@ public class IO {
 
 	
 
-	public static boolean log(FileWriter outWriter, LEVEL level, String msg, boolean omitTimestamp) {
+	/**
+	 * True if messages at this level would be written; use this to avoid
+	 * building messages that will not be logged
+	 * @param level
+	 * @return
+	 */
+	public static boolean isLogging(LEVEL level) {
+		return level.ordinal() <= log_level.ordinal();
+	}
+
+	// Synchronized, as messages may come from several threads
+	public static synchronized boolean log(FileWriter outWriter, LEVEL level, String msg, boolean omitTimestamp) {
 		String fullMSG = "" + (omitTimestamp ? "" : (new GregorianCalendar()).getTime() + ": ") + msg;
 		if(level.ordinal() <= log_level.ordinal()){
 			if(outWriter != null)
@@ -0,0 +1,109 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.utils;
+
+/**
+ * A set of long values, kept in an open-addressed table of
+ * primitives rather than as boxed Longs in a HashSet.
+ * 
+ * Not thread safe.
+ */
+public class LongHashSet {
+
+	private static final long  EMPTY       = 0;
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private long[]  keys;
+	private int     size = 0;
+	private boolean containsEmpty = false; // The EMPTY value itself is tracked separately
+
+	public LongHashSet() {
+		this(16);
+	}
+
+	public LongHashSet(int expected) {
+		int capacity = 16;
+		while(capacity * LOAD_FACTOR < expected) capacity <<= 1;
+		keys = new long[capacity];
+	}
+
+	/**
+	 * Adds the value to the set
+	 * @param value
+	 * @return true if the value was not already in the set
+	 */
+	public boolean add(long value) {
+		if(value == EMPTY) {
+			if(containsEmpty) return false;
+			containsEmpty = true;
+			size++;
+			return true;
+		}
+		int mask = keys.length - 1;
+		int slot = slot(value, mask);
+		while(keys[slot] != EMPTY) {
+			if(keys[slot] == value) return false;
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = value;
+		if(++size > keys.length * LOAD_FACTOR) grow();
+		return true;
+	}
+
+	public boolean contains(long value) {
+		if(value == EMPTY) return containsEmpty;
+		int mask = keys.length - 1;
+		int slot = slot(value, mask);
+		while(keys[slot] != EMPTY) {
+			if(keys[slot] == value) return true;
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private static int slot(long value, int mask) {
+		long h = value * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+	private void grow() {
+		long[] old = keys;
+		keys = new long[old.length * 2];
+		int mask = keys.length - 1;
+		for(long value: old) {
+			if(value == EMPTY) continue;
+			int slot = slot(value, mask);
+			while(keys[slot] != EMPTY) slot = (slot + 1) & mask;
+			keys[slot] = value;
+		}
+	}
+}
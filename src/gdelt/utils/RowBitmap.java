@@ -0,0 +1,283 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compressed set of row numbers, in the manner of a Roaring bitmap: the
+ * rows are split into chunks of 65536 by their upper 16 bits, and each chunk
+ * holds the lower 16 bits of its rows either as a sorted array (while there
+ * are few of them) or as a bitmap of 1024 longs. Sets are built by adding
+ * rows in increasing order, and combined with or and and; the rows in a
+ * range are then visited with nextSetBit and previousSetBit.
+ *
+ * Not thread safe while being built; safe to read from several threads after.
+ */
+public class RowBitmap {
+
+	private static final int ARRAY_MAX = 4096; // A chunk with more rows than this is a bitmap (8KB, the most an array of them takes)
+	private static final int WORDS     = 1024;
+
+	private int[]    keys    = new int[4];      // The upper 16 bits of each chunk's rows, increasing
+	private char[][] arrays  = new char[4][];   // For each chunk, its rows' lower 16 bits in order, or null if it is a bitmap
+	private long[][] bitmaps = new long[4][];   // For each chunk, its bitmap, or null if it is an array
+	private int[]    counts  = new int[4];      // The number of rows in each chunk
+	private int      chunks  = 0;
+	private int      last    = -1;              // The last row added
+
+	/**
+	 * Adds a row, which must be greater than any added before
+	 * @param row
+	 */
+	public void add(int row) {
+		if(row <= last) throw new IllegalArgumentException("Rows must be added in increasing order: " + row + " after " + last);
+		int key = row >>> 16;
+		if(chunks == 0 || keys[chunks - 1] != key) addChunk(key, new char[16], 0, null);
+		last = row;
+		int c = chunks - 1;
+		if(bitmaps[c] != null) {
+			bitmaps[c][(row & 0xFFFF) >>> 6] |= 1L << row;
+			counts[c]++;
+			return;
+		}
+		if(counts[c] == ARRAY_MAX) {
+			bitmaps[c] = toBitmap(arrays[c], counts[c]);
+			arrays[c]  = null;
+			bitmaps[c][(row & 0xFFFF) >>> 6] |= 1L << row;
+			counts[c]++;
+			return;
+		}
+		if(counts[c] == arrays[c].length) arrays[c] = Arrays.copyOf(arrays[c], Math.min(ARRAY_MAX, arrays[c].length * 2));
+		arrays[c][counts[c]++] = (char)row;
+	}
+
+	public int cardinality() {
+		int ret = 0;
+		for(int c = 0; c < chunks; c++) ret += counts[c];
+		return ret;
+	}
+
+	/**
+	 * The least row in the set that is at least 'from', or -1 if there is none
+	 * @param from
+	 * @return
+	 */
+	public int nextSetBit(int from) {
+		if(from < 0) from = 0;
+		int c = firstChunkAtOrAfter(from >>> 16);
+		if(c < chunks && keys[c] == from >>> 16) {
+			int low = firstInChunkAtOrAfter(c, from & 0xFFFF);
+			if(low >= 0) return (keys[c] << 16) | low;
+			c++;
+		}
+		return c < chunks ? (keys[c] << 16) | firstInChunkAtOrAfter(c, 0) : -1;
+	}
+
+	/**
+	 * The greatest row in the set that is at most 'from', or -1 if there is none
+	 * @param from
+	 * @return
+	 */
+	public int previousSetBit(int from) {
+		if(from < 0) return -1;
+		int c = firstChunkAtOrAfter(from >>> 16);
+		if(c < chunks && keys[c] == from >>> 16) {
+			int low = lastInChunkAtOrBefore(c, from & 0xFFFF);
+			if(low >= 0) return (keys[c] << 16) | low;
+		}
+		c--;
+		return c >= 0 ? (keys[c] << 16) | lastInChunkAtOrBefore(c, 0xFFFF) : -1;
+	}
+
+	/**
+	 * The rows that are in any of the sets
+	 * @param sets
+	 * @return
+	 */
+	public static RowBitmap or(List<RowBitmap> sets) {
+		if(sets.size() == 1) return sets.get(0);
+		RowBitmap ret   = new RowBitmap();
+		int[]     next  = new int[sets.size()]; // The next chunk of each set to merge
+		long[]    words = new long[WORDS];
+		while(true) {
+			int key = Integer.MAX_VALUE;
+			for(int s = 0; s < sets.size(); s++) if(next[s] < sets.get(s).chunks) key = Math.min(key, sets.get(s).keys[next[s]]);
+			if(key == Integer.MAX_VALUE) return ret;
+			Arrays.fill(words, 0);
+			for(int s = 0; s < sets.size(); s++) {
+				RowBitmap set = sets.get(s);
+				if(next[s] < set.chunks && set.keys[next[s]] == key) set.orInto(next[s]++, words);
+			}
+			ret.addChunk(key, words);
+		}
+	}
+
+	/**
+	 * The rows that are in both this set and the other
+	 * @param other
+	 * @return
+	 */
+	public RowBitmap and(RowBitmap other) {
+		RowBitmap ret = new RowBitmap();
+		long[] words = new long[WORDS];
+		long[] mine  = new long[WORDS];
+		int a = 0, b = 0;
+		while(a < chunks && b < other.chunks) {
+			if(keys[a] < other.keys[b])      a++;
+			else if(keys[a] > other.keys[b]) b++;
+			else {
+				if(arrays[a] != null || other.arrays[b] != null) {
+					// Keep the rows of the array that are in the other chunk
+					RowBitmap arraySide  = arrays[a] != null ? this : other;
+					int       arrayChunk = arrays[a] != null ? a : b;
+					RowBitmap otherSide  = arraySide == this ? other : this;
+					int       otherChunk = arraySide == this ? b : a;
+					char[]    rows       = arraySide.arrays[arrayChunk];
+					char[]    kept       = new char[arraySide.counts[arrayChunk]];
+					int       n          = 0;
+					for(int i = 0; i < arraySide.counts[arrayChunk]; i++) if(otherSide.containsLow(otherChunk, rows[i])) kept[n++] = rows[i];
+					if(n > 0) ret.addChunk(keys[a], Arrays.copyOf(kept, n), n, null);
+				}
+				else {
+					Arrays.fill(mine, 0);
+					orInto(a, mine);
+					Arrays.fill(words, 0);
+					other.orInto(b, words);
+					for(int w = 0; w < WORDS; w++) words[w] &= mine[w];
+					ret.addChunk(keys[a], words);
+				}
+				a++;
+				b++;
+			}
+		}
+		return ret;
+	}
+
+	// *******
+	// Chunks
+	// *******
+
+	private void addChunk(int key, char[] array, int count, long[] bitmap) {
+		if(chunks == keys.length) {
+			keys    = Arrays.copyOf(keys,    chunks * 2);
+			arrays  = Arrays.copyOf(arrays,  chunks * 2);
+			bitmaps = Arrays.copyOf(bitmaps, chunks * 2);
+			counts  = Arrays.copyOf(counts,  chunks * 2);
+		}
+		keys[chunks]    = key;
+		arrays[chunks]  = array;
+		bitmaps[chunks] = bitmap;
+		counts[chunks]  = count;
+		chunks++;
+		last = (key << 16) | 0xFFFF; // Nothing more can be added to this chunk
+	}
+
+	// Adds a chunk from a bitmap (which is copied), as an array if it has few enough rows; nothing is added for no rows
+	private void addChunk(int key, long[] words) {
+		int count = 0;
+		for(int w = 0; w < WORDS; w++) count += Long.bitCount(words[w]);
+		if(count == 0) return;
+		if(count > ARRAY_MAX) {
+			addChunk(key, null, count, Arrays.copyOf(words, WORDS));
+			return;
+		}
+		char[] array = new char[count];
+		int    n     = 0;
+		for(int w = 0; w < WORDS; w++) {
+			for(long bits = words[w]; bits != 0; bits &= bits - 1) array[n++] = (char)((w << 6) | Long.numberOfTrailingZeros(bits));
+		}
+		addChunk(key, array, count, null);
+	}
+
+	private static long[] toBitmap(char[] array, int count) {
+		long[] ret = new long[WORDS];
+		for(int i = 0; i < count; i++) ret[array[i] >>> 6] |= 1L << array[i];
+		return ret;
+	}
+
+	private void orInto(int c, long[] words) {
+		if(bitmaps[c] != null) {
+			for(int w = 0; w < WORDS; w++) words[w] |= bitmaps[c][w];
+			return;
+		}
+		for(int i = 0; i < counts[c]; i++) words[arrays[c][i] >>> 6] |= 1L << arrays[c][i];
+	}
+
+	private boolean containsLow(int c, char low) {
+		if(bitmaps[c] != null) return (bitmaps[c][low >>> 6] & (1L << low)) != 0;
+		return Arrays.binarySearch(arrays[c], 0, counts[c], low) >= 0;
+	}
+
+	// The first chunk whose key is at least this key (chunks if there is none)
+	private int firstChunkAtOrAfter(int key) {
+		int lo = 0, hi = chunks;
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(keys[mid] < key) lo = mid + 1;
+			else                hi = mid;
+		}
+		return lo;
+	}
+
+	// The least lower 16 bits in the chunk that are at least 'low', or -1
+	private int firstInChunkAtOrAfter(int c, int low) {
+		if(bitmaps[c] != null) {
+			long[] words = bitmaps[c];
+			int    w     = low >>> 6;
+			long   bits  = words[w] & (-1L << low);
+			while(true) {
+				if(bits != 0) return (w << 6) | Long.numberOfTrailingZeros(bits);
+				if(++w == WORDS) return -1;
+				bits = words[w];
+			}
+		}
+		int i = Arrays.binarySearch(arrays[c], 0, counts[c], (char)low);
+		if(i < 0) i = -i - 1;
+		return i < counts[c] ? arrays[c][i] : -1;
+	}
+
+	// The greatest lower 16 bits in the chunk that are at most 'low', or -1
+	private int lastInChunkAtOrBefore(int c, int low) {
+		if(bitmaps[c] != null) {
+			long[] words = bitmaps[c];
+			int    w     = low >>> 6;
+			long   bits  = words[w] & (-1L >>> (63 - (low & 63)));
+			while(true) {
+				if(bits != 0) return (w << 6) | (63 - Long.numberOfLeadingZeros(bits));
+				if(--w < 0) return -1;
+				bits = words[w];
+			}
+		}
+		int i = Arrays.binarySearch(arrays[c], 0, counts[c], (char)low);
+		if(i < 0) i = -i - 2; // The last one below
+		return i >= 0 ? arrays[c][i] : -1;
+	}
+
+}
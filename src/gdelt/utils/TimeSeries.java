@@ -28,6 +28,7 @@
 package gdelt.utils;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.TreeMap;
 
@@ -36,7 +37,15 @@ public class TimeSeries extends ZeroIndexedSeries{
 	protected LocalDateTime tZero;
 	protected ChronoUnit    resolutionUnit;
 	protected int           resolution;
-	
+
+	private static final long SECONDS_PER_HOUR = 3600L;
+
+	// For the epoch-hour methods: tZero in whole hours since the epoch (UTC), and
+	// the length of the resolution unit in hours (0 until worked out; -1 if tZero
+	// is not on a whole hour or the unit is not hours or days)
+	private transient long zeroHour  = 0;
+	private transient int  unitHours = 0;
+
 	public int getIndexOf(LocalDateTime time) {
 		//System.out.println("GETTING INDEX OF " + time);
 		long numberOfIntervals = (resolutionUnit.between(tZero, time) / resolution); // Simple case
@@ -65,6 +74,113 @@ public class TimeSeries extends ZeroIndexedSeries{
 		addCounts(getIndexOf(time), elementsToAdd);
 	}
 
+	/**
+	 * As getIndexOf, for a time given in whole hours since the epoch (UTC);
+	 * this is worked out with integer arithmetic, without creating a
+	 * LocalDateTime, whenever tZero is on a whole hour and the resolution
+	 * unit is hours or days
+	 * @param epochHour
+	 * @return
+	 */
+	public int getIndexOfEpochHour(long epochHour) {
+		if(!hasEpochGrid()) return getIndexOf(LocalDateTime.ofEpochSecond(epochHour * SECONDS_PER_HOUR, 0, ZoneOffset.UTC));
+		return (int)getIntervalOfEpochHour(epochHour) + zeroIndex;
+	}
+
+	/**
+	 * True if tZero is on a whole hour and the unit is hours or days, so that
+	 * the epoch-hour methods can work in integer arithmetic
+	 * @return
+	 */
+	public boolean hasEpochGrid() {
+		if(unitHours == 0) {
+			boolean aligned = tZero.getMinute() == 0 && tZero.getSecond() == 0 && tZero.getNano() == 0;
+			zeroHour  = Math.floorDiv(tZero.toEpochSecond(ZoneOffset.UTC), SECONDS_PER_HOUR);
+			unitHours = !aligned ? -1 : resolutionUnit == ChronoUnit.HOURS ? 1 : resolutionUnit == ChronoUnit.DAYS ? 24 : -1;
+		}
+		return unitHours > 0;
+	}
+
+	/**
+	 * The number of intervals from tZero to the time (the index, less the zero index),
+	 * by the same steps as getIndexOf; only for a series that hasEpochGrid()
+	 * @param epochHour
+	 * @return
+	 */
+	public long getIntervalOfEpochHour(long epochHour) {
+		long hours = epochHour - zeroHour;
+		long numberOfIntervals;
+		if(hours >= 0) {
+			numberOfIntervals = (hours / unitHours) / resolution;
+		}
+		else {
+			long between = (-hours / unitHours) / resolution;
+			numberOfIntervals = -between - 1;
+			if(between * unitHours == -hours) numberOfIntervals++;
+		}
+		return numberOfIntervals;
+	}
+
+	/**
+	 * The first hour of an interval; only for a series that hasEpochGrid().
+	 * Note that getIndexOf places the times before tZero one hour later than
+	 * this unless the resolution is 1 (see getIntervalOfEpochHour), so a range
+	 * of hours built from this should allow getHoursPerInterval() either side.
+	 * @param interval
+	 * @return
+	 */
+	public long getEpochHourOfInterval(long interval) {
+		return zeroHour + interval * getHoursPerInterval();
+	}
+
+	/**
+	 * True if getIndexOf places every time within an hour as it places the
+	 * start of the hour: on a grid of whole hours or days (see hasEpochGrid)
+	 * with a resolution of 1. Otherwise a time part way through an hour may
+	 * fall in the interval after its hour's.
+	 * @return
+	 */
+	public boolean placesByHour() {
+		return hasEpochGrid() && resolution == 1;
+	}
+
+	/**
+	 * As getIndexOf, for a time given in seconds since the epoch (UTC)
+	 * @param epochSecond
+	 * @return
+	 */
+	public int getIndexOfEpochSecond(long epochSecond) {
+		if(placesByHour()) return getIndexOfEpochHour(Math.floorDiv(epochSecond, SECONDS_PER_HOUR));
+		return getIndexOf(LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC));
+	}
+
+	public long getHoursPerInterval() {
+		return (long)resolution * unitHours;
+	}
+
+	/**
+	 * Converts a number of some unit of time after tZero into intervals of this
+	 * series, as trim(int, int, ChronoUnit) does
+	 * @param t
+	 * @param unit
+	 * @return
+	 */
+	public int toIntervals(int t, ChronoUnit unit) {
+		return (int)(resolutionUnit.between(tZero, tZero.plus(t, unit))/resolution);
+	}
+
+	public void addCountsAtEpochHour(long epochHour, double elementsToAdd) {
+		addCounts(getIndexOfEpochHour(epochHour), elementsToAdd);
+	}
+
+	public void addCountsAtEpochSecond(long epochSecond, double elementsToAdd) {
+		addCounts(getIndexOfEpochSecond(epochSecond), elementsToAdd);
+	}
+
+	public double getCountAtEpochHour(long epochHour) {
+		return getCountAt(getIndexOfEpochHour(epochHour));
+	}
+
     public void increment(LocalDateTime time) {
 	  addCounts(time, 1);
     }
@@ -103,6 +219,14 @@ public class TimeSeries extends ZeroIndexedSeries{
 	}
 	
 	public void add(TimeSeries other) {
+		if(tZero.equals(other.tZero) && resolution == other.resolution && resolutionUnit == other.resolutionUnit) {
+			// Same grid: the times match index for index, offset by the difference in zero index
+			for(int i = 0; i < values.length; i++) {
+				int j = i - zeroIndex + other.zeroIndex;
+				if(j >= 0 && j < other.values.length) values[i] += other.values[j];
+			}
+			return;
+		}
 		TreeMap<LocalDateTime, Double> otherResults = other.getMapOfValues();
 		for(int i = 0; i < values.length; i++) {
 			Double otherResult = otherResults.get(tZero.plus((i - zeroIndex) * resolution, resolutionUnit));
@@ -145,8 +269,7 @@ public class TimeSeries extends ZeroIndexedSeries{
 	
 	public void trim(int tMin, int tMax, ChronoUnit resUnit) {
 		// Need to convert these to the resolutionUnit in order to call the parent class's method
-		trim(((int)(resolutionUnit.between(tZero, tZero.plus(tMin, resUnit))/resolution)), 
-			 ((int)(resolutionUnit.between(tZero, tZero.plus(tMax, resUnit))/resolution)));
+		trim(toIntervals(tMin, resUnit), toIntervals(tMax, resUnit));
 	}
 
 }
\ No newline at end of file
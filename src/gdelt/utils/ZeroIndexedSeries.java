@@ -84,6 +84,10 @@ public class ZeroIndexedSeries{
 	public double[] getValues() {
 		return values;
 	}
+
+	public int getZeroIndex() {
+		return zeroIndex;
+	}
 	
 	/**
 	 * Get all the values from time tZero forward (inclusive of tZero)
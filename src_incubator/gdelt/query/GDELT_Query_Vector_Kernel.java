@@ -0,0 +1,155 @@
+/**
+ * GDELT_GA_SEARCH: GDELT Genetic Algorithm Search Tool
+ *  
+ * Copyright (C) 2021  John T. Murphy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * This code was authored by John T. Murphy with contributions from Awrad Ali,
+ * Harleen Lappano, and Lindsey Andrade
+ * 
+ * If you use this code or the tool in your work, please cite using the following bibtex:
+ * @book{murphyAndWadsworth2021,
+ *   author =       {Murphy, John T., and Wadsworth, Marin},
+ *   title =        {GDELT GA Search Users Manual},
+ *   year =         {2021},
+ *   url =          {http://USER_MANUAL_URL}
+ * }
+ */
+package gdelt.query;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+import gdelt.server.elements.GDELT_Event_Index.FIELD;
+import gdelt.server.elements.GDELT_Event_Store;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The kernel of GDELT_Query_Kernel, with the Vector API: the visibility of
+ * each row (its lag, from its event hour to its visible hour) and the range
+ * tests on the double columns are made a vector of rows at a time, and each
+ * vector's result is written straight into the bit mask of matches. The
+ * tests on codes (bit masks, looked up by code) are made for the rows that
+ * are left, as in the scalar kernel, as are the tests on any column without a
+ * backing array (a store mapped from a snapshot).
+ *
+ * Needs JDK 16 or later, and is compiled and run with
+ * --add-modules jdk.incubator.vector (see the README); GDELT_Query_Kernel.get
+ * falls back to the scalar kernel when it cannot be loaded.
+ */
+final class GDELT_Query_Vector_Kernel extends GDELT_Query_Kernel {
+
+	private static final VectorSpecies<Double>  DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Integer> INTS    = IntVector.SPECIES_PREFERRED;
+
+	GDELT_Query_Vector_Kernel() {
+		// The lanes of a vector must fill a word of the bit mask evenly
+		if(DOUBLES.length() < 2 || 64 % DOUBLES.length() != 0 || 64 % INTS.length() != 0) {
+			throw new UnsupportedOperationException("No usable vector shape: " + DOUBLES + ", " + INTS);
+		}
+	}
+
+	@Override
+	void match(GDELT_Query_Predicate predicate, int from, int to, long maxLag, long[] matches) {
+		GDELT_Event_Store store = predicate.store();
+		int n = to - from;
+		setRows(matches, n);
+		if(maxLag != NO_LAG) {
+			IntBuffer events  = store.eventHourColumn();
+			IntBuffer visible = store.visibleHourColumn();
+			if(events.hasArray() && visible.hasArray()) clearLate(events, visible, from, n, maxLag, matches);
+			else                                        clearLate(store, from, maxLag, matches);
+		}
+		for(int t = 0; t < predicate.tests(); t++) {
+			DoubleBuffer column = predicate.isMask(t) ? null : columnOf(store, predicate.field(t));
+			if(column != null && column.hasArray()) clearOutOfRange(predicate, t, column, from, n, matches);
+			else                                    predicate.clearFailing(t, from, matches);
+		}
+	}
+
+	private static DoubleBuffer columnOf(GDELT_Event_Store store, FIELD field) {
+		switch(field) {
+			case GOLDSTEIN: return store.goldsteinColumn();
+			case AVG_TONE:  return store.avgToneColumn();
+			case LAT:       return store.latColumn();
+			case LON:       return store.lonColumn();
+			default:        return null;
+		}
+	}
+
+	// Clears, in lanes, the rows visible more than maxLag hours after their event hour
+	private static void clearLate(IntBuffer events, IntBuffer visible, int from, int n, long maxLag, long[] matches) {
+		if(maxLag >= Integer.MAX_VALUE) return;
+		int[] e    = events.array();
+		int[] v    = visible.array();
+		int   eOff = events.arrayOffset() + from;
+		int   vOff = visible.arrayOffset() + from;
+		int   lag  = (int)Math.max(maxLag, Integer.MIN_VALUE);
+		int   bound = INTS.loopBound(n);
+		int   i     = 0;
+		for(; i < bound; i += INTS.length()) {
+			IntVector late = IntVector.fromArray(INTS, v, vOff + i).sub(IntVector.fromArray(INTS, e, eOff + i));
+			clearLanes(matches, i, INTS.length(), late.compare(VectorOperators.GT, lag).toLong());
+		}
+		for(; i < n; i++) {
+			if(v[vOff + i] - (long)e[eOff + i] > maxLag) matches[i >> 6] &= ~(1L << i);
+		}
+	}
+
+	// Clears, in lanes, the rows whose value (as its intValue) fails the range
+	// test t. The whole numbers lowest to highest are the doubles that
+	// truncate into them: above lowest - 1 (at or above lowest, if it is
+	// positive) and below highest + 1 (at or below highest, if it is negative).
+	// NaN truncates to 0.
+	private static void clearOutOfRange(GDELT_Query_Predicate predicate, int t, DoubleBuffer column, int from, int n, long[] matches) {
+		long    lo        = predicate.lowest(t);
+		long    hi        = predicate.highest(t);
+		boolean exclude   = predicate.excludes(t);
+		boolean nanPasses = (lo <= 0 && hi >= 0) != exclude;
+		double  lower     = lo <= Integer.MIN_VALUE ? Double.NEGATIVE_INFINITY : lo > 0 ? lo : lo - 1;
+		double  upper     = hi >= Integer.MAX_VALUE ? Double.POSITIVE_INFINITY : hi < 0 ? hi : hi + 1;
+		VectorOperators.Comparison above = lo <= Integer.MIN_VALUE || lo > 0 ? VectorOperators.GE : VectorOperators.GT;
+		VectorOperators.Comparison below = hi >= Integer.MAX_VALUE || hi < 0 ? VectorOperators.LE : VectorOperators.LT;
+		double[] a     = column.array();
+		int      off   = column.arrayOffset() + from;
+		int      bound = DOUBLES.loopBound(n);
+		int      i     = 0;
+		for(; i < bound; i += DOUBLES.length()) {
+			DoubleVector        x    = DoubleVector.fromArray(DOUBLES, a, off + i);
+			VectorMask<Double>  in   = x.compare(above, lower).and(x.compare(below, upper));
+			VectorMask<Double>  pass = exclude ? in.not() : in;
+			VectorMask<Double>  nan  = x.test(VectorOperators.IS_NAN);
+			pass = nanPasses ? pass.or(nan) : pass.andNot(nan);
+			clearLanes(matches, i, DOUBLES.length(), ~pass.toLong());
+		}
+		for(; i < n; i++) {
+			if(!predicate.passes(t, (int)a[off + i])) matches[i >> 6] &= ~(1L << i);
+		}
+	}
+
+	// Clears the bits of the rows i to i + lanes - 1 that are set in 'fail' (by lane)
+	private static void clearLanes(long[] matches, int i, int lanes, long fail) {
+		long laneBits = lanes == 64 ? -1L : (1L << lanes) - 1;
+		matches[i >> 6] &= ~((fail & laneBits) << (i & 63));
+	}
+
+	@Override
+	public String toString() {
+		return "vector (" + DOUBLES.length() + " doubles, " + INTS.length() + " ints)";
+	}
+
+}